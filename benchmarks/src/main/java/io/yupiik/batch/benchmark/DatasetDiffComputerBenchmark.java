@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import io.yupiik.batch.runtime.component.DatasetDiffComputer;
+import io.yupiik.batch.runtime.component.HashDatasetDiffComputer;
+import io.yupiik.batch.runtime.component.diff.Diff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+public class DatasetDiffComputerBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0", "0.01", "0.1", "0.5"})
+    private double changeRatio;
+
+    private List<Row> reference;
+    private List<Row> incoming;
+    private DatasetDiffComputer<Row> computer;
+    private HashDatasetDiffComputer<Row, String> hashComputer;
+
+    @Setup
+    public void setup() {
+        reference = Row.dataset(size, 1234);
+        incoming = Row.change(reference, changeRatio, 5678);
+        computer = new DatasetDiffComputer<>(Row.BY_ID, Objects::equals);
+        hashComputer = new HashDatasetDiffComputer<>(Row::id, row -> row.name() + "|" + row.value(), id -> new Row(id, null, 0));
+    }
+
+    @Benchmark
+    public Diff<Row> apply() {
+        return computer.apply(incoming.iterator(), reference.iterator());
+    }
+
+    @Benchmark
+    public Diff<Row> hashApply() {
+        return hashComputer.apply(incoming.iterator(), reference.iterator());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import io.yupiik.batch.runtime.component.DatasetDiffComputer;
+import io.yupiik.batch.runtime.component.DiffExecutor;
+import io.yupiik.batch.runtime.component.diff.Diff;
+import io.yupiik.batch.runtime.sql.BulkInsert;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Applies a diff in an embedded H2 database, the table is reset before each iteration (single shot).
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+public class DiffExecutorBenchmark {
+    @Param({"10000", "100000"})
+    private int size;
+
+    @Param({"0.1", "0.5"})
+    private double changeRatio;
+
+    @Param({"100", "1000"})
+    private int commitInterval;
+
+    private JdbcDataSource dataSource;
+    private Connection keepDb;
+    private List<Row> reference;
+    private Diff<Row> diff;
+    private DiffExecutor<Row> executor;
+    private DiffExecutor<Row> upsertExecutor;
+    private DiffExecutor<Row> bulkInsertExecutor;
+
+    @Setup
+    public void setup() throws SQLException {
+        QuietLogging.apply();
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorBenchmark");
+        keepDb = dataSource.getConnection(); // avoid h2 to delete the table with the last close()
+        try (final var statement = keepDb.createStatement()) {
+            statement.execute("CREATE TABLE BENCHMARK_ROW (id VARCHAR(32) PRIMARY KEY, name VARCHAR(64), val INT)");
+        }
+
+        reference = Row.dataset(size, 1234);
+        diff = new DatasetDiffComputer<Row>(Row.BY_ID, Objects::equals)
+                .apply(Row.change(reference, changeRatio, 5678).iterator(), reference.iterator());
+        executor = new DiffExecutor<>(dataSource::getConnection, commitInterval, false, Row.Insert::new, Row.Update::new, Row.Delete::new);
+        upsertExecutor = new DiffExecutor<>(dataSource::getConnection, commitInterval, false, Row.Upsert::new, Row.DeleteIn::new);
+        bulkInsertExecutor = new DiffExecutor<>(
+                dataSource::getConnection, commitInterval, false,
+                () -> BulkInsert.<Row>of("BENCHMARK_ROW", List.of("id", "name", "val"), 100, row -> new Object[]{row.id(), row.name(), row.value()}),
+                Row.Update::new, Row.Delete::new);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTable() throws Exception {
+        try (final var connection = dataSource.getConnection()) {
+            try (final var statement = connection.createStatement()) {
+                statement.execute("TRUNCATE TABLE BENCHMARK_ROW");
+            }
+            connection.setAutoCommit(false);
+            final var insert = new Row.Insert();
+            for (final var row : reference) {
+                insert.accept(connection, row);
+            }
+            insert.close();
+            connection.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        keepDb.close();
+    }
+
+    @Benchmark
+    public void apply() {
+        executor.accept(diff);
+    }
+
+    @Benchmark
+    public void applyWithUpsert() {
+        upsertExecutor.accept(diff);
+    }
+
+    @Benchmark
+    public void applyWithBulkInsert() {
+        bulkInsertExecutor.accept(diff);
+    }
+}
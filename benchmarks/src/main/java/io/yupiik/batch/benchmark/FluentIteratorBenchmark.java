@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import io.yupiik.batch.runtime.iterator.FluentIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+public class FluentIteratorBenchmark {
+    private static final Comparator<Row> BY_NAME = Comparator.comparing(Row::name);
+    private static final long CPU_TOKENS = 500; // simulates a costly mapping
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private List<Row> rows;
+
+    @Setup
+    public void setup() {
+        QuietLogging.apply();
+        rows = Row.dataset(size, 1234);
+    }
+
+    @Benchmark
+    public void filterMap(final Blackhole blackhole) {
+        drain(FluentIterator.of(rows.iterator())
+                .filter(it -> (it.value() & 1) == 0)
+                .map(Row::name), blackhole);
+    }
+
+    @Benchmark
+    public void flatMap(final Blackhole blackhole) {
+        drain(FluentIterator.of(rows.iterator())
+                .flatMap(it -> List.of(it.id(), it.name()).iterator()), blackhole);
+    }
+
+    @Benchmark
+    public void sort(final Blackhole blackhole) {
+        drain(FluentIterator.of(rows.iterator()).sort(BY_NAME), blackhole);
+    }
+
+    @Benchmark
+    public void distinct(final Blackhole blackhole) {
+        drain(FluentIterator.of(rows.iterator()).distinct(Row::name, Row.BY_ID), blackhole);
+    }
+
+    @Benchmark
+    public void costlyMap(final Blackhole blackhole) {
+        drain(FluentIterator.of(rows.iterator()).map(FluentIteratorBenchmark::costlyMapping), blackhole);
+    }
+
+    @Benchmark
+    public void costlyParallelMap(final Blackhole blackhole) {
+        drain(FluentIterator.of(rows.iterator()).parallelMap(FluentIteratorBenchmark::costlyMapping, 4, 256), blackhole);
+    }
+
+    private static String costlyMapping(final Row row) {
+        Blackhole.consumeCPU(CPU_TOKENS);
+        return row.name();
+    }
+
+    private void drain(final FluentIterator<?> iterator, final Blackhole blackhole) {
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import io.yupiik.batch.runtime.component.Mapper;
+import io.yupiik.batch.runtime.component.mapping.Mapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+
+import static io.yupiik.batch.runtime.component.mapping.Mapping.OnTableMappingLookupFailure.FORWARD;
+import static io.yupiik.batch.runtime.component.mapping.Mapping.PropertyType.CONSTANT;
+import static io.yupiik.batch.runtime.component.mapping.Mapping.PropertyType.TABLE_MAPPING;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+    private final Row input = new Row("0000000001", "A", 123);
+
+    private Mapper<Row, Output, MappedSpec> mapped;
+    private Mapper<Row, Output, TableSpec> table;
+    private Mapper<Row, Output, CustomSpec> custom;
+
+    @Setup
+    public void setup() {
+        mapped = Mapper.mapper(MappedSpec.class);
+        table = Mapper.mapper(TableSpec.class);
+        custom = Mapper.mapper(CustomSpec.class);
+    }
+
+    @Benchmark
+    public Output mapped() {
+        return mapped.apply(input);
+    }
+
+    @Benchmark
+    public Output table() {
+        return table.apply(input);
+    }
+
+    @Benchmark
+    public Output custom() {
+        return custom.apply(input);
+    }
+
+    public record Output(String id, String label, int value, String source) {
+    }
+
+    @Mapping(
+            from = Row.class,
+            to = Output.class,
+            properties = {
+                    @Mapping.Property(from = "id", to = "id"),
+                    @Mapping.Property(from = "name", to = "label"),
+                    @Mapping.Property(from = "value", to = "value"),
+                    @Mapping.Property(type = CONSTANT, to = "source", value = "benchmark")
+            })
+    public static class MappedSpec {
+    }
+
+    @Mapping(
+            from = Row.class,
+            to = Output.class,
+            properties = {
+                    @Mapping.Property(from = "id", to = "id"),
+                    @Mapping.Property(type = TABLE_MAPPING, from = "name", to = "label", value = "labels", onMissedTableLookup = FORWARD),
+                    @Mapping.Property(from = "value", to = "value")
+            },
+            tables = @Mapping.MappingTable(name = "labels", entries = {
+                    @Mapping.Entry(input = "A", output = "Alpha"),
+                    @Mapping.Entry(input = "B", output = "Beta")
+            }))
+    public static class TableSpec {
+    }
+
+    @Mapping(
+            from = Row.class,
+            to = Output.class,
+            properties = @Mapping.Property(from = "id", to = "id"),
+            tables = @Mapping.MappingTable(name = "labels", entries = @Mapping.Entry(input = "A", output = "Alpha")))
+    public static class CustomSpec {
+        @Mapping.Custom(description = "Label lookup.")
+        public String label(final Row row, @Mapping.Table("labels") final Map<String, String> labels) {
+            return labels.getOrDefault(row.name(), row.name());
+        }
+
+        @Mapping.Custom(description = "Doubles the value.")
+        public int value(final Row row) {
+            return row.value() * 2;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// some components log each row at INFO level, we don't want to benchmark the console
+final class QuietLogging {
+    private static final Logger LOGGER = Logger.getLogger("io.yupiik.batch"); // keep a reference so the level is not lost
+
+    private QuietLogging() {
+        // no-op
+    }
+
+    static void apply() {
+        LOGGER.setLevel(Level.WARNING);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import io.yupiik.batch.runtime.sql.SQLBiConsumer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark model, datasets are generated with a fixed seed to keep runs comparable.
+ */
+public record Row(String id, String name, int value) {
+    public static final Comparator<Row> BY_ID = Comparator.comparing(Row::id);
+
+    /**
+     * @param size number of rows.
+     * @param seed random seed.
+     * @return rows sorted by id.
+     */
+    public static List<Row> dataset(final int size, final long seed) {
+        final var random = new Random(seed);
+        final var out = new ArrayList<Row>(size);
+        for (int i = 0; i < size; i++) {
+            out.add(new Row(String.format("%010d", i), "name_" + random.nextInt(size), random.nextInt()));
+        }
+        return out;
+    }
+
+    /**
+     * Changes {@code ratio} of the rows: a third is removed, a third is updated and a third is replaced by a new row.
+     *
+     * @param reference the reference dataset (sorted by id).
+     * @param ratio     the change ratio (between 0 and 1).
+     * @param seed      random seed.
+     * @return the modified dataset sorted by id.
+     */
+    public static List<Row> change(final List<Row> reference, final double ratio, final long seed) {
+        final var random = new Random(seed);
+        final var out = new ArrayList<Row>(reference.size());
+        for (final var row : reference) {
+            if (random.nextDouble() >= ratio) {
+                out.add(row);
+                continue;
+            }
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    // deleted
+                }
+                case 1 -> out.add(new Row(row.id(), row.name(), row.value() + 1));
+                default -> {
+                    out.add(row);
+                    out.add(new Row(row.id() + "_new", "added", random.nextInt()));
+                }
+            }
+        }
+        return out;
+    }
+
+    public static class Insert extends SQLBiConsumer.Batched<Row> {
+        @Override
+        protected PreparedStatement createStatement(final Connection connection) throws SQLException {
+            return connection.prepareStatement("INSERT INTO BENCHMARK_ROW (id, name, val) VALUES (?, ?, ?)");
+        }
+
+        @Override
+        protected void doAccept(final Row row) throws SQLException {
+            statement.setString(1, row.id());
+            statement.setString(2, row.name());
+            statement.setInt(3, row.value());
+        }
+    }
+
+    public static class Update extends SQLBiConsumer.Batched<Row> {
+        @Override
+        protected PreparedStatement createStatement(final Connection connection) throws SQLException {
+            return connection.prepareStatement("UPDATE BENCHMARK_ROW SET name = ?, val = ? WHERE id = ?");
+        }
+
+        @Override
+        protected void doAccept(final Row row) throws SQLException {
+            statement.setString(1, row.name());
+            statement.setInt(2, row.value());
+            statement.setString(3, row.id());
+        }
+    }
+
+    public static class Delete extends SQLBiConsumer.Batched<Row> {
+        @Override
+        protected PreparedStatement createStatement(final Connection connection) throws SQLException {
+            return connection.prepareStatement("DELETE FROM BENCHMARK_ROW WHERE id = ?");
+        }
+
+        @Override
+        protected void doAccept(final Row row) throws SQLException {
+            statement.setString(1, row.id());
+        }
+    }
+
+    public static class Upsert extends SQLBiConsumer.Batched<Row> {
+        @Override
+        protected PreparedStatement createStatement(final Connection connection) throws SQLException {
+            return connection.prepareStatement("MERGE INTO BENCHMARK_ROW (id, name, val) KEY (id) VALUES (?, ?, ?)");
+        }
+
+        @Override
+        protected void doAccept(final Row row) throws SQLException {
+            statement.setString(1, row.id());
+            statement.setString(2, row.name());
+            statement.setInt(3, row.value());
+        }
+    }
+
+    public static class DeleteIn extends SQLBiConsumer.BatchedIn<Row> {
+        public DeleteIn() {
+            super(100);
+        }
+
+        @Override
+        protected String createSql(final String placeholders) {
+            return "DELETE FROM BENCHMARK_ROW WHERE id IN (" + placeholders + ")";
+        }
+
+        @Override
+        protected void bind(final PreparedStatement statement, final int index, final Row row) throws SQLException {
+            statement.setString(index, row.id());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.benchmark;
+
+import io.yupiik.batch.runtime.util.Substitutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+public class SubstitutorBenchmark {
+    private final Substitutor substitutor = new Substitutor(Map.of(
+            "host", "localhost",
+            "port", "5432",
+            "database", "batch",
+            "url", "jdbc:postgresql://${host}:${port}/${database}")::get);
+
+    @Benchmark
+    public String noPlaceholder() {
+        return substitutor.replace("SELECT id, name FROM BENCHMARK_ROW WHERE id > 0");
+    }
+
+    @Benchmark
+    public String placeholders() {
+        return substitutor.replace("jdbc:postgresql://${host}:${port}/${database}?user=${user:-batch}");
+    }
+
+    @Benchmark
+    public String nested() {
+        return substitutor.replace("url=${url}");
+    }
+}
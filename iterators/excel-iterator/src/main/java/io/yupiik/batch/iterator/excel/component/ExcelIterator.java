@@ -16,6 +16,8 @@
 package io.yupiik.batch.iterator.excel.component;
 
 import io.yupiik.batch.runtime.documentation.IteratorDescription;
+import io.yupiik.batch.runtime.progress.ProgressListener;
+import io.yupiik.batch.runtime.progress.ProgressTracker;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
@@ -27,6 +29,7 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.IntStream;
@@ -42,6 +45,7 @@ public class ExcelIterator<A> implements Iterator<A>, AutoCloseable {
     private final Sheet sheet;
     private final int lastRowNum;
     private int currentRow = 0;
+    private ProgressTracker tracker;
 
     public ExcelIterator(final Path file, final int sheetIndex, final RowMapper<A> mapper) {
         this.mapper = mapper;
@@ -56,15 +60,33 @@ public class ExcelIterator<A> implements Iterator<A>, AutoCloseable {
         this.lastRowNum = sheet.getLastRowNum();
     }
 
+    /**
+     * @param name     name of the file in progress events.
+     * @param listener listener notified of the read rows (total is the number of rows of the sheet).
+     * @param interval min duration between two events.
+     * @return this.
+     */
+    public ExcelIterator<A> setProgressListener(final String name, final ProgressListener listener, final Duration interval) {
+        this.tracker = listener == null ? null : new ProgressTracker(name, lastRowNum + 1, listener, interval);
+        return this;
+    }
+
     @Override
     public boolean hasNext() {
-        return currentRow <= lastRowNum;
+        final boolean hasNext = currentRow <= lastRowNum;
+        if (!hasNext && tracker != null) {
+            tracker.end();
+        }
+        return hasNext;
     }
 
     @Override
     public A next() {
         final var a = mapper.apply(sheet.getRow(currentRow), evaluator, formatter);
         currentRow++;
+        if (tracker != null) {
+            tracker.increment();
+        }
         return a;
     }
 
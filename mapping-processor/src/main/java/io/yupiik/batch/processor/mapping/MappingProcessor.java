@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.processor.mapping;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static javax.tools.Diagnostic.Kind.NOTE;
+
+/**
+ * Generates at build time the mapper of {@code @Mapping} specifications.
+ * The generated class ({@code <spec simple binary name with _ instead of $>_GeneratedMapper} in the spec package)
+ * directly calls the output record constructor with the input accessors, constants, tables and custom methods
+ * so {@code Mapper} does not need any reflection at runtime when it finds it.
+ * Its nested {@code Factory} is registered in {@code META-INF/services} so {@code Mapper} finds it with a {@link java.util.ServiceLoader}
+ * which is also supported by GraalVM native-image without any reflection configuration.
+ *
+ * Tables are still provided by {@code Mapper} at runtime so they can be overridden by system properties or environment variables.
+ *
+ * If a specification can't be statically generated with exactly the runtime semantic (input type not being a record,
+ * inaccessible members, invalid specification...), it is just skipped and {@code Mapper} keeps using its runtime implementation.
+ */
+@SupportedAnnotationTypes(MappingProcessor.MAPPING)
+public class MappingProcessor extends AbstractProcessor {
+    static final String MAPPING = "io.yupiik.batch.runtime.component.mapping.Mapping";
+    private static final String CUSTOM = MAPPING + ".Custom";
+    private static final String TABLE = MAPPING + ".Table";
+    private static final String REVERSED_TABLE = MAPPING + ".ReversedTable";
+    private static final String SUFFIX = "_GeneratedMapper";
+    private static final String FACTORY = "io.yupiik.batch.runtime.component.mapping.GeneratedMapperFactory";
+
+    private final Set<String> factories = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final var annotation : annotations) {
+            for (final var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement spec) {
+                    try {
+                        generate(spec);
+                    } catch (final UnsupportedSpecification e) {
+                        processingEnv.getMessager().printMessage(NOTE,
+                                "No mapper generated for " + spec.getQualifiedName() + ": " + e.getMessage(), spec);
+                    }
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !factories.isEmpty()) {
+            writeServices();
+        }
+        return false;
+    }
+
+    // keep the providers of a previous (incremental) compilation, Mapper ignores the stale ones
+    private void writeServices() {
+        final var filer = processingEnv.getFiler();
+        final var path = "META-INF/services/" + FACTORY;
+        try {
+            final var existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", path);
+            try (final var reader = new BufferedReader(existing.openReader(true))) {
+                reader.lines()
+                        .map(String::strip)
+                        .filter(it -> !it.isEmpty() && !it.startsWith("#"))
+                        .forEach(factories::add);
+            }
+        } catch (final IOException | IllegalArgumentException e) {
+            // no-op, first compilation
+        }
+        try (final var writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", path).openWriter()) {
+            for (final var factory : factories) {
+                writer.write(factory + '\n');
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void generate(final TypeElement spec) {
+        final var elements = processingEnv.getElementUtils();
+        final var pkg = elements.getPackageOf(spec);
+        final var mirror = spec.getAnnotationMirrors().stream()
+                .filter(it -> MAPPING.equals(((TypeElement) it.getAnnotationType().asElement()).getQualifiedName().toString()))
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedSpecification("no @Mapping"));
+        final var conf = values(mirror);
+        if (!spec.getTypeParameters().isEmpty()) {
+            throw new UnsupportedSpecification("generic specifications are not supported");
+        }
+        ensureAccessible(spec, pkg);
+
+        final var from = (TypeElement) ((DeclaredType) conf.get("from").getValue()).asElement();
+        final var to = (TypeElement) ((DeclaredType) conf.get("to").getValue()).asElement();
+        final boolean fromIsObject = Object.class.getName().equals(from.getQualifiedName().toString());
+        ensureAccessible(from, pkg);
+        ensureAccessible(to, pkg);
+        if (to.getKind() != ElementKind.RECORD) {
+            throw new UnsupportedSpecification(to + " is not a record");
+        }
+        final var components = to.getRecordComponents();
+        final var componentTypes = components.stream()
+                .collect(LinkedHashMap<String, TypeMirror>::new, (m, c) -> m.put(c.getSimpleName().toString(), c.asType()), Map::putAll);
+
+        final var tables = list(conf.get("tables")).stream()
+                .map(it -> (String) values((AnnotationMirror) it.getValue()).get("name").getValue())
+                .collect(toList());
+        final var usedTables = new LinkedHashMap<String, Integer>();
+        final var usedReversedTables = new LinkedHashMap<String, Integer>();
+        final var helpers = new ArrayList<String>();
+        final var expressions = new HashMap<String, String>();
+        final var boxedSources = new HashSet<String>(); // targets which can get a null value
+
+        for (final var property : list(conf.get("properties"))) {
+            final var values = values((AnnotationMirror) property.getValue());
+            final var type = ((VariableElement) values.get("type").getValue()).getSimpleName().toString();
+            final var propertyFrom = (String) values.get("from").getValue();
+            final var target = (String) values.get("to").getValue();
+            final var value = (String) values.get("value").getValue();
+            final var targetType = componentTypes.get(target);
+            final String expression;
+            switch (type) {
+                case "MAPPED" -> {
+                    if (propertyFrom.isEmpty()) {
+                        throw new UnsupportedSpecification("MAPPED property without from");
+                    }
+                    final var component = findComponent(from, fromIsObject, propertyFrom);
+                    if (targetType != null) {
+                        ensureAssignable(component.asType(), targetType, target);
+                    }
+                    expression = "input." + component.getAccessor().getSimpleName() + "()";
+                    if (!component.asType().getKind().isPrimitive()) {
+                        boxedSources.add(target);
+                    }
+                }
+                case "TABLE_MAPPING" -> {
+                    if (value.isEmpty()) {
+                        throw new UnsupportedSpecification("TABLE_MAPPING property without value");
+                    }
+                    if (!tables.contains(value)) {
+                        throw new UnsupportedSpecification("no table named '" + value + "'");
+                    }
+                    final var component = findComponent(from, fromIsObject, propertyFrom);
+                    if (targetType != null) {
+                        ensureAssignable(elements.getTypeElement(String.class.getName()).asType(), targetType, target);
+                    }
+                    final var table = "table" + usedTables.computeIfAbsent(value, k -> usedTables.size());
+                    final var helper = "map" + helpers.size();
+                    final var failure = "throw new IllegalArgumentException(" + elements.getConstantExpression("No mapping for null in '" + value + "'") + ");";
+                    final var onMissedTableLookup = ((VariableElement) values.get("onMissedTableLookup").getValue()).getSimpleName().toString();
+                    helpers.add("" +
+                            "    private String " + helper + "(final Object value) {\n" +
+                            "        if (value == null) {\n" +
+                            "            " + ("FAIL".equals(onMissedTableLookup) ? failure : "return null;") + "\n" +
+                            "        }\n" +
+                            "        final var key = String.valueOf(value);\n" +
+                            switch (onMissedTableLookup) {
+                                case "NULL" -> "        return " + table + ".get(key);\n";
+                                case "FORWARD" -> "        return " + table + ".getOrDefault(key, key);\n";
+                                default -> "" +
+                                        "        final var mapped = " + table + ".get(key);\n" +
+                                        "        if (mapped == null) {\n" +
+                                        "            " + failure + "\n" +
+                                        "        }\n" +
+                                        "        return mapped;\n";
+                            } +
+                            "    }\n");
+                    expression = helper + "(input." + component.getAccessor().getSimpleName() + "())";
+                }
+                case "CONSTANT" -> {
+                    if (value.isEmpty()) {
+                        throw new UnsupportedSpecification("CONSTANT property without value");
+                    }
+                    if (targetType == null) {
+                        throw new UnsupportedSpecification("no property '" + target + "' found");
+                    }
+                    expression = toConstant(targetType, value);
+                }
+                default -> throw new UnsupportedSpecification("unsupported property type " + type);
+            }
+            if (expressions.put(target, expression) != null) {
+                throw new UnsupportedSpecification("duplicated mapping for '" + target + "'");
+            }
+        }
+
+        for (final var method : findCustomMethods(spec)) {
+            final var custom = values(findAnnotation(method, CUSTOM).orElseThrow());
+            final var customTo = (String) custom.get("to").getValue();
+            final var target = customTo.isEmpty() ? method.getSimpleName().toString() : customTo;
+            ensureAccessible(method, pkg);
+            if (!method.getTypeParameters().isEmpty()) {
+                throw new UnsupportedSpecification("generic method " + method + " is not supported");
+            }
+            // resolve inherited type variables
+            final var signature = (ExecutableType) processingEnv.getTypeUtils().asMemberOf((DeclaredType) spec.asType(), method);
+            final var returnType = signature.getReturnType();
+            if (returnType.getKind() == TypeKind.VOID) {
+                throw new UnsupportedSpecification(method + " does not return any value");
+            }
+            final var targetType = componentTypes.get(target);
+            if (targetType != null) {
+                ensureAssignable(returnType, targetType, target);
+            }
+
+            final var parameterTypes = signature.getParameterTypes();
+            final var parameters = method.getParameters();
+            final var args = IntStream.range(0, parameters.size())
+                    .mapToObj(i -> {
+                        final var it = parameters.get(i);
+                        final var paramType = erasure(parameterTypes.get(i));
+                        if (fromIsObject) {
+                            return paramType.toString().equals(Object.class.getName()) ? "input" : "(" + paramType + ") input";
+                        }
+                        if (processingEnv.getTypeUtils().isAssignable(erasure(from.asType()), paramType)) {
+                            return "input";
+                        }
+                        final var table = findAnnotation(it, TABLE)
+                                .map(a -> (String) values(a).get("value").getValue())
+                                .orElseThrow(() -> new UnsupportedSpecification("unsupported parameter " + it.getSimpleName() + " in " + method));
+                        if (!tables.contains(table)) {
+                            throw new UnsupportedSpecification("no table named '" + table + "'");
+                        }
+                        final var index = usedTables.computeIfAbsent(table, k -> usedTables.size());
+                        if (REVERSED_TABLE.equals(paramType.toString())) {
+                            return "reversedTable" + usedReversedTables.computeIfAbsent(table, k -> index);
+                        }
+                        if (!processingEnv.getTypeUtils().isAssignable(
+                                erasure(elements.getTypeElement(Map.class.getName()).asType()), paramType)) {
+                            throw new UnsupportedSpecification("unsupported table parameter type " + paramType + " in " + method);
+                        }
+                        return "table" + index;
+                    })
+                    .collect(joining(", "));
+
+            final var helper = "map" + helpers.size();
+            helpers.add("" +
+                    "    private " + returnType + " " + helper + "(final " + from.getQualifiedName() + " input) {\n" +
+                    "        try {\n" +
+                    "            return " + (method.getModifiers().contains(Modifier.STATIC) ?
+                    ((TypeElement) method.getEnclosingElement()).getQualifiedName() : "spec") + "." + method.getSimpleName() + "(" + args + ");\n" +
+                    "        } catch (final Throwable e) {\n" +
+                    "            throw new IllegalStateException(" + elements.getConstantExpression("Error invoking " + toString(method) + " with input ") + " + input, e);\n" +
+                    "        }\n" +
+                    "    }\n");
+            if (expressions.put(target, helper + "(input)") != null) {
+                throw new UnsupportedSpecification("duplicated mapping for '" + target + "'");
+            }
+            if (!returnType.getKind().isPrimitive()) {
+                boxedSources.add(target);
+            }
+        }
+
+        // same contract as the runtime mapper: a null value for a primitive is an IllegalArgumentException
+        // and a constructor failure is wrapped in an IllegalStateException, mapping failures are propagated as is
+        final var toName = to.getQualifiedName().toString();
+        final var nullChecked = components.stream()
+                .filter(it -> it.asType().getKind().isPrimitive() && boxedSources.contains(it.getSimpleName().toString()))
+                .map(it -> it.getSimpleName().toString())
+                .collect(toSet());
+        final var arguments = components.stream()
+                .map(it -> {
+                    final var name = it.getSimpleName().toString();
+                    final var expression = expressions.get(name);
+                    if (expression != null) {
+                        if (nullChecked.contains(name)) {
+                            return "requirePrimitiveValue(" + expression + ", " +
+                                    elements.getConstantExpression("'" + name + "' of " + toName) + ")";
+                        }
+                        return expression;
+                    }
+                    return switch (it.asType().getKind()) {
+                        case BOOLEAN -> "false";
+                        case FLOAT -> "0.f";
+                        case DOUBLE -> "0.";
+                        case LONG -> "0L";
+                        case INT -> "0";
+                        case SHORT -> "(short) 0";
+                        case BYTE -> "(byte) 0";
+                        case CHAR -> throw new UnsupportedSpecification("unsupported primitive char for " + it.getSimpleName());
+                        default -> "null";
+                    };
+                })
+                .collect(toList());
+
+        final var binaryName = elements.getBinaryName(spec).toString();
+        final var packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        final var className = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + SUFFIX;
+        final var specName = spec.getQualifiedName().toString();
+        final var fromName = from.getQualifiedName().toString();
+
+        final var out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("@javax.annotation.processing.Generated(\"").append(MappingProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(className)
+                .append(" implements java.util.function.Function<").append(fromName).append(", ").append(toName).append("> {\n")
+                .append("    private final ").append(specName).append(" spec;\n");
+        usedTables.forEach((name, index) -> out.append("    private final java.util.Map<String, String> table").append(index).append(";\n"));
+        usedReversedTables.forEach((name, index) -> out.append("    private final ").append(REVERSED_TABLE).append(" reversedTable").append(index).append(";\n"));
+        out.append("\n")
+                .append("    public ").append(className).append("(final ").append(specName)
+                .append(" spec, final java.util.Map<String, java.util.Map<String, String>> tables) {\n")
+                .append("        this.spec = spec;\n");
+        usedTables.forEach((name, index) -> out.append("        this.table").append(index).append(" = tables.get(")
+                .append(elements.getConstantExpression(name)).append(");\n"));
+        usedReversedTables.forEach((name, index) -> out.append("        this.reversedTable").append(index).append(" = new ")
+                .append(REVERSED_TABLE).append("(table").append(index).append(".entrySet());\n"));
+        out.append("    }\n\n")
+                .append("    @Override\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public ").append(toName).append(" apply(final ").append(fromName).append(" input) {\n")
+                .append(IntStream.range(0, arguments.size())
+                        .mapToObj(i -> "        final var p" + i + " = " + arguments.get(i) + ";\n")
+                        .collect(joining()))
+                .append("        try {\n")
+                .append("            return new ").append(toName).append("(")
+                .append(IntStream.range(0, arguments.size()).mapToObj(i -> "p" + i).collect(joining(", "))).append(");\n")
+                .append("        } catch (final RuntimeException | Error e) {\n")
+                .append("            throw new IllegalStateException(e);\n")
+                .append("        }\n")
+                .append("    }\n");
+        if (!nullChecked.isEmpty()) {
+            out.append('\n')
+                    .append("    private static <T> T requirePrimitiveValue(final T value, final String parameter) {\n")
+                    .append("        if (value == null) {\n")
+                    .append("            throw new IllegalArgumentException(\"null value for primitive parameter \" + parameter);\n")
+                    .append("        }\n")
+                    .append("        return value;\n")
+                    .append("    }\n");
+        }
+        helpers.forEach(it -> out.append('\n').append(it));
+        out.append('\n')
+                .append("    public static final class Factory implements ").append(FACTORY).append(" {\n")
+                .append("        @Override\n")
+                .append("        public Class<?> spec() {\n")
+                .append("            return ").append(specName).append(".class;\n")
+                .append("        }\n\n")
+                .append("        @Override\n")
+                .append("        public java.util.function.Function<?, ?> create(final Object spec, final java.util.Map<String, java.util.Map<String, String>> tables) {\n")
+                .append("            return new ").append(className).append("((").append(specName).append(") spec, tables);\n")
+                .append("        }\n")
+                .append("    }\n")
+                .append("}\n");
+
+        try (final var writer = processingEnv.getFiler()
+                .createSourceFile((packageName.isEmpty() ? "" : packageName + '.') + className, spec)
+                .openWriter()) {
+            writer.write(out.toString());
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        factories.add((packageName.isEmpty() ? "" : packageName + '.') + className + "$Factory");
+    }
+
+    // runtime reads the declared field so we only support records (final + accessor matching the field)
+    private RecordComponentElement findComponent(final TypeElement from, final boolean fromIsObject, final String name) {
+        if (fromIsObject || from.getKind() != ElementKind.RECORD) {
+            throw new UnsupportedSpecification("input " + from + " is not a record");
+        }
+        return from.getRecordComponents().stream()
+                .filter(it -> name.equals(it.getSimpleName().toString()))
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedSpecification("no '" + name + "' in " + from));
+    }
+
+    // runtime relies on MethodHandle#asType so primitives must match exactly (no widening)
+    private void ensureAssignable(final TypeMirror source, final TypeMirror target, final String name) {
+        final var types = processingEnv.getTypeUtils();
+        if (target.getKind().isPrimitive()) {
+            TypeMirror unboxed = source;
+            if (!source.getKind().isPrimitive()) {
+                try {
+                    unboxed = types.unboxedType(source);
+                } catch (final IllegalArgumentException iae) {
+                    throw new UnsupportedSpecification("can't assign " + source + " to '" + name + "'");
+                }
+            }
+            if (!types.isSameType(unboxed, target)) {
+                throw new UnsupportedSpecification("can't assign " + source + " to '" + name + "'");
+            }
+            return;
+        }
+        final var boxed = source.getKind().isPrimitive() ? types.boxedClass(types.getPrimitiveType(source.getKind())).asType() : source;
+        if (!types.isAssignable(erasure(boxed), erasure(target))) {
+            throw new UnsupportedSpecification("can't assign " + source + " to '" + name + "'");
+        }
+    }
+
+    private String toConstant(final TypeMirror type, final String value) {
+        final var elements = processingEnv.getElementUtils();
+        final var name = type.getKind().isPrimitive() ?
+                processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString() :
+                erasure(type).toString();
+        try {
+            return switch (name) {
+                case "java.lang.String" -> elements.getConstantExpression(value);
+                case "java.lang.Integer" -> elements.getConstantExpression(Integer.parseInt(value));
+                case "java.lang.Long" -> elements.getConstantExpression(Long.parseLong(value));
+                case "java.lang.Double" -> elements.getConstantExpression(Double.parseDouble(value));
+                case "java.lang.Float" -> elements.getConstantExpression(Float.parseFloat(value));
+                case "java.lang.Boolean" -> elements.getConstantExpression(Boolean.parseBoolean(value));
+                default -> throw new UnsupportedSpecification("unsupported constant type " + type);
+            };
+        } catch (final NumberFormatException nfe) {
+            throw new UnsupportedSpecification("invalid constant '" + value + "' for " + type);
+        }
+    }
+
+    private List<ExecutableElement> findCustomMethods(final TypeElement spec) {
+        final var out = new ArrayList<ExecutableElement>();
+        var current = spec;
+        while (current != null && !Object.class.getName().equals(current.getQualifiedName().toString())) {
+            current.getEnclosedElements().stream()
+                    .filter(it -> it.getKind() == ElementKind.METHOD)
+                    .map(ExecutableElement.class::cast)
+                    .filter(it -> findAnnotation(it, CUSTOM).isPresent())
+                    .forEach(out::add);
+            final var parent = current.getSuperclass();
+            current = parent.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) parent).asElement() : null;
+        }
+        return out;
+    }
+
+    private void ensureAccessible(final Element element, final PackageElement from) {
+        Element current = element;
+        while (current != null && current.getKind() != ElementKind.PACKAGE) {
+            final var modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) ||
+                    (!modifiers.contains(Modifier.PUBLIC) && !processingEnv.getElementUtils().getPackageOf(current).equals(from))) {
+                throw new UnsupportedSpecification(element + " is not accessible");
+            }
+            current = current.getEnclosingElement();
+        }
+    }
+
+    // same format as java.lang.reflect.Method#toString to keep runtime error messages
+    private String toString(final ExecutableElement method) {
+        final var modifiers = method.getModifiers();
+        return Stream.of(Modifier.PUBLIC, Modifier.PROTECTED, Modifier.PRIVATE, Modifier.ABSTRACT, Modifier.STATIC,
+                        Modifier.FINAL, Modifier.SYNCHRONIZED, Modifier.NATIVE, Modifier.STRICTFP)
+                .filter(modifiers::contains)
+                .map(it -> it.toString() + ' ')
+                .collect(joining()) +
+                typeName(method.getReturnType()) + ' ' +
+                processingEnv.getElementUtils().getBinaryName((TypeElement) method.getEnclosingElement()) + '.' +
+                method.getSimpleName() +
+                method.getParameters().stream().map(it -> typeName(it.asType())).collect(joining(",", "(", ")")) +
+                (method.getThrownTypes().isEmpty() ? "" : method.getThrownTypes().stream()
+                        .map(this::typeName)
+                        .collect(joining(",", " throws ", "")));
+    }
+
+    private String typeName(final TypeMirror type) {
+        final var erased = erasure(type);
+        return switch (erased.getKind()) {
+            case ARRAY -> typeName(((ArrayType) erased).getComponentType()) + "[]";
+            case DECLARED -> processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) erased).asElement()).toString();
+            default -> erased.toString();
+        };
+    }
+
+    private TypeMirror erasure(final TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    private Optional<? extends AnnotationMirror> findAnnotation(final Element element, final String type) {
+        return element.getAnnotationMirrors().stream()
+                .filter(it -> type.equals(((TypeElement) it.getAnnotationType().asElement()).getQualifiedName().toString()))
+                .findFirst();
+    }
+
+    private Map<String, AnnotationValue> values(final AnnotationMirror mirror) {
+        final var out = new HashMap<String, AnnotationValue>();
+        processingEnv.getElementUtils().getElementValuesWithDefaults(mirror)
+                .forEach((k, v) -> out.put(k.getSimpleName().toString(), v));
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<? extends AnnotationValue> list(final AnnotationValue value) {
+        return (List<? extends AnnotationValue>) value.getValue();
+    }
+
+    private static class UnsupportedSpecification extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private UnsupportedSpecification(final String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.processor.mapping;
+
+import io.yupiik.batch.runtime.component.Mapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappingProcessorTest {
+    @Test
+    void generate(@TempDir final Path work) throws Exception {
+        final var classes = compile(work, Map.of("test/Spec.java", """
+                package test;
+
+                import io.yupiik.batch.runtime.component.mapping.Mapping;
+
+                import java.util.Map;
+
+                import static io.yupiik.batch.runtime.component.mapping.Mapping.OnTableMappingLookupFailure.FORWARD;
+                import static io.yupiik.batch.runtime.component.mapping.Mapping.PropertyType.CONSTANT;
+                import static io.yupiik.batch.runtime.component.mapping.Mapping.PropertyType.TABLE_MAPPING;
+
+                @Mapping(
+                        from = Spec.In.class,
+                        to = Spec.Out.class,
+                        properties = {
+                                @Mapping.Property(from = "name", to = "name"),
+                                @Mapping.Property(type = TABLE_MAPPING, from = "code", to = "label", value = "codes", onMissedTableLookup = FORWARD),
+                                @Mapping.Property(type = CONSTANT, to = "version", value = "2")
+                        },
+                        tables = @Mapping.MappingTable(name = "codes", entries = @Mapping.Entry(input = "A", output = "Alpha")))
+                public class Spec {
+                    @Mapping.Custom(description = "Doubles the value.")
+                    long doubled(final In in) {
+                        return in.value() * 2L;
+                    }
+
+                    @Mapping.Custom(to = "codes", description = "Count table entries.")
+                    int tableSize(@Mapping.Table("codes") final Map<String, String> codes) {
+                        return codes.size();
+                    }
+
+                    @Mapping.Custom(description = "Is the mapping done by the generated mapper.")
+                    boolean generated(final In in) {
+                        return StackWalker.getInstance().walk(s -> s.skip(1).findFirst())
+                                .map(f -> f.getClassName().equals(Spec.class.getName() + "_GeneratedMapper"))
+                                .orElse(false);
+                    }
+
+                    public record In(String name, String code, long value) {
+                    }
+
+                    public record Out(String name, String label, int version, long doubled, int codes, boolean missing, boolean generated) {
+                    }
+                }
+                """));
+        assertTrue(Files.exists(work.resolve("generated/test/Spec_GeneratedMapper.java")));
+        // stale providers are ignored
+        final var services = classes.resolve("META-INF/services/io.yupiik.batch.runtime.component.mapping.GeneratedMapperFactory");
+        assertEquals("test.Spec_GeneratedMapper$Factory\n", Files.readString(services));
+        Files.writeString(services, "test.Missing_GeneratedMapper$Factory\n" + Files.readString(services));
+
+        try (final var loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            final var spec = loader.loadClass("test.Spec");
+            final var in = loader.loadClass("test.Spec$In");
+            final var mapper = new Mapper<>(spec);
+
+            final var out = mapper.apply(in.getConstructors()[0].newInstance("n", "A", 21L));
+            assertEquals("Out[name=n, label=Alpha, version=2, doubled=42, codes=1, missing=false, generated=true]", out.toString());
+            assertEquals(
+                    "Out[name=n, label=B, version=2, doubled=2, codes=1, missing=false, generated=true]",
+                    mapper.apply(in.getConstructors()[0].newInstance("n", "B", 1L)).toString());
+            assertInstanceOf(IllegalArgumentException.class, assertThrows(RuntimeException.class, () -> mapper.apply("wrong")));
+        }
+    }
+
+    @Test
+    void errors(@TempDir final Path work) throws Exception {
+        final var classes = compile(work, Map.of("test/ErrorSpec.java", """
+                package test;
+
+                import io.yupiik.batch.runtime.component.mapping.Mapping;
+
+                @Mapping(from = ErrorSpec.In.class, to = ErrorSpec.Out.class, properties = @Mapping.Property(from = "name", to = "name"))
+                public class ErrorSpec {
+                    @Mapping.Custom(description = "Age if known.")
+                    Integer age(final In in) {
+                        return in.age();
+                    }
+
+                    public record In(String name, Integer age) {
+                    }
+
+                    public record Out(String name, int age) {
+                        public Out {
+                            if (name.isEmpty()) {
+                                throw new IllegalArgumentException("empty name");
+                            }
+                        }
+                    }
+                }
+                """));
+        assertTrue(Files.exists(work.resolve("generated/test/ErrorSpec_GeneratedMapper.java")));
+
+        // same contract as the runtime mapper
+        try (final var loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            final var mapper = new Mapper<>(loader.loadClass("test.ErrorSpec"));
+            final var in = loader.loadClass("test.ErrorSpec$In").getConstructors()[0];
+            assertEquals("Out[name=n, age=1]", mapper.apply(in.newInstance("n", 1)).toString());
+            assertEquals("empty name", assertThrows(IllegalStateException.class, () -> mapper.apply(in.newInstance("", 1))).getCause().getMessage());
+            assertEquals(
+                    "null value for primitive parameter 'age' of test.ErrorSpec.Out",
+                    assertThrows(IllegalArgumentException.class, () -> mapper.apply(in.newInstance("n", null))).getMessage());
+        }
+    }
+
+    @Test
+    void skipUnsupported(@TempDir final Path work) throws Exception {
+        final var classes = compile(work, Map.of("test/ObjectSpec.java", """
+                package test;
+
+                import io.yupiik.batch.runtime.component.mapping.Mapping;
+
+                @Mapping(to = ObjectSpec.Out.class, properties = @Mapping.Property(from = "name", to = "name"))
+                public class ObjectSpec {
+                    public record In(String name) {
+                    }
+
+                    public record Out(String name) {
+                    }
+                }
+                """));
+        assertFalse(Files.exists(work.resolve("generated/test/ObjectSpec_GeneratedMapper.java")));
+
+        // runtime mapper is still used
+        try (final var loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            final var mapper = new Mapper<>(loader.loadClass("test.ObjectSpec"));
+            assertEquals("Out[name=n]", mapper.apply(loader.loadClass("test.ObjectSpec$In").getConstructors()[0].newInstance("n")).toString());
+        }
+    }
+
+    private Path compile(final Path work, final Map<String, String> sources) throws IOException {
+        final var src = work.resolve("src");
+        final var generated = Files.createDirectories(work.resolve("generated"));
+        final var classes = Files.createDirectories(work.resolve("classes"));
+        final var files = new ArrayList<Path>();
+        for (final var source : sources.entrySet()) {
+            final var file = src.resolve(source.getKey());
+            Files.createDirectories(file.getParent());
+            files.add(Files.writeString(file, source.getValue(), UTF_8));
+        }
+
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        final var output = new StringWriter();
+        try (final var fileManager = compiler.getStandardFileManager(null, null, UTF_8)) {
+            final var task = compiler.getTask(output, fileManager, null, List.of(
+                    "-parameters", "--release", "17",
+                    "-classpath", System.getProperty("java.class.path"),
+                    "-d", classes.toString(), "-s", generated.toString()), null, fileManager.getJavaFileObjectsFromPaths(files));
+            task.setProcessors(List.of(new MappingProcessor()));
+            assertTrue(task.call(), output::toString);
+        }
+        return classes;
+    }
+}
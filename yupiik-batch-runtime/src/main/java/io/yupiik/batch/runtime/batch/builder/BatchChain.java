@@ -16,13 +16,19 @@
 package io.yupiik.batch.runtime.batch.builder;
 
 import io.yupiik.batch.runtime.batch.BatchPromise;
+import io.yupiik.batch.runtime.checkpoint.Checkpoint;
+import io.yupiik.batch.runtime.checkpoint.Checkpointable;
+import io.yupiik.batch.runtime.iterator.PipedIterator;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
@@ -34,6 +40,7 @@ import static java.util.Collections.reverse;
 import static java.util.Optional.ofNullable;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.SEVERE;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Very trivial way to define common operations simply.
@@ -82,37 +89,14 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
     }
 
     default void run(final RunConfiguration configuration) { // todo: shouldn't we forbid configuration to be null?
-        final var chain = new ArrayList<BatchChain<?, ?, ?>>();
-        BatchChain<?, ?, ?> current = this;
-        while (current != null) {
-            chain.add(current);
-            current = current.previous().orElse(null);
-        }
-        reverse(chain);
-
+        final var chain = elements(this, null);
         if (!BatchRoot.class.isInstance(chain.get(0))) {
             throw new IllegalArgumentException(chain + " does not start with a BatchRoot, use from() or a root element to start the batch.");
         }
-        final Function<BatchChain<?, ?, ?>, Executable<?, ?>> wrapper = configuration != null && configuration.elementExecutionWrapper != null ?
-                e -> configuration.elementExecutionWrapper.apply(e) : e -> e;
         final Runnable execution = () -> {
-            Result<?> result = null; // starting node generates a result without a previous one normally
-            final var promises = new CopyOnWriteArrayList<CompletableFuture<?>>();
-            try {
-                for (final var it : chain) {
-                    result = wrapper.apply(BatchChain.class.cast(it)).execute(configuration, Result.class.cast(result));
-                    if (result.value() instanceof BatchPromise<?> promise) {
-                        final var end = promise.end().toCompletableFuture();
-                        promises.add(end);
-                        end.whenComplete((ok, ko) -> {
-                            if (!end.isCompletedExceptionally() || configuration == null || !configuration.forceAwaitOnPromiseError) {
-                                promises.remove(end);
-                            }
-                        });
-                    }
-                }
-            } finally {
-                await(configuration, promises);
+            executeChain(configuration, chain);
+            if (configuration != null && configuration.checkpointStore != null) {
+                configuration.checkpointStore.clear();
             }
         };
         if (configuration != null && configuration.executionWrapper != null) {
@@ -122,6 +106,85 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
         }
     }
 
+    /**
+     * Runs a sub-chain per partition of the incoming value, in parallel, then joins the partition results.
+     * It is a barrier: next step starts when all partitions completed.
+     * Each partition starts from a root (not traced) emitting the partition value,
+     * other elements are traced (if tracing is enabled) with the partition index as suffix of their name.
+     *
+     * @param name           step name.
+     * @param splitter       how to split the incoming value in partitions (see {@link Partitions} for common strategies).
+     * @param executor       the executor to run partitions on (fork-join pool, thread pool, virtual threads, ...).
+     * @param partitionChain creates the chain executed for each partition from the partition root.
+     * @param reducer        how to join partition results (skipped partitions are ignored), called in the caller thread.
+     * @param <K>            partition type.
+     * @param <C>            partition result type.
+     * @param <D>            joined result type.
+     * @return the new chain element.
+     */
+    default <K, C, D> BatchChain<P, R, D> partition(final String name,
+                                                    final Function<R, ? extends Collection<K>> splitter,
+                                                    final Executor executor,
+                                                    final Function<BatchRoot<K>, BatchChain<?, ?, C>> partitionChain,
+                                                    final Function<List<C>, D> reducer) {
+        return new BatchChain<>() {
+            @Override
+            public Result<D> execute(final RunConfiguration configuration, final Result<R> previous) {
+                return switch (previous.type()) {
+                    case SKIP -> new Result<>(null, Result.Type.SKIP);
+                    case CONTINUE -> {
+                        final var partitions = new ArrayList<>(splitter.apply(previous.value()));
+                        final var executions = new ArrayList<CompletableFuture<Result<?>>>(partitions.size());
+                        for (int i = 0; i < partitions.size(); i++) {
+                            final var root = new PartitionRoot<>(partitions.get(i));
+                            final var suffix = "[" + i + "]";
+                            final var chain = elements(partitionChain.apply(root), root).stream()
+                                    .<BatchChain<?, ?, ?>>map(it -> it == root ? it : new PartitionElement<>(it, suffix))
+                                    .collect(toList());
+                            executions.add(CompletableFuture.supplyAsync(() -> executeChain(configuration, chain), executor));
+                        }
+
+                        final var results = new ArrayList<C>(executions.size());
+                        IllegalStateException error = null;
+                        for (final var execution : executions) {
+                            try {
+                                final var result = execution.get();
+                                if (result != null && result.type() == Result.Type.CONTINUE) {
+                                    @SuppressWarnings("unchecked") final var value = (C) result.value();
+                                    results.add(value);
+                                }
+                            } catch (final InterruptedException ie) {
+                                Thread.currentThread().interrupt();
+                                executions.forEach(it -> it.cancel(true));
+                                throw new IllegalStateException(ie);
+                            } catch (final ExecutionException ee) {
+                                if (error == null) {
+                                    error = new IllegalStateException("Partition execution failed: " + ee.getCause().getMessage(), ee.getCause());
+                                } else {
+                                    error.addSuppressed(ee.getCause());
+                                }
+                            }
+                        }
+                        if (error != null) {
+                            throw error;
+                        }
+                        yield new Result<>(reducer.apply(results), Result.Type.CONTINUE);
+                    }
+                };
+            }
+
+            @Override
+            public Optional<BatchChain<?, P, R>> previous() {
+                return Optional.of(BatchChain.this);
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+    }
+
     default BatchChain<P, R, R> filter(final String name, final Predicate<R> filter) {
         final var chain = new BatchChain<P, R, R>() {
             @Override
@@ -179,6 +242,16 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
         return chain;
     }
 
+    /**
+     * Executes {@code consumer} with the previous value and forwards the value.
+     *
+     * If the consumer is {@link Checkpointable} and a checkpoint store is configured ({@link RunConfiguration#setCheckpointStore}),
+     * the step is skipped when a previous failed run completed it, otherwise it is restored from its last checkpoint before being executed.
+     *
+     * @param name     step name.
+     * @param consumer the step logic.
+     * @return the new chain element.
+     */
     default BatchChain<P, R, R> then(final String name, final Consumer<R> consumer) {
         final var chain = new BatchChain<P, R, R>() {
             @Override
@@ -186,7 +259,19 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
                 return switch (previous.type()) {
                     case SKIP -> new Result<>(previous.value(), Result.Type.SKIP);
                     case CONTINUE -> {
+                        final var checkpoint = configuration != null && configuration.checkpointStore != null &&
+                                consumer instanceof Checkpointable ? new Checkpoint(configuration.checkpointStore, name) : null;
+                        if (checkpoint != null) {
+                            if (checkpoint.isCompleted()) {
+                                Logger.getLogger(BatchChain.class.getName()).info(() -> "Skipping completed step '" + name + "'");
+                                yield previous;
+                            }
+                            Checkpointable.class.cast(consumer).restore(checkpoint);
+                        }
                         consumer.accept(previous.value());
+                        if (checkpoint != null) {
+                            checkpoint.complete();
+                        }
                         yield previous;
                     }
                 };
@@ -208,6 +293,74 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
         return chain;
     }
 
+    /**
+     * Runs {@code stage} in its own thread, pushing the elements of the returned iterator in a bounded queue.
+     * Next step gets a {@link PipedIterator} consuming this queue, this enables to overlap a reader and a writer
+     * with backpressure (reader waits when {@code capacity} elements are pending).
+     *
+     * The piped iterator being a {@link BatchPromise}, this step is traced until the stage iterator is fully drained
+     * and it is awaited at the end of the run ({@link RunConfiguration#setMaxBatchPromiseAwait(long)}).
+     *
+     * @param name     step name.
+     * @param capacity max number of pending elements.
+     * @param stage    creates the iterator to drain from previous step value, it is called in the stage thread.
+     * @param <C>      element type.
+     * @return the new chain element.
+     */
+    default <C> BatchChain<P, R, PipedIterator<C>> pipe(final String name, final int capacity, final Function<R, Iterator<C>> stage) {
+        return pipe(name, capacity, null, stage);
+    }
+
+    /**
+     * Same as {@link #pipe(String, int, Function)} with a custom executor.
+     *
+     * @param name     step name.
+     * @param capacity max number of pending elements.
+     * @param executor the executor running the stage, if {@code null} a thread is created with {@link RunConfiguration#setThreadFactory}
+     *                 or a daemon thread if not set.
+     * @param stage    creates the iterator to drain from previous step value, it is called in the stage thread.
+     * @param <C>      element type.
+     * @return the new chain element.
+     */
+    default <C> BatchChain<P, R, PipedIterator<C>> pipe(final String name, final int capacity, final Executor executor,
+                                                        final Function<R, Iterator<C>> stage) {
+        final var chain = new BatchChain<P, R, PipedIterator<C>>() {
+            @Override
+            public Result<PipedIterator<C>> execute(final RunConfiguration configuration, final Result<R> previous) {
+                return switch (previous.type()) {
+                    case SKIP -> new Result<>(null, Result.Type.SKIP);
+                    case CONTINUE -> new Result<>(
+                            new PipedIterator<>(capacity, executor != null ? executor : task -> {
+                                final Thread thread;
+                                if (configuration != null && configuration.threadFactory != null) {
+                                    thread = configuration.threadFactory.newThread(task);
+                                } else {
+                                    thread = new Thread(task);
+                                    thread.setDaemon(true);
+                                }
+                                thread.setName("yupiik-batch-pipe-" + name);
+                                thread.start();
+                            }, () -> stage.apply(previous.value())),
+                            Result.Type.CONTINUE);
+                };
+            }
+
+            @Override
+            public Optional<BatchChain<?, P, R>> previous() {
+                return Optional.of(BatchChain.this);
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+        if (Commentifiable.class.isInstance(stage)) {
+            return new CommentifiableBatchChain<>(chain, Commentifiable.class.cast(stage), ofNullable(this));
+        }
+        return chain;
+    }
+
     /**
      * Mark a value (of a {@link Result}) as "commentifiable" which means it can be used as representation of the result.
      * Note that it is often stored in a database so keep it short.
@@ -247,7 +400,106 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
         }
     }
 
-    private void await(final RunConfiguration configuration, final List<CompletableFuture<?>> promises) {
+    /**
+     * Root of a partition chain, it just emits the partition value.
+     *
+     * @param value the partition.
+     * @param <K>   partition type.
+     */
+    record PartitionRoot<K>(K value) implements BatchRoot<K> {
+        @Override
+        public Result<K> execute() {
+            return new Result<>(value, Result.Type.CONTINUE);
+        }
+
+        @Override
+        public boolean skipTracing() {
+            return true;
+        }
+
+        @Override
+        public String name() {
+            return "partition";
+        }
+    }
+
+    /**
+     * Element of a partition chain, only there to suffix the name with the partition index for the tracing.
+     */
+    record PartitionElement<A, B, C>(BatchChain<A, B, C> chain, String suffix) implements BatchChain<A, B, C>, Commentifiable {
+        @Override
+        public Optional<BatchChain<?, A, B>> previous() {
+            return chain.previous();
+        }
+
+        @Override
+        public String name() {
+            return chain.name() + suffix;
+        }
+
+        @Override
+        public boolean skipTracing() {
+            return chain.skipTracing();
+        }
+
+        @Override
+        public Result<C> execute(final RunConfiguration configuration, final Result<B> previous) {
+            return chain.execute(configuration, previous);
+        }
+
+        @Override
+        public String toComment() {
+            return chain instanceof Commentifiable c ? c.toComment() : null;
+        }
+    }
+
+    // from the first element (or stop - included - if not null) to last
+    private static List<BatchChain<?, ?, ?>> elements(final BatchChain<?, ?, ?> last, final BatchChain<?, ?, ?> stop) {
+        final var chain = new ArrayList<BatchChain<?, ?, ?>>();
+        BatchChain<?, ?, ?> current = last;
+        while (current != null) {
+            chain.add(current);
+            if (current == stop) {
+                break;
+            }
+            current = current.previous().orElse(null);
+        }
+        reverse(chain);
+        return chain;
+    }
+
+    private static Result<?> executeChain(final RunConfiguration configuration, final List<BatchChain<?, ?, ?>> chain) {
+        final Function<BatchChain<?, ?, ?>, Executable<?, ?>> wrapper = configuration != null && configuration.elementExecutionWrapper != null ?
+                e -> configuration.elementExecutionWrapper.apply(e) : e -> e;
+        Result<?> result = null; // starting node generates a result without a previous one normally
+        final var promises = new CopyOnWriteArrayList<CompletableFuture<?>>();
+        final var pipes = new ArrayList<PipedIterator<?>>();
+        try {
+            for (final var it : chain) {
+                result = wrapper.apply(BatchChain.class.cast(it)).execute(configuration, Result.class.cast(result));
+                if (result.value() instanceof PipedIterator<?> pipe) {
+                    pipes.add(pipe);
+                }
+                if (result.value() instanceof BatchPromise<?> promise) {
+                    final var end = promise.end().toCompletableFuture();
+                    promises.add(end);
+                    end.whenComplete((ok, ko) -> {
+                        if (!end.isCompletedExceptionally() || configuration == null || !configuration.forceAwaitOnPromiseError) {
+                            promises.remove(end);
+                        }
+                    });
+                }
+            }
+        } catch (final RuntimeException | Error e) {
+            pipes.forEach(PipedIterator::close); // consumer failed, don't let producers wait for it
+            throw e;
+        } finally {
+            await(configuration, promises);
+        }
+        return result;
+    }
+
+    private static void await(final RunConfiguration configuration, final List<CompletableFuture<?>> promises) {
         if (configuration != null && configuration.maxBatchPromiseAwait == 0) {
             return;
         }
@@ -266,7 +518,7 @@ public interface BatchChain<PP, P, R> extends Executable<P, R> {
             } catch (final InterruptedException ie) {
                 Thread.currentThread().interrupt();
             } catch (final ExecutionException | TimeoutException e) {
-                Logger.getLogger(getClass().getName()).log(SEVERE, e, e::getMessage);
+                Logger.getLogger(BatchChain.class.getName()).log(SEVERE, e, e::getMessage);
                 if (configuration != null && configuration.failOnTimeout) {
                     promises.forEach(it -> {
                         try {
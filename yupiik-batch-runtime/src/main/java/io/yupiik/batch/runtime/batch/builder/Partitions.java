@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.batch.builder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Common splitters for {@link BatchChain#partition}.
+ * IMPORTANT: partitions are materialized in memory.
+ */
+public final class Partitions {
+    private Partitions() {
+        // no-op
+    }
+
+    /**
+     * Splits rows by hash of their key, rows with the same key are in the same partition and the incoming order is kept per partition.
+     *
+     * @param keyExtractor key of a row.
+     * @param count        number of partitions.
+     * @param <T>          row type.
+     * @param <K>          key type.
+     * @return the splitter.
+     */
+    public static <T, K> Function<Iterator<T>, List<List<T>>> byHash(final Function<T, K> keyExtractor, final int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be > 0: " + count);
+        }
+        return rows -> {
+            final List<List<T>> partitions = newPartitions(count);
+            while (rows.hasNext()) {
+                final var row = rows.next();
+                partitions.get(Math.floorMod(keyExtractor.apply(row).hashCode(), count)).add(row);
+            }
+            return partitions;
+        };
+    }
+
+    /**
+     * Splits rows by key range.
+     * Partition {@code i} contains keys lower than {@code bounds[i]} (and greater or equal to {@code bounds[i - 1]}),
+     * last partition contains keys greater or equal to the last bound so there are {@code bounds.size() + 1} partitions.
+     *
+     * @param keyExtractor key of a row.
+     * @param bounds       sorted upper bounds (exclusive) of the partitions.
+     * @param comparator   key comparator.
+     * @param <T>          row type.
+     * @param <K>          key type.
+     * @return the splitter.
+     */
+    public static <T, K> Function<Iterator<T>, List<List<T>>> byRange(final Function<T, K> keyExtractor,
+                                                                     final List<K> bounds,
+                                                                     final Comparator<K> comparator) {
+        return rows -> {
+            final List<List<T>> partitions = newPartitions(bounds.size() + 1);
+            while (rows.hasNext()) {
+                final var row = rows.next();
+                final var key = keyExtractor.apply(row);
+                int index = 0;
+                while (index < bounds.size() && comparator.compare(key, bounds.get(index)) >= 0) {
+                    index++;
+                }
+                partitions.get(index).add(row);
+            }
+            return partitions;
+        };
+    }
+
+    private static <T> List<List<T>> newPartitions(final int count) {
+        final var partitions = new ArrayList<List<T>>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        return partitions;
+    }
+}
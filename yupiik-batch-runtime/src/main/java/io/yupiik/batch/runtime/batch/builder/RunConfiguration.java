@@ -15,6 +15,9 @@
  */
 package io.yupiik.batch.runtime.batch.builder;
 
+import io.yupiik.batch.runtime.checkpoint.CheckpointStore;
+
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Function;
 
 public class RunConfiguration { // don't use a record, we don't want to break batches cause we added a toggle/config
@@ -23,6 +26,8 @@ public class RunConfiguration { // don't use a record, we don't want to break ba
     long maxBatchPromiseAwait = -1;
     boolean failOnTimeout = true;
     boolean forceAwaitOnPromiseError = true;
+    CheckpointStore checkpointStore;
+    ThreadFactory threadFactory;
 
     /**
      * IMPORTANT: if maxBatchPromiseAwait is not >0 this is ignored.
@@ -56,8 +61,49 @@ public class RunConfiguration { // don't use a record, we don't want to break ba
         return this;
     }
 
+    public Function<Runnable, Runnable> getExecutionWrapper() {
+        return executionWrapper;
+    }
+
+    public Function<BatchChain<?, ?, ?>, Executable<?, ?>> getElementExecutionWrapper() {
+        return elementExecutionWrapper;
+    }
+
     public RunConfiguration setForceAwaitOnPromiseError(final boolean forceAwaitOnPromiseError) {
         this.forceAwaitOnPromiseError = forceAwaitOnPromiseError;
         return this;
     }
+
+    /**
+     * Enables checkpoint/restart: {@link io.yupiik.batch.runtime.checkpoint.Checkpointable} steps save their progress in the store,
+     * when a run fails, next run skips the completed steps and resumes the failed one from its last token.
+     * The store is cleared when a run succeeds.
+     *
+     * @param checkpointStore the store to persist the checkpoints to, {@code null} to disable checkpointing.
+     * @return this.
+     */
+    public RunConfiguration setCheckpointStore(final CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+        return this;
+    }
+
+    public CheckpointStore getCheckpointStore() {
+        return checkpointStore;
+    }
+
+    /**
+     * Thread factory used by the steps which do not get an explicit executor (pipelined stages for example).
+     * For I/O bound chains, {@code Threads.virtualThreadFactory(prefix)} enables to use virtual threads when the JVM supports them.
+     *
+     * @param threadFactory the thread factory, {@code null} to use a new daemon platform thread per task (default).
+     * @return this.
+     */
+    public RunConfiguration setThreadFactory(final ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        return this;
+    }
+
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
+    }
 }
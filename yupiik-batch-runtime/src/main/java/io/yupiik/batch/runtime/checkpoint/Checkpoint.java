@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+import java.sql.Connection;
+
+/**
+ * Restart state of a step: a token (chunk index, last applied key, ...) saved by the step when some work is committed.
+ * When a run fails, next run can read the token to skip already done work.
+ */
+public class Checkpoint {
+    /**
+     * Token saved when a step fully succeeded, such a step is skipped on restart.
+     */
+    public static final String COMPLETED = "completed";
+
+    private final CheckpointStore store;
+    private final String step;
+    private final String token;
+
+    public Checkpoint(final CheckpointStore store, final String step) {
+        this.store = store;
+        this.step = step;
+        this.token = store.load(step);
+    }
+
+    public String step() {
+        return step;
+    }
+
+    /**
+     * @return the token saved by the previous run or {@code null} if the step was not started.
+     */
+    public String token() {
+        return COMPLETED.equals(token) ? null : token;
+    }
+
+    /**
+     * @return true if the previous run fully executed this step.
+     */
+    public boolean isCompleted() {
+        return COMPLETED.equals(token);
+    }
+
+    /**
+     * Saves the progress of the step, it must be called once the related work is committed.
+     *
+     * @param token the restart token.
+     */
+    public void save(final String token) {
+        store.save(step, token);
+    }
+
+    /**
+     * Saves the progress of the step in the transaction of {@code connection}, the caller commits it with the related work.
+     * It requires a {@link JdbcCheckpointStore} using the same database as the connection.
+     *
+     * @param connection the connection of the transaction to save the token in.
+     * @param token      the restart token.
+     */
+    public void save(final Connection connection, final String token) {
+        if (!(store instanceof JdbcCheckpointStore jdbc)) {
+            throw new IllegalStateException("Saving a checkpoint in a transaction requires a JdbcCheckpointStore, got " + store);
+        }
+        jdbc.save(connection, step, token);
+    }
+
+    public void complete() {
+        store.save(step, COMPLETED);
+    }
+}
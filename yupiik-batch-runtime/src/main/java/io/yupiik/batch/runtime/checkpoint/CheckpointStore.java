@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+/**
+ * Persists the restart tokens of the steps of a batch (see {@link Checkpoint}).
+ * A store is bound to a batch (name), the step name being the key of the tokens.
+ */
+public interface CheckpointStore {
+    /**
+     * @param step the step name.
+     * @return the last saved token of the step or {@code null} if there is none.
+     */
+    String load(String step);
+
+    /**
+     * @param step  the step name.
+     * @param token the token to save, it replaces the previous one.
+     */
+    void save(String step, String token);
+
+    /**
+     * Removes all the tokens of the batch, called when a run succeeds so next run starts from scratch.
+     */
+    void clear();
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+/**
+ * Marks a step (consumer used with {@code BatchChain#then}) as able to resume its work from a {@link Checkpoint}.
+ * It is only used when {@code RunConfiguration#setCheckpointStore} is set.
+ */
+public interface Checkpointable {
+    /**
+     * Called before the step execution with the checkpoint of the step.
+     * If the checkpoint has a token, the previous run failed during this step and the implementation should skip the work done until this token.
+     *
+     * @param checkpoint the checkpoint of the step, the implementation saves its progress with it.
+     */
+    void restore(Checkpoint checkpoint);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Stores checkpoints in a local properties file (one file per batch), the file is rewritten atomically at each save.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private final Path file;
+    private final Properties tokens = new Properties();
+    private final ReentrantLock lock = new ReentrantLock(); // not synchronized to not pin virtual threads during I/O
+
+    public FileCheckpointStore(final Path file) {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (final Reader reader = Files.newBufferedReader(file)) {
+                tokens.load(reader);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public String load(final String step) {
+        lock.lock();
+        try {
+            return tokens.getProperty(step);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void save(final String step, final String token) {
+        lock.lock();
+        try {
+            tokens.setProperty(step, token);
+            flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            tokens.clear();
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush() {
+        try {
+            final var parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final var tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (final Writer writer = Files.newBufferedWriter(tmp)) {
+                tokens.store(writer, "yupiik-batch checkpoints");
+            }
+            Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
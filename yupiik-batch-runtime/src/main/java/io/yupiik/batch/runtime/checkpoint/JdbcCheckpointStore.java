@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+import io.yupiik.batch.runtime.sql.SQLSupplier;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+/**
+ * Stores checkpoints in a database, next to the execution tracing tables.
+ * Default table is:
+ *
+ * <pre>
+ * CREATE TABLE BATCH_CHECKPOINT (
+ *   batch_name VARCHAR(255) NOT NULL,
+ *   step_name VARCHAR(255) NOT NULL,
+ *   token VARCHAR(2048),
+ *   updated TIMESTAMP,
+ *   PRIMARY KEY (batch_name, step_name)
+ * )
+ * </pre>
+ */
+public class JdbcCheckpointStore implements CheckpointStore {
+    private final SQLSupplier<Connection> dataSource;
+    private final String batchName;
+    private final Clock clock;
+
+    private String selectStatement = "" +
+            "SELECT token FROM BATCH_CHECKPOINT" +
+            " WHERE batch_name = ? AND step_name = ?";
+    private String updateStatement = "" +
+            "UPDATE BATCH_CHECKPOINT" +
+            " SET token = ?, updated = ?" +
+            " WHERE batch_name = ? AND step_name = ?";
+    private String insertStatement = "" +
+            "INSERT INTO BATCH_CHECKPOINT" +
+            " (token, updated, batch_name, step_name) VALUES" +
+            " (?, ?, ?, ?)";
+    private String deleteStatement = "" +
+            "DELETE FROM BATCH_CHECKPOINT" +
+            " WHERE batch_name = ?";
+
+    public JdbcCheckpointStore(final SQLSupplier<Connection> dataSource, final String batchName, final Clock clock) {
+        this.dataSource = dataSource;
+        this.batchName = batchName;
+        this.clock = clock;
+    }
+
+    /**
+     * Enables to override default statement if some columns were renamed.
+     * IMPORTANT: parameter order must stay the same (batch_name, step_name).
+     *
+     * @param selectStatement the select token statement to use.
+     * @return this.
+     */
+    public JdbcCheckpointStore setSelectStatement(final String selectStatement) {
+        this.selectStatement = selectStatement;
+        return this;
+    }
+
+    /**
+     * Enables to override default statement if some columns were renamed.
+     * IMPORTANT: parameter order must stay the same (token, updated, batch_name, step_name).
+     *
+     * @param updateStatement the update token statement to use.
+     * @return this.
+     */
+    public JdbcCheckpointStore setUpdateStatement(final String updateStatement) {
+        this.updateStatement = updateStatement;
+        return this;
+    }
+
+    /**
+     * Enables to override default statement if some columns were renamed.
+     * IMPORTANT: parameter order must stay the same (token, updated, batch_name, step_name).
+     *
+     * @param insertStatement the insert token statement to use.
+     * @return this.
+     */
+    public JdbcCheckpointStore setInsertStatement(final String insertStatement) {
+        this.insertStatement = insertStatement;
+        return this;
+    }
+
+    /**
+     * Enables to override default statement if some columns were renamed.
+     * IMPORTANT: parameter order must stay the same (batch_name).
+     *
+     * @param deleteStatement the delete batch tokens statement to use.
+     * @return this.
+     */
+    public JdbcCheckpointStore setDeleteStatement(final String deleteStatement) {
+        this.deleteStatement = deleteStatement;
+        return this;
+    }
+
+    @Override
+    public String load(final String step) {
+        try (final var connection = dataSource.get();
+             final var statement = connection.prepareStatement(selectStatement)) {
+            statement.setString(1, batchName);
+            statement.setString(2, step);
+            try (final var resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        } catch (final SQLException throwables) {
+            throw new IllegalStateException(throwables);
+        }
+    }
+
+    @Override
+    public void save(final String step, final String token) {
+        try (final var connection = dataSource.get()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                doSave(connection, step, token);
+                connection.commit();
+            } catch (final SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (final SQLException throwables) {
+            throw new IllegalStateException(throwables);
+        }
+    }
+
+    /**
+     * Saves a token without committing it, enables to save it in the same transaction as the related work.
+     *
+     * @param connection the connection to use, it must target the database of this store.
+     * @param step       the step name.
+     * @param token      the token to save.
+     */
+    public void save(final Connection connection, final String step, final String token) {
+        try {
+            doSave(connection, step, token);
+        } catch (final SQLException throwables) {
+            throw new IllegalStateException(throwables);
+        }
+    }
+
+    private void doSave(final Connection connection, final String step, final String token) throws SQLException {
+        final var now = LocalDateTime.now(clock);
+        boolean updated;
+        try (final var statement = connection.prepareStatement(updateStatement)) {
+            statement.setString(1, token);
+            statement.setObject(2, now);
+            statement.setString(3, batchName);
+            statement.setString(4, step);
+            updated = statement.executeUpdate() > 0;
+        }
+        if (!updated) {
+            try (final var statement = connection.prepareStatement(insertStatement)) {
+                statement.setString(1, token);
+                statement.setObject(2, now);
+                statement.setString(3, batchName);
+                statement.setString(4, step);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        try (final var connection = dataSource.get();
+             final var statement = connection.prepareStatement(deleteStatement)) {
+            statement.setString(1, batchName);
+            statement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (final SQLException throwables) {
+            throw new IllegalStateException(throwables);
+        }
+    }
+}
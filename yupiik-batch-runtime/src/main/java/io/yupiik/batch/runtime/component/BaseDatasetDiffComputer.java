@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.component.diff.Diff;
+import io.yupiik.batch.runtime.component.diff.DiffEntry;
+import io.yupiik.batch.runtime.component.diff.DiffStatistics;
+import io.yupiik.batch.runtime.component.diff.StreamingDiff;
+import io.yupiik.batch.runtime.iterator.CountingIterator;
+import io.yupiik.batch.runtime.iterator.RespectingContractIterator;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Common structure of the dataset diff computers: buffered ({@link Diff}) and streamed ({@link StreamingDiff}) modes
+ * and the hooks mapping the detected changes.
+ *
+ * @param <T> the incoming row type (and the type of the emitted changes).
+ * @param <R> the reference dataset element type.
+ * @param <P> the representation of a reference row passed to {@link #mapMiss(Object)} and {@link #mapUpdate(Object, Object)}.
+ */
+public abstract class BaseDatasetDiffComputer<T, R, P> implements BiFunction<Iterator<T>, Iterator<R>, Diff<T>> {
+    @Override
+    public Diff<T> apply(final Iterator<T> rawIncoming, final Iterator<R> rawReference) {
+        final var missing = new LinkedList<T>();
+        final var added = new LinkedList<T>();
+        final var updated = new LinkedList<T>();
+        final var statistics = apply(rawIncoming, rawReference, entry -> {
+            switch (entry.operation()) {
+                case ADD -> added.add(entry.value());
+                case UPDATE -> updated.add(entry.value());
+                case DELETE -> missing.add(entry.value());
+            }
+        });
+        return new Diff<>(missing, added, updated, statistics.initialTotal(), statistics.newSize());
+    }
+
+    /**
+     * Same as {@link #apply(Iterator, Iterator)} but instead of buffering the changes in memory they are
+     * emitted to a bounded queue from a dedicated thread, enabling the consumer to start applying them while the comparison runs.
+     *
+     * @param rawIncoming  new data.
+     * @param rawReference existing data.
+     * @param capacity     max number of pending changes before the comparison waits for the consumer.
+     * @return the streaming diff.
+     */
+    public StreamingDiff<T> stream(final Iterator<T> rawIncoming, final Iterator<R> rawReference, final int capacity) {
+        return stream(rawIncoming, rawReference, capacity, task -> {
+            final var thread = new Thread(task, getClass().getName() + "-stream");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    public StreamingDiff<T> stream(final Iterator<T> rawIncoming, final Iterator<R> rawReference,
+                                   final int capacity, final Executor executor) {
+        return new StreamingDiff<>(capacity, executor, sink -> apply(rawIncoming, rawReference, sink));
+    }
+
+    /**
+     * Compares both datasets and emits each change to {@code sink} as soon as it is detected.
+     *
+     * @param rawIncoming  new data.
+     * @param rawReference existing data.
+     * @param sink         change callback.
+     * @return the counters of the diff.
+     */
+    public DiffStatistics apply(final Iterator<T> rawIncoming, final Iterator<R> rawReference, final Consumer<DiffEntry<T>> sink) {
+        try (final var reference = new CountingIterator<>(
+                rawReference instanceof RespectingContractIterator ? rawReference : new RespectingContractIterator<>(rawReference));
+             final var incoming = new CountingIterator<>(
+                     rawIncoming instanceof RespectingContractIterator ? rawIncoming : new RespectingContractIterator<>(rawIncoming))) {
+            return compare(incoming, reference, sink);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The actual comparison, iterators are already counting so statistics can use their totals.
+     *
+     * @param incoming  new data.
+     * @param reference existing data.
+     * @param sink      change callback.
+     * @return the counters of the diff.
+     * @throws Exception if the comparison fails.
+     */
+    protected abstract DiffStatistics compare(CountingIterator<T> incoming, CountingIterator<R> reference,
+                                              Consumer<DiffEntry<T>> sink) throws Exception;
+
+    protected abstract T mapMiss(P data);
+
+    protected T mapAdd(final T data) {
+        return data;
+    }
+
+    protected T mapUpdate(final P previous, final T current) {
+        return current;
+    }
+}
@@ -15,32 +15,217 @@
  */
 package io.yupiik.batch.runtime.component;
 
+import io.yupiik.batch.runtime.checkpoint.Checkpoint;
+import io.yupiik.batch.runtime.checkpoint.Checkpointable;
 import io.yupiik.batch.runtime.component.diff.Diff;
+import io.yupiik.batch.runtime.component.diff.DiffEntry;
+import io.yupiik.batch.runtime.component.diff.StreamingDiff;
 import io.yupiik.batch.runtime.fn.CommentifiableConsumer;
+import io.yupiik.batch.runtime.iterator.ChunkingIterator;
+import io.yupiik.batch.runtime.iterator.CountingIterator;
+import io.yupiik.batch.runtime.iterator.FlatMappingIterator;
+import io.yupiik.batch.runtime.progress.LoggingProgressListener;
+import io.yupiik.batch.runtime.progress.ProgressListener;
+import io.yupiik.batch.runtime.progress.ProgressTracker;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.function.Function.identity;
+
 public abstract class BaseDiffExecutor<T> implements CommentifiableConsumer<Diff<T>> {
     protected final Logger logger = Logger.getLogger(getClass().getName());
     protected final StringBuilder comments = new StringBuilder();
     protected final boolean dryRun;
     protected final int commitInterval;
 
+    private int parallelism = 1;
+    private ThreadFactory threadFactory;
+    private List<Set<DiffEntry.Operation>> phases = List.of(EnumSet.allOf(DiffEntry.Operation.class));
+    private Progress progress;
+    private PendingCheckpoint pendingCheckpoint; // chunk being applied when checkpointing
+    private Duration adaptiveTarget;
+    private int adaptiveMin;
+    private int adaptiveMax;
+    private volatile AdaptiveCommitInterval adaptiveCommitInterval;
+    private ProgressListener progressListener = new LoggingProgressListener();
+    private Duration progressInterval = Duration.ofSeconds(10);
+    private int rowLogSampling;
+    private volatile ProgressTracker tracker;
+    private final AtomicLong loggedRows = new AtomicLong();
+
     public BaseDiffExecutor(final boolean dryRun, final int commitInterval) {
         this.dryRun = dryRun;
         this.commitInterval = commitInterval;
     }
 
+    /**
+     * Enables to apply a {@link Diff} with multiple workers, each chunk of {@code commitInterval} rows being its own transaction.
+     * IMPORTANT: implementations must not share a connection between concurrent calls, for a {@code DiffExecutor} it means the connection
+     * supplier must be a pool ({@code DataSourceConfiguration#toPooledDataSource()} for example), a shared connection is rejected when applying the diff.
+     *
+     * @param parallelism number of workers, 1 (default) means sequential mode.
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * In parallel mode, enables to customize the worker threads.
+     * Workers mainly wait for the database so {@code Threads.virtualThreadFactory(prefix)} is a good fit when the JVM supports virtual threads.
+     *
+     * @param threadFactory worker factory, {@code null} to use daemon platform threads (default).
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setThreadFactory(final ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        return this;
+    }
+
+    /**
+     * In parallel mode, enables to order the operations.
+     * Each phase is fully applied before the next one starts, operations of the same phase run concurrently.
+     * Default is a single phase with all operations, a common alternative is {@code [[DELETE], [ADD, UPDATE]]}
+     * when unique constraints can be violated by an insert before the related deletion.
+     *
+     * @param phases ordered groups of operations, each operation must be used exactly once.
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setPhases(final List<Set<DiffEntry.Operation>> phases) {
+        final var all = EnumSet.noneOf(DiffEntry.Operation.class);
+        for (final var phase : phases) {
+            for (final var operation : phase) {
+                if (!all.add(operation)) {
+                    throw new IllegalArgumentException("Operation " + operation + " used in multiple phases: " + phases);
+                }
+            }
+        }
+        if (!all.containsAll(EnumSet.allOf(DiffEntry.Operation.class))) {
+            throw new IllegalArgumentException("Missing operations in phases: " + phases);
+        }
+        this.phases = List.copyOf(phases);
+        return this;
+    }
+
+    /**
+     * Enables to adapt the number of rows per transaction while applying a diff: the duration of each commit is measured
+     * and the next chunk size is computed from the observed throughput to reach {@code target} (at most doubling or halving it each time).
+     * Initial size is {@code commitInterval}. The chosen sizes are reported in {@link #toComment()}.
+     *
+     * @param target expected duration of a transaction, {@code null} to use a fixed {@code commitInterval} (default).
+     * @param min    min number of rows per transaction.
+     * @param max    max number of rows per transaction.
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setAdaptiveCommitInterval(final Duration target, final int min, final int max) {
+        if (target != null && (target.isNegative() || target.isZero())) {
+            throw new IllegalArgumentException("target must be positive: " + target);
+        }
+        if (min <= 0 || max < min) {
+            throw new IllegalArgumentException("Invalid bounds: min=" + min + ", max=" + max);
+        }
+        this.adaptiveTarget = target;
+        this.adaptiveMin = min;
+        this.adaptiveMax = max;
+        return this;
+    }
+
+    /**
+     * @param progressListener listener notified of the applied rows (sampled, see {@link #setProgressInterval(Duration)}), default logs a summary.
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setProgressListener(final ProgressListener progressListener) {
+        this.progressListener = progressListener == null ? ProgressListener.noop() : progressListener;
+        return this;
+    }
+
+    /**
+     * @param progressInterval min duration between two progress events (default 10s), last one is always emitted.
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setProgressInterval(final Duration progressInterval) {
+        this.progressInterval = progressInterval;
+        return this;
+    }
+
+    /**
+     * Rows and transaction boundaries are logged at {@code FINE} level, this enables to also log one row every {@code rowLogSampling}
+     * at {@code INFO} level (1 logs all rows, useful in dry run mode).
+     *
+     * @param rowLogSampling sampling rate, 0 (default) to not log rows at {@code INFO} level.
+     * @return this.
+     */
+    public BaseDiffExecutor<T> setRowLogSampling(final int rowLogSampling) {
+        if (rowLogSampling < 0) {
+            throw new IllegalArgumentException("rowLogSampling must be >= 0: " + rowLogSampling);
+        }
+        this.rowLogSampling = rowLogSampling;
+        return this;
+    }
+
     protected abstract void batchInsert(Class<T> type, Iterator<T> iterator);
 
     protected abstract void batchUpdate(Class<T> type, Iterator<T> iterator);
 
     protected abstract void batchDelete(Class<T> type, Iterator<T> iterator);
 
+    /**
+     * When {@code true}, added and updated rows are applied together - in the same transactions - by {@link #batchUpsert(Class, Iterator)}
+     * (relying on {@code MERGE} or {@code INSERT ... ON CONFLICT} statements for example) instead of two passes.
+     *
+     * @return {@code true} if {@link #batchUpsert(Class, Iterator)} must be used for added and updated rows.
+     */
+    protected boolean isUpsert() {
+        return false;
+    }
+
+    protected void batchUpsert(final Class<T> type, final Iterator<T> iterator) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support upserts");
+    }
+
+    /**
+     * Enables to replay a failed chunk: the related {@code batchXXX} method is called again with the same rows.
+     *
+     * @param attempt the failed attempt (1 for the first execution).
+     * @param error   the failure.
+     * @param rows    the number of rows of the chunk.
+     * @return the delay in milliseconds before replaying the chunk or a negative value to fail (default).
+     */
+    protected long retryDelay(final int attempt, final RuntimeException error, final int rows) {
+        return -1;
+    }
+
+    /**
+     * Called before applying a diff in parallel mode to fail fast if the executor can't be used concurrently.
+     */
+    protected void checkParallelSupport() {
+        // no-op
+    }
+
     protected String logMarker() {
         return "";
     }
@@ -52,64 +237,429 @@ public abstract class BaseDiffExecutor<T> implements CommentifiableConsumer<Diff
                 "     To Add: " + diff.added().size() + "\n" +
                 "  To Remove: " + diff.deleted().size() + "\n" +
                 "  To Update: " + diff.updated().size());
+        startAdaptiveCommitInterval();
+        startProgress((long) diff.added().size() + diff.updated().size() + diff.deleted().size());
         final var prefix = dryRun ? "[d]" : "";
-        if (!diff.added().isEmpty()) {
-            withCommitInterval(
-                    diff.added().iterator(), prefix + "[A] Adding ",
-                    dryRun ? this::noop : this::batchInsert);
+        if (parallelism > 1) {
+            if (progress != null) {
+                throw new IllegalStateException("Checkpointing is not supported in parallel mode");
+            }
+            checkParallelSupport();
+            applyInParallel(diff, prefix);
+        } else if (isUpsert()) {
+            if (!diff.added().isEmpty() || !diff.updated().isEmpty()) {
+                final long added = diff.added().size();
+                final var skippedAdded = skipCommitted(DiffEntry.Operation.ADD, diff.added().iterator());
+                final var skippedUpdated = skipCommitted(DiffEntry.Operation.UPDATE, diff.updated().iterator());
+                withCommitInterval(
+                        new FlatMappingIterator<>(List.of(skippedAdded, skippedUpdated).iterator(), identity()),
+                        prefix + "[M] Upserting ",
+                        trackUpsert(() -> added, dryRun ? this::noop : this::batchUpsert));
+            } else {
+                logger.info(() -> "No upsert" + logMarker());
+            }
+            if (!diff.deleted().isEmpty()) {
+                withCommitInterval(
+                        skipCommitted(DiffEntry.Operation.DELETE, diff.deleted().iterator()), prefix + "[D] Deleting ",
+                        track(DiffEntry.Operation.DELETE, dryRun ? this::noop : this::batchDelete));
+            } else {
+                logger.info(() -> "No deletion" + logMarker());
+            }
         } else {
-            logger.info(() -> "No insert" + logMarker());
+            if (!diff.added().isEmpty()) {
+                withCommitInterval(
+                        skipCommitted(DiffEntry.Operation.ADD, diff.added().iterator()), prefix + "[A] Adding ",
+                        track(DiffEntry.Operation.ADD, dryRun ? this::noop : this::batchInsert));
+            } else {
+                logger.info(() -> "No insert" + logMarker());
+            }
+            if (!diff.updated().isEmpty()) {
+                withCommitInterval(
+                        skipCommitted(DiffEntry.Operation.UPDATE, diff.updated().iterator()), prefix + "[U] Updating ",
+                        track(DiffEntry.Operation.UPDATE, dryRun ? this::noop : this::batchUpdate));
+            } else {
+                logger.info(() -> "No update" + logMarker());
+            }
+            if (!diff.deleted().isEmpty()) {
+                withCommitInterval(
+                        skipCommitted(DiffEntry.Operation.DELETE, diff.deleted().iterator()), prefix + "[D] Deleting ",
+                        track(DiffEntry.Operation.DELETE, dryRun ? this::noop : this::batchDelete));
+            } else {
+                logger.info(() -> "No deletion" + logMarker());
+            }
         }
-        if (!diff.updated().isEmpty()) {
-            withCommitInterval(
-                    diff.updated().iterator(), prefix + "[U] Updating ",
-                    dryRun ? this::noop : this::batchUpdate);
-        } else {
-            logger.info(() -> "No update" + logMarker());
+
+        comments.append(diff.toComment()).append('\n');
+        reportAdaptiveCommitInterval();
+        tracker.end();
+    }
+
+    /**
+     * Applies a {@link StreamingDiff} while it is computed, changes are buffered per kind up to {@code commitInterval}
+     * then committed so the memory stays bounded whatever the diff size is.
+     *
+     * @param diff the streaming diff to apply.
+     */
+    public void acceptStream(final StreamingDiff<T> diff) {
+        startAdaptiveCommitInterval();
+        startProgress(-1);
+        final var prefix = dryRun ? "[d]" : "";
+        final var added = new ArrayList<T>();
+        final var updated = new ArrayList<T>();
+        final var deleted = new ArrayList<T>();
+        final BiConsumer<Class<T>, Iterator<T>> insert = track(DiffEntry.Operation.ADD, dryRun ? this::noop : this::batchInsert);
+        final BiConsumer<Class<T>, Iterator<T>> update = track(DiffEntry.Operation.UPDATE, dryRun ? this::noop : this::batchUpdate);
+        final BiConsumer<Class<T>, Iterator<T>> delete = track(DiffEntry.Operation.DELETE, dryRun ? this::noop : this::batchDelete);
+        final boolean upsert = isUpsert();
+        // in upsert mode added and updated rows share the same buffer, seen additions include the ones committed by a previous run
+        final var seenAdded = new long[]{progress == null ? 0 : progress.committed(DiffEntry.Operation.ADD)};
+        final BiConsumer<Class<T>, Iterator<T>> merge = upsert ? trackUpsert(() -> seenAdded[0], dryRun ? this::noop : this::batchUpsert) : null;
+        try (diff) {
+            try {
+                while (diff.hasNext()) {
+                    final var entry = diff.next();
+                    if (progress != null && progress.skip(entry.operation())) {
+                        continue;
+                    }
+                    if (upsert && entry.operation() != DiffEntry.Operation.DELETE) {
+                        if (entry.operation() == DiffEntry.Operation.ADD) {
+                            seenAdded[0]++;
+                        }
+                        addAndCommitIfNeeded(added, entry.value(), prefix + "[M] Upserting ", merge);
+                        continue;
+                    }
+                    switch (entry.operation()) {
+                        case ADD -> addAndCommitIfNeeded(added, entry.value(), prefix + "[A] Adding ", insert);
+                        case UPDATE -> addAndCommitIfNeeded(updated, entry.value(), prefix + "[U] Updating ", update);
+                        case DELETE -> addAndCommitIfNeeded(deleted, entry.value(), prefix + "[D] Deleting ", delete);
+                    }
+                }
+                if (!added.isEmpty()) {
+                    if (upsert) {
+                        commit(added, prefix + "[M] Upserting ", merge);
+                    } else {
+                        commit(added, prefix + "[A] Adding ", insert);
+                    }
+                }
+                if (!updated.isEmpty()) {
+                    commit(updated, prefix + "[U] Updating ", update);
+                }
+                if (!deleted.isEmpty()) {
+                    commit(deleted, prefix + "[D] Deleting ", delete);
+                }
+            } catch (final RuntimeException ex) {
+                throw new IllegalStateException(ex);
+            }
         }
-        if (!diff.deleted().isEmpty()) {
-            withCommitInterval(
-                    diff.deleted().iterator(), prefix + "[D] Deleting ",
-                    dryRun ? this::noop : this::batchDelete);
-        } else {
-            logger.info(() -> "No deletion" + logMarker());
+
+        final var statistics = diff.statistics();
+        logger.info(() -> "" +
+                "Diff summary" + logMarker() + ":\n" +
+                "      Added: " + statistics.added() + "\n" +
+                "    Removed: " + statistics.deleted() + "\n" +
+                "    Updated: " + statistics.updated());
+        comments.append(statistics.toComment()).append('\n');
+        reportAdaptiveCommitInterval();
+        tracker.end();
+    }
+
+    /**
+     * @return a consumer applying a {@link StreamingDiff} (see {@link #acceptStream(StreamingDiff)}), can be used in a {@code BatchChain}.
+     */
+    public CommentifiableConsumer<StreamingDiff<T>> streaming() {
+        return new CommentifiableConsumer<>() {
+            @Override
+            public void accept(final StreamingDiff<T> diff) {
+                acceptStream(diff);
+            }
+
+            @Override
+            public String toComment() {
+                return BaseDiffExecutor.this.toComment();
+            }
+        };
+    }
+
+    /**
+     * Creates a consumer applying a {@link Diff} (as {@link #accept(Diff)}) which saves the number of committed rows per operation
+     * in its {@link Checkpoint} after each commit. When it is restored from a failed run, these rows are skipped.
+     *
+     * IMPORTANT: it assumes the diff is reproducible - same changes in the same order - so the reference dataset must not be the modified table
+     * (when it is, a recomputed diff already excludes applied changes and checkpointing is not needed). Parallel mode is not supported.
+     *
+     * By default the checkpoint is saved once the chunk is committed, in its own transaction, so a crash between both replays
+     * the chunk on restart (at least once semantic): statements must then be idempotent (upsert mode for example),
+     * otherwise the implementation must save the checkpoint in the transaction of the chunk (see {@link #saveCheckpoint(BiConsumer)}
+     * and {@code DiffExecutor#setCheckpointInTransaction}).
+     *
+     * @return a checkpointable consumer.
+     */
+    public CommentifiableConsumer<Diff<T>> resumable() {
+        return new ResumableConsumer<>() {
+            @Override
+            public void accept(final Diff<T> diff) {
+                withProgress(() -> BaseDiffExecutor.this.accept(diff));
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #resumable()} for a {@link StreamingDiff}.
+     *
+     * @return a checkpointable consumer.
+     */
+    public CommentifiableConsumer<StreamingDiff<T>> resumableStreaming() {
+        return new ResumableConsumer<>() {
+            @Override
+            public void accept(final StreamingDiff<T> diff) {
+                withProgress(() -> acceptStream(diff));
+            }
+        };
+    }
+
+    // in upsert mode, added and updated rows still use distinct chunks to respect phases but they share the upsert statement
+    private void applyInParallel(final Diff<T> diff, final String prefix) {
+        final boolean upsert = isUpsert();
+        final var counter = new AtomicInteger();
+        final var pool = Executors.newFixedThreadPool(parallelism, threadFactory != null ? threadFactory : task -> {
+            final var thread = new Thread(task, getClass().getName() + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (final var phase : phases) {
+                final var failures = new CopyOnWriteArrayList<RuntimeException>();
+                final var inFlight = new Semaphore(parallelism * 2); // bounds the number of pending chunks
+                final var tasks = new ArrayList<CompletableFuture<?>>();
+                for (final var operation : DiffEntry.Operation.values()) {
+                    if (!phase.contains(operation)) {
+                        continue;
+                    }
+                    final Collection<T> rows;
+                    final String logPrefix;
+                    final BiConsumer<Class<T>, Iterator<T>> handler;
+                    switch (operation) {
+                        case ADD -> {
+                            rows = diff.added();
+                            logPrefix = prefix + (upsert ? "[M] Upserting " : "[A] Adding ");
+                            handler = dryRun ? this::noop : (upsert ? this::batchUpsert : this::batchInsert);
+                        }
+                        case UPDATE -> {
+                            rows = diff.updated();
+                            logPrefix = prefix + (upsert ? "[M] Upserting " : "[U] Updating ");
+                            handler = dryRun ? this::noop : (upsert ? this::batchUpsert : this::batchUpdate);
+                        }
+                        default -> {
+                            rows = diff.deleted();
+                            logPrefix = prefix + "[D] Deleting ";
+                            handler = dryRun ? this::noop : this::batchDelete;
+                        }
+                    }
+
+                    final var chunks = new ChunkingIterator<>(rows.iterator(), this::chunkSize, false);
+                    int chunkIndex = 0;
+                    while (chunks.hasNext() && failures.isEmpty()) {
+                        final var chunk = chunks.next();
+                        final var chunkName = operation + " chunk #" + chunkIndex++;
+                        try {
+                            inFlight.acquire();
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException(e);
+                        }
+                        tasks.add(CompletableFuture.runAsync(() -> {
+                            try {
+                                commit(chunk, logPrefix, handler);
+                            } catch (final RuntimeException re) {
+                                failures.add(new IllegalStateException(chunkName + " failed: " + re.getMessage(), re));
+                            } finally {
+                                inFlight.release();
+                            }
+                        }, pool));
+                    }
+                }
+                CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+                if (!failures.isEmpty()) {
+                    final var error = failures.get(0);
+                    failures.stream().skip(1).forEach(error::addSuppressed);
+                    throw error;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
         }
+    }
 
-        comments.append(diff.toComment()).append('\n');
+    private <A> void addAndCommitIfNeeded(final List<A> buffer, final A row, final String logPrefix,
+                                          final BiConsumer<Class<A>, Iterator<A>> handler) {
+        buffer.add(row);
+        if (buffer.size() >= chunkSize()) {
+            commit(buffer, logPrefix, handler);
+        }
     }
 
     private <A> void withCommitInterval(final Iterator<A> rows,
                                         final String logPrefix,
                                         final BiConsumer<Class<A>, Iterator<A>> handler) {
-        final var entities = new ArrayList<A>();
+        final var chunks = new ChunkingIterator<>(rows, this::chunkSize, true);
+        try {
+            while (chunks.hasNext()) {
+                commit(chunks.next(), logPrefix, handler);
+            }
+        } catch (final RuntimeException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // commits a chunk in a single transaction and clears it
+    private <A> void commit(final List<A> entities, final String logPrefix,
+                            final BiConsumer<Class<A>, Iterator<A>> handler) {
+        logger.fine("[C][S] Starting transaction");
         try {
-            while (rows.hasNext()) {
-                logger.info("[C][S] Starting transaction");
+            logRows(entities, logPrefix);
+            final var entityType = entities.get(0).getClass();
+            final var adaptive = dryRun ? null : adaptiveCommitInterval;
+            final long start = adaptive == null ? 0 : System.nanoTime();
+            int attempt = 1;
+            while (true) {
                 try {
-                    for (int i = 0; i < commitInterval && rows.hasNext(); i++) {
-                        final var row = rows.next();
-                        logger.info(() -> logPrefix + row);
-                        entities.add(row);
+                    handler.accept((Class<A>) entityType, entities.iterator());
+                    break;
+                } catch (final RuntimeException re) {
+                    final long delay = retryDelay(attempt, re, entities.size());
+                    if (delay < 0) {
+                        throw re;
                     }
-                    if (entities.isEmpty()) {
-                        return;
+                    try {
+                        Thread.sleep(delay);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        re.addSuppressed(e);
+                        throw re;
                     }
-                    final var entityType = entities.get(0).getClass();
-                    handler.accept((Class<A>) entityType, entities.iterator());
-                    entities.clear();
-                } catch (final RuntimeException ex) {
-                    onException(ex);
-                    throw ex;
-                } catch (final Exception ex) {
-                    onException(ex);
-                    throw new IllegalStateException(ex);
-                } finally {
-                    logger.info("[C][E] Finished transaction");
+                    attempt++;
                 }
             }
+            if (adaptive != null) {
+                adaptive.committed(entities.size(), System.nanoTime() - start);
+            }
+            tracker.add(entities.size());
+            entities.clear();
         } catch (final RuntimeException ex) {
+            onException(ex);
+            throw ex;
+        } catch (final Exception ex) {
+            onException(ex);
             throw new IllegalStateException(ex);
+        } finally {
+            logger.fine("[C][E] Finished transaction");
+        }
+    }
+
+    private <A> void logRows(final List<A> entities, final String logPrefix) {
+        final int sampling = rowLogSampling;
+        if (sampling > 0) {
+            for (final var row : entities) {
+                if (loggedRows.getAndIncrement() % sampling == 0) {
+                    logger.info(() -> logPrefix + row);
+                } else {
+                    logger.fine(() -> logPrefix + row);
+                }
+            }
+        } else if (logger.isLoggable(Level.FINE)) {
+            for (final var row : entities) {
+                logger.fine(() -> logPrefix + row);
+            }
+        }
+    }
+
+    private void startProgress(final long total) {
+        loggedRows.set(0);
+        final var name = getClass().getSimpleName().isEmpty() ? getClass().getName() : getClass().getSimpleName();
+        tracker = new ProgressTracker(name + logMarker(), total, progressListener, progressInterval);
+    }
+
+    private int chunkSize() {
+        final var adaptive = adaptiveCommitInterval;
+        return adaptive == null ? commitInterval : adaptive.size();
+    }
+
+    private void startAdaptiveCommitInterval() {
+        adaptiveCommitInterval = adaptiveTarget == null ?
+                null : new AdaptiveCommitInterval(adaptiveTarget.toNanos(), adaptiveMin, adaptiveMax, commitInterval);
+    }
+
+    private void reportAdaptiveCommitInterval() {
+        final var adaptive = adaptiveCommitInterval;
+        if (adaptive != null) {
+            final var report = adaptive.toComment();
+            logger.info(() -> "Adaptive commit interval" + logMarker() + ": " + report);
+            comments.append(report).append('\n');
+        }
+    }
+
+    private Iterator<T> skipCommitted(final DiffEntry.Operation operation, final Iterator<T> rows) {
+        if (progress != null) {
+            while (rows.hasNext() && progress.skip(operation)) {
+                rows.next();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Enables an implementation to save the checkpoint of the chunk being applied in its transaction, just before committing it,
+     * to avoid to replay it if the process stops between the commit and the checkpoint save.
+     * When it returns {@code true}, the checkpoint is not saved again after the chunk.
+     *
+     * @param saver the callback saving the token of the checkpoint in the current transaction.
+     * @return {@code true} if there is a checkpoint for the chunk (and {@code saver} was called), {@code false} otherwise.
+     */
+    protected boolean saveCheckpoint(final BiConsumer<Checkpoint, String> saver) {
+        final var pending = pendingCheckpoint;
+        if (pending == null) {
+            return false;
+        }
+        saver.accept(pending.checkpoint, pending.token.get());
+        pending.saved = true;
+        return true;
+    }
+
+    private BiConsumer<Class<T>, Iterator<T>> track(final DiffEntry.Operation operation, final BiConsumer<Class<T>, Iterator<T>> handler) {
+        if (progress == null || dryRun) {
+            return handler;
+        }
+        final var current = progress;
+        return (type, rows) -> {
+            final var counting = new CountingIterator<>(rows);
+            final var pending = new PendingCheckpoint(current.checkpoint, () -> current.token(operation, counting.getTotal()));
+            pendingCheckpoint = pending;
+            try {
+                handler.accept(type, counting);
+            } finally {
+                pendingCheckpoint = null;
+            }
+            current.committed(operation, counting.getTotal(), !pending.saved);
+        };
+    }
+
+    // chunks are made of added rows first then updated ones, the committed rows are split accordingly in the checkpoint
+    private BiConsumer<Class<T>, Iterator<T>> trackUpsert(final LongSupplier added, final BiConsumer<Class<T>, Iterator<T>> handler) {
+        if (progress == null || dryRun) {
+            return handler;
         }
+        final var current = progress;
+        return (type, rows) -> {
+            final var counting = new CountingIterator<>(rows);
+            final var pending = new PendingCheckpoint(current.checkpoint, () -> current.tokenUpsert(counting.getTotal(), added.getAsLong()));
+            pendingCheckpoint = pending;
+            try {
+                handler.accept(type, counting);
+            } finally {
+                pendingCheckpoint = null;
+            }
+            current.committedUpsert(counting.getTotal(), added.getAsLong(), !pending.saved);
+        };
     }
 
     private <A> void noop(final Class<A> type, final Iterator<A> list) {
@@ -117,7 +667,9 @@ public abstract class BaseDiffExecutor<T> implements CommentifiableConsumer<Diff
     }
 
     private void onException(final Exception ex) {
-        comments.append(ex.getMessage()).append('\n');
+        synchronized (comments) {
+            comments.append(ex.getMessage()).append('\n');
+        }
         logger.log(Level.SEVERE, ex.getMessage(), ex);
     }
 
@@ -125,4 +677,157 @@ public abstract class BaseDiffExecutor<T> implements CommentifiableConsumer<Diff
     public String toComment() {
         return comments.toString().strip();
     }
+
+    private abstract class ResumableConsumer<A> implements CommentifiableConsumer<A>, Checkpointable {
+        private Checkpoint checkpoint;
+
+        @Override
+        public void restore(final Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public String toComment() {
+            return BaseDiffExecutor.this.toComment();
+        }
+
+        protected void withProgress(final Runnable task) {
+            progress = checkpoint == null ? null : new Progress(checkpoint);
+            try {
+                task.run();
+            } finally {
+                progress = null;
+                checkpoint = null;
+            }
+        }
+    }
+
+    // next size = rows the last transaction would have committed in the target duration (bounded to x2 or /2 to avoid oscillations)
+    private static class AdaptiveCommitInterval {
+        private final long target;
+        private final int min;
+        private final int max;
+        private final int initial;
+
+        private int size;
+        private int smallest;
+        private int largest;
+        private long transactions;
+        private long duration;
+
+        private AdaptiveCommitInterval(final long target, final int min, final int max, final int initial) {
+            this.target = target;
+            this.min = min;
+            this.max = max;
+            this.initial = Math.max(min, Math.min(max, initial));
+            this.size = this.initial;
+            this.smallest = this.initial;
+            this.largest = this.initial;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized void committed(final int rows, final long nanos) {
+            transactions++;
+            duration += nanos;
+            if (rows < size) { // partial chunk (end of an operation or created before the last change), not representative
+                return;
+            }
+            final long ideal = nanos <= 0 ? (long) size * 2 : (long) (rows * (target / (double) nanos));
+            size = (int) Math.max(min, Math.min(max, Math.max(size / 2, Math.min((long) size * 2, ideal))));
+            smallest = Math.min(smallest, size);
+            largest = Math.max(largest, size);
+        }
+
+        private synchronized String toComment() {
+            return "commit-interval: initial=" + initial + ", min=" + smallest + ", max=" + largest + ", last=" + size +
+                    ", transactions=" + transactions +
+                    ", average-duration=" + (transactions == 0 ? 0 : NANOSECONDS.toMillis(duration / transactions)) + "ms";
+        }
+    }
+
+    // token is the number of committed rows per operation: ADD=1000,UPDATE=0,DELETE=20
+    private static class Progress {
+        private final Checkpoint checkpoint;
+        private final long[] toSkip = new long[DiffEntry.Operation.values().length];
+        private final long[] committed = new long[DiffEntry.Operation.values().length];
+
+        private Progress(final Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            final var token = checkpoint.token();
+            if (token != null && !token.isBlank()) {
+                for (final var counter : token.split(",")) {
+                    final int sep = counter.indexOf('=');
+                    final int index = DiffEntry.Operation.valueOf(counter.substring(0, sep).strip()).ordinal();
+                    toSkip[index] = Long.parseLong(counter.substring(sep + 1).strip());
+                    committed[index] = toSkip[index];
+                }
+            }
+        }
+
+        private boolean skip(final DiffEntry.Operation operation) {
+            if (toSkip[operation.ordinal()] > 0) {
+                toSkip[operation.ordinal()]--;
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized long committed(final DiffEntry.Operation operation) {
+            return committed[operation.ordinal()];
+        }
+
+        private synchronized String token(final DiffEntry.Operation operation, final long rows) {
+            final var next = committed.clone();
+            next[operation.ordinal()] += rows;
+            return toToken(next);
+        }
+
+        private synchronized void committed(final DiffEntry.Operation operation, final long rows, final boolean save) {
+            committed[operation.ordinal()] += rows;
+            if (save) {
+                checkpoint.save(toToken(committed));
+            }
+        }
+
+        private synchronized String tokenUpsert(final long rows, final long added) {
+            final var next = committed.clone();
+            upsert(next, rows, added);
+            return toToken(next);
+        }
+
+        private synchronized void committedUpsert(final long rows, final long added, final boolean save) {
+            upsert(committed, rows, added);
+            if (save) {
+                checkpoint.save(toToken(committed));
+            }
+        }
+
+        private void upsert(final long[] counters, final long rows, final long added) {
+            final long adds = Math.max(0, Math.min(rows, added - counters[DiffEntry.Operation.ADD.ordinal()]));
+            counters[DiffEntry.Operation.ADD.ordinal()] += adds;
+            counters[DiffEntry.Operation.UPDATE.ordinal()] += rows - adds;
+        }
+
+        private String toToken(final long[] counters) {
+            final var token = new StringJoiner(",");
+            for (final var op : DiffEntry.Operation.values()) {
+                token.add(op.name() + '=' + counters[op.ordinal()]);
+            }
+            return token.toString();
+        }
+    }
+
+    private static class PendingCheckpoint {
+        private final Checkpoint checkpoint;
+        private final Supplier<String> token;
+        private boolean saved;
+
+        private PendingCheckpoint(final Checkpoint checkpoint, final Supplier<String> token) {
+            this.checkpoint = checkpoint;
+            this.token = token;
+        }
+    }
 }
@@ -15,16 +15,18 @@
  */
 package io.yupiik.batch.runtime.component;
 
-import io.yupiik.batch.runtime.component.diff.Diff;
+import io.yupiik.batch.runtime.component.diff.DiffEntry;
+import io.yupiik.batch.runtime.component.diff.DiffStatistics;
 import io.yupiik.batch.runtime.documentation.Component;
 import io.yupiik.batch.runtime.iterator.CountingIterator;
-import io.yupiik.batch.runtime.iterator.RespectingContractIterator;
 
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.ADD;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.DELETE;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.UPDATE;
 
 // highly inspired from
 // https://github.com/rmannibucau/comparator/blob/master/src/main/java/com/github/rmannibucau/comparator/DifferenceAnalyzer.java#L22
@@ -35,8 +37,11 @@ import java.util.function.BiPredicate;
         It enables to detect deletions and additions and it will be reflected in the resulting `Diff` instance.
                 
         If equals, the `BiPredicate` will be used to check it is actually equal or not.
-        If not the data will be considered updated, otherwise not changed and ignored from the diff.""")
-public class DatasetDiffComputer<T> implements BiFunction<Iterator<T>, Iterator<T>, Diff<T>> {
+        If not the data will be considered updated, otherwise not changed and ignored from the diff.
+                
+        For big datasets, `stream()` enables to not buffer the changes in memory but to consume them while the comparison runs
+        (`BaseDiffExecutor#streaming()` can apply them).""")
+public class DatasetDiffComputer<T> extends BaseDatasetDiffComputer<T, T, T> {
     private final Comparator<T> keyComparator;
     private final BiPredicate<T, T> equalTester;
 
@@ -46,78 +51,69 @@ public class DatasetDiffComputer<T> implements BiFunction<Iterator<T>, Iterator<
     }
 
     @Override
-    public Diff<T> apply(final Iterator<T> rawIncoming, final Iterator<T> rawReference) {
-        try (final var reference = new CountingIterator<>(
-                rawReference instanceof RespectingContractIterator ? rawReference : new RespectingContractIterator<>(rawReference));
-             final var incoming = new CountingIterator<>(
-                     rawIncoming instanceof RespectingContractIterator ? rawIncoming : new RespectingContractIterator<>(rawIncoming))) {
-
-            final var missing = new LinkedList<T>();
-            final var added = new LinkedList<T>();
-            final var updated = new LinkedList<T>();
+    protected DiffStatistics compare(final CountingIterator<T> incoming, final CountingIterator<T> reference,
+                                     final Consumer<DiffEntry<T>> sink) {
+        long missing = 0;
+        long added = 0;
+        long updated = 0;
 
-            T existingData = null;
-            T newData = null;
-            boolean oneMoreIteration = reference.hasNext() && incoming.hasNext();
+        T existingData = null;
+        T newData = null;
+        boolean oneMoreIteration = reference.hasNext() && incoming.hasNext();
 
-            if (oneMoreIteration) {
-                existingData = reference.next();
-                newData = incoming.next();
-            }
+        if (oneMoreIteration) {
+            existingData = reference.next();
+            newData = incoming.next();
+        }
 
-            while (oneMoreIteration) {
-                final int diff = keyComparator.compare(existingData, newData);
-                if (diff > 0) {
-                    added.add(mapAdd(newData));
-                    oneMoreIteration = incoming.hasNext();
-                    if (oneMoreIteration) {
-                        newData = incoming.next();
-                    } else {
-                        missing.add(mapMiss(existingData));
-                    }
-                } else if (diff < 0) {
-                    missing.add(mapMiss(existingData));
-                    oneMoreIteration = reference.hasNext();
-                    if (oneMoreIteration) {
-                        existingData = reference.next();
-                    } else {
-                        added.add(mapAdd(newData));
-                    }
+        while (oneMoreIteration) {
+            final int diff = keyComparator.compare(existingData, newData);
+            if (diff > 0) {
+                sink.accept(new DiffEntry<>(ADD, mapAdd(newData)));
+                added++;
+                oneMoreIteration = incoming.hasNext();
+                if (oneMoreIteration) {
+                    newData = incoming.next();
                 } else {
-                    if (!equalTester.test(existingData, newData)) {
-                        updated.add(mapUpdate(existingData, newData));
-                    } // else no diff
-                    oneMoreIteration = reference.hasNext() && incoming.hasNext();
-                    if (oneMoreIteration) {
-                        existingData = reference.next();
-                        newData = incoming.next();
-                    }
+                    sink.accept(new DiffEntry<>(DELETE, mapMiss(existingData)));
+                    missing++;
+                }
+            } else if (diff < 0) {
+                sink.accept(new DiffEntry<>(DELETE, mapMiss(existingData)));
+                missing++;
+                oneMoreIteration = reference.hasNext();
+                if (oneMoreIteration) {
+                    existingData = reference.next();
+                } else {
+                    sink.accept(new DiffEntry<>(ADD, mapAdd(newData)));
+                    added++;
+                }
+            } else {
+                if (!equalTester.test(existingData, newData)) {
+                    sink.accept(new DiffEntry<>(UPDATE, mapUpdate(existingData, newData)));
+                    updated++;
+                } // else no diff
+                oneMoreIteration = reference.hasNext() && incoming.hasNext();
+                if (oneMoreIteration) {
+                    existingData = reference.next();
+                    newData = incoming.next();
                 }
             }
-            while (incoming.hasNext()) {
-                added.add(mapAdd(incoming.next()));
-            }
-            while (reference.hasNext()) {
-                missing.add(mapMiss(reference.next()));
-            }
-
-            return new Diff<>(missing, added, updated, reference.getTotal(), incoming.getTotal());
-        } catch (final RuntimeException | Error e) {
-            throw e;
-        } catch (final Exception e) {
-            throw new IllegalStateException(e);
         }
-    }
+        while (incoming.hasNext()) {
+            sink.accept(new DiffEntry<>(ADD, mapAdd(incoming.next())));
+            added++;
+        }
+        while (reference.hasNext()) {
+            sink.accept(new DiffEntry<>(DELETE, mapMiss(reference.next())));
+            missing++;
+        }
 
-    protected T mapMiss(final T data) {
-        return data;
+        return new DiffStatistics(missing, added, updated, reference.getTotal(), incoming.getTotal());
     }
 
-    protected T mapAdd(final T data) {
+    @Override
+    protected T mapMiss(final T data) {
         return data;
     }
-
-    protected T mapUpdate(final T previous, final T current) {
-        return current;
-    }
 }
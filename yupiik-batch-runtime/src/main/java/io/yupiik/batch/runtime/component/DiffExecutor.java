@@ -16,6 +16,8 @@
 package io.yupiik.batch.runtime.component;
 
 import io.yupiik.batch.runtime.documentation.Component;
+import io.yupiik.batch.runtime.sql.RetryPolicy;
+import io.yupiik.batch.runtime.sql.ReusedSQLSupplierDataSource;
 import io.yupiik.batch.runtime.sql.SQLBiConsumer;
 import io.yupiik.batch.runtime.sql.SQLSupplier;
 
@@ -31,7 +33,21 @@ import java.util.logging.Logger;
                 
         It will apply it in a database represented by the `connectionSupplier` with the provided `commitInterval`.
         The statements are creating using the related factories - `insertFactory`, `updateFactory`, `deleteFactory`.
-                
+
+        If an `upsertFactory` is set (`MERGE` or `INSERT ... ON CONFLICT` statement), added and updated rows are applied
+        together with it - in the same transactions - instead of two passes.
+        `SQLBiConsumer.BatchedIn` enables to delete multiple keys per statement (`DELETE ... WHERE key IN (...)`).
+        For large loads, `BulkInsert` can be used as `insertFactory`: it uses PostgreSQL `COPY` when available
+        and multi-row `INSERT ... VALUES (...), (...)` statements otherwise.
+
+        In parallel mode, the `connectionSupplier` must not share its connection between workers, `DataSourceConfiguration#toPooledDataSource()`
+        provides a suitable pool.
+
+        A `RetryPolicy` can be set to replay a chunk failing with a transient error (connection lost, deadlock, ...) on a new connection.
+
+        When applied with `resumable()`/`resumableStreaming()` and a `JdbcCheckpointStore` on the same database,
+        `setCheckpointInTransaction(true)` saves the checkpoint in the transaction of each chunk so a restart never replays a committed chunk.
+
         Finally, `dryRun` toggle enables to simulate the processing without issuing any modification in the database.""")
 public class DiffExecutor<A> extends BaseDiffExecutor<A> {
     private final Logger logger = Logger.getLogger(getClass().getName());
@@ -39,6 +55,9 @@ public class DiffExecutor<A> extends BaseDiffExecutor<A> {
     private final Supplier<? extends SQLBiConsumer<Connection, A>> insertFactory;
     private final Supplier<? extends SQLBiConsumer<Connection, A>> updateFactory;
     private final Supplier<? extends SQLBiConsumer<Connection, A>> deleteFactory;
+    private Supplier<? extends SQLBiConsumer<Connection, A>> upsertFactory;
+    private RetryPolicy retryPolicy;
+    private boolean checkpointInTransaction;
 
     public DiffExecutor(final SQLSupplier<Connection> connectionSupplier,
                         final int commitInterval, final boolean dryRun,
@@ -52,6 +71,72 @@ public class DiffExecutor<A> extends BaseDiffExecutor<A> {
         this.deleteFactory = deleteFactory;
     }
 
+    public DiffExecutor(final SQLSupplier<Connection> connectionSupplier,
+                        final int commitInterval, final boolean dryRun,
+                        final Supplier<? extends SQLBiConsumer<Connection, A>> upsertFactory,
+                        final Supplier<? extends SQLBiConsumer<Connection, A>> deleteFactory) {
+        this(connectionSupplier, commitInterval, dryRun, null, null, deleteFactory);
+        setUpsertFactory(upsertFactory);
+    }
+
+    /**
+     * @param upsertFactory statement factory applying added and updated rows, {@code null} to use insert and update factories
+     *                      (only possible if they were passed to the constructor).
+     * @return this.
+     */
+    public DiffExecutor<A> setUpsertFactory(final Supplier<? extends SQLBiConsumer<Connection, A>> upsertFactory) {
+        if (upsertFactory == null && (insertFactory == null || updateFactory == null)) {
+            throw new IllegalArgumentException("An upsert factory is required when insert and update factories are not set");
+        }
+        this.upsertFactory = upsertFactory;
+        return this;
+    }
+
+    /**
+     * Enables to replay a failed chunk on a new connection when the error is retryable (database failover for example).
+     * IMPORTANT: statement factories are called for each attempt and the connection supplier must return a working connection
+     * after a connection error (a {@code ConnectionPool} or {@code ReusedSQLSupplierDataSource} which recreates its connection in such a case).
+     *
+     * @param retryPolicy the retry policy, {@code null} to not retry (default).
+     * @return this.
+     */
+    public DiffExecutor<A> setRetryPolicy(final RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Saves the checkpoint of a chunk - when applied with {@link #resumable()} or {@link #resumableStreaming()} - in the chunk transaction
+     * instead of after its commit. It requires the checkpoint store to be a {@code JdbcCheckpointStore} using the same database.
+     *
+     * @param checkpointInTransaction {@code true} to save checkpoints in the chunk transactions.
+     * @return this.
+     */
+    public DiffExecutor<A> setCheckpointInTransaction(final boolean checkpointInTransaction) {
+        this.checkpointInTransaction = checkpointInTransaction;
+        return this;
+    }
+
+    @Override
+    protected boolean isUpsert() {
+        return upsertFactory != null;
+    }
+
+    @Override
+    protected void checkParallelSupport() {
+        if (dryRun) { // no connection used
+            return;
+        }
+        try (final var connection = connectionSupplier.get()) {
+            if (ReusedSQLSupplierDataSource.isShared(connection)) {
+                throw new IllegalStateException("Parallel mode requires a connection per worker but the connection supplier shares a single connection, " +
+                        "use a pool (DataSourceConfiguration#toPooledDataSource() for example)");
+            }
+        } catch (final SQLException sqle) {
+            throw new IllegalStateException(sqle);
+        }
+    }
+
     @Override
     protected void batchInsert(final Class<A> type, final Iterator<A> iterator) {
         handle(iterator, newInsert());
@@ -62,6 +147,11 @@ public class DiffExecutor<A> extends BaseDiffExecutor<A> {
         handle(iterator, newUpdate());
     }
 
+    @Override
+    protected void batchUpsert(final Class<A> type, final Iterator<A> iterator) {
+        handle(iterator, newUpsert());
+    }
+
     @Override
     protected void batchDelete(final Class<A> type, final Iterator<A> iterator) {
         handle(iterator, newDelete());
@@ -79,31 +169,52 @@ public class DiffExecutor<A> extends BaseDiffExecutor<A> {
         return insertFactory.get();
     }
 
+    protected SQLBiConsumer<Connection, A> newUpsert() {
+        return upsertFactory.get();
+    }
+
+    // a failed chunk is replayed with new statements on the connection the supplier returns then
+    @Override
+    protected long retryDelay(final int attempt, final RuntimeException error, final int rows) {
+        if (retryPolicy == null || !retryPolicy.shouldRetry(attempt, error)) {
+            return -1;
+        }
+        final long delay = retryPolicy.delay(attempt);
+        logger.warning(() -> "Attempt " + attempt + "/" + retryPolicy.getMaxAttempts() + " failed (" + error.getMessage() + "), " +
+                "retrying " + rows + " rows in " + delay + "ms");
+        return delay;
+    }
+
     private void handle(final Iterator<A> rows,
                         final SQLBiConsumer<Connection, A> onRow) {
         if (!rows.hasNext()) {
             return;
         }
-        try (final var connection = connectionSupplier.get()) { // todo: retry if connection fails
-            while (rows.hasNext()) {
-                final boolean autoCommit = connection.getAutoCommit();
-                connection.setAutoCommit(false);
+        try (final var connection = connectionSupplier.get()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                while (rows.hasNext()) {
+                    onRow.accept(connection, rows.next());
+                }
+                if (AutoCloseable.class.isInstance(onRow)) {
+                    AutoCloseable.class.cast(onRow).close();
+                }
+                if (checkpointInTransaction) {
+                    saveCheckpoint((checkpoint, token) -> checkpoint.save(connection, token));
+                }
+                connection.commit();
+            } catch (final RuntimeException | SQLException ex) {
+                onException(connection, ex);
+                throw ex;
+            } catch (final Exception ex) {
+                onException(connection, ex);
+                throw new IllegalStateException(ex);
+            } finally {
                 try {
-                    while (rows.hasNext()) {
-                        onRow.accept(connection, rows.next());
-                    }
-                    if (AutoCloseable.class.isInstance(onRow)) {
-                        AutoCloseable.class.cast(onRow).close();
-                    }
-                    connection.commit();
-                } catch (final RuntimeException | SQLException ex) {
-                    onException(connection, ex);
-                    throw ex;
-                } catch (final Exception ex) {
-                    onException(connection, ex);
-                    throw new IllegalStateException(ex);
-                } finally {
                     connection.setAutoCommit(autoCommit);
+                } catch (final SQLException sqle) { // connection can be broken, don't hide the original error
+                    logger.log(Level.FINE, sqle.getMessage(), sqle);
                 }
             }
         } catch (final RuntimeException | SQLException sqle) {
@@ -111,8 +222,12 @@ public class DiffExecutor<A> extends BaseDiffExecutor<A> {
         }
     }
 
-    private void onException(final Connection connection, final Exception ex) throws SQLException {
-        connection.rollback();
+    private void onException(final Connection connection, final Exception ex) {
+        try {
+            connection.rollback();
+        } catch (final SQLException sqle) {
+            ex.addSuppressed(sqle);
+        }
         logger.log(Level.SEVERE, ex.getMessage(), ex);
     }
 
@@ -123,4 +238,11 @@ public class DiffExecutor<A> extends BaseDiffExecutor<A> {
                                                 final Supplier<SQLBiConsumer<Connection, A>> deleteFactory) {
         return new DiffExecutor<>(connectionSupplier, commitInterval, dryRun, insertFactory, updateFactory, deleteFactory);
     }
+
+    public static <A> DiffExecutor<A> applyDiff(final SQLSupplier<Connection> connectionSupplier,
+                                                final int commitInterval, final boolean dryRun,
+                                                final Supplier<SQLBiConsumer<Connection, A>> upsertFactory,
+                                                final Supplier<SQLBiConsumer<Connection, A>> deleteFactory) {
+        return new DiffExecutor<>(connectionSupplier, commitInterval, dryRun, upsertFactory, deleteFactory);
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.component.diff.DiffEntry;
+import io.yupiik.batch.runtime.component.diff.DiffStatistics;
+import io.yupiik.batch.runtime.component.diff.Digest;
+import io.yupiik.batch.runtime.documentation.Component;
+import io.yupiik.batch.runtime.iterator.CountingIterator;
+import io.yupiik.batch.runtime.util.Hexa;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.ADD;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.DELETE;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.UPDATE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@Component("""
+        Component which compares a sorted incoming dataset with a sorted stream of `Digest` - `(key, hash)` pairs - representing the reference dataset.
+
+        It works as `DatasetDiffComputer` but the equality is a comparison of the content hash so the reference rows never need to be loaded,
+        only their digests which are generally persisted in a digest table (updated with the `Digest` of the applied changes).
+        The `digest(row)` method enables to compute the digest of an incoming row to persist it.
+
+        Since the reference rows are not available, deleted rows are created from their key with the factory passed in the constructor
+        (generally a row with only its identifier set, which is what a delete statement needs).
+
+        `sha256(canonicalForm)` is a convenient hasher: it hashes the canonical form (a string representation of the compared fields) of the row
+        and encodes it in hexadecimal (`util.Hexa`).""")
+public class DigestDatasetDiffComputer<T, K> extends BaseDatasetDiffComputer<T, Digest<K>, Digest<K>> {
+    private final Function<T, K> keyExtractor;
+    private final Comparator<K> keyComparator;
+    private final Function<T, String> hasher;
+    private final Function<K, T> deletedRowFactory;
+
+    /**
+     * @param keyExtractor      extracts the key of an incoming row.
+     * @param keyComparator     the key comparator, both datasets must be sorted with it.
+     * @param hasher            computes the content hash of an incoming row, must be the one used to compute reference digests.
+     * @param deletedRowFactory creates the row representing a deleted key.
+     */
+    public DigestDatasetDiffComputer(final Function<T, K> keyExtractor, final Comparator<K> keyComparator,
+                                     final Function<T, String> hasher, final Function<K, T> deletedRowFactory) {
+        this.keyExtractor = keyExtractor;
+        this.keyComparator = keyComparator;
+        this.hasher = hasher;
+        this.deletedRowFactory = deletedRowFactory;
+    }
+
+    /**
+     * @param row the row to fingerprint.
+     * @return the digest of the row.
+     */
+    public Digest<K> digest(final T row) {
+        return new Digest<>(keyExtractor.apply(row), hasher.apply(row));
+    }
+
+    @Override
+    protected DiffStatistics compare(final CountingIterator<T> incoming, final CountingIterator<Digest<K>> reference,
+                                     final Consumer<DiffEntry<T>> sink) {
+        long missing = 0;
+        long added = 0;
+        long updated = 0;
+
+        Digest<K> existingData = reference.hasNext() ? reference.next() : null;
+        T newData = incoming.hasNext() ? incoming.next() : null;
+        K newKey = newData == null ? null : keyExtractor.apply(newData);
+        while (existingData != null && newData != null) {
+            final int diff = keyComparator.compare(existingData.key(), newKey);
+            if (diff > 0) {
+                sink.accept(new DiffEntry<>(ADD, mapAdd(newData)));
+                added++;
+                newData = incoming.hasNext() ? incoming.next() : null;
+                newKey = newData == null ? null : keyExtractor.apply(newData);
+            } else if (diff < 0) {
+                sink.accept(new DiffEntry<>(DELETE, mapMiss(existingData)));
+                missing++;
+                existingData = reference.hasNext() ? reference.next() : null;
+            } else {
+                if (!existingData.hash().equals(hasher.apply(newData))) {
+                    sink.accept(new DiffEntry<>(UPDATE, mapUpdate(existingData, newData)));
+                    updated++;
+                } // else no diff
+                existingData = reference.hasNext() ? reference.next() : null;
+                newData = incoming.hasNext() ? incoming.next() : null;
+                newKey = newData == null ? null : keyExtractor.apply(newData);
+            }
+        }
+        if (newData != null) {
+            sink.accept(new DiffEntry<>(ADD, mapAdd(newData)));
+            added++;
+        }
+        while (incoming.hasNext()) {
+            sink.accept(new DiffEntry<>(ADD, mapAdd(incoming.next())));
+            added++;
+        }
+        if (existingData != null) {
+            sink.accept(new DiffEntry<>(DELETE, mapMiss(existingData)));
+            missing++;
+        }
+        while (reference.hasNext()) {
+            sink.accept(new DiffEntry<>(DELETE, mapMiss(reference.next())));
+            missing++;
+        }
+
+        return new DiffStatistics(missing, added, updated, reference.getTotal(), incoming.getTotal());
+    }
+
+    @Override
+    protected T mapMiss(final Digest<K> data) {
+        return deletedRowFactory.apply(data.key());
+    }
+
+    /**
+     * Creates a hasher computing the SHA-256 of the UTF-8 bytes of the canonical form of a row, encoded in hexadecimal.
+     * The canonical form must contain all the compared fields with separators avoiding collisions (`a|bc` vs `ab|c`).
+     *
+     * @param canonicalForm the string representation of the compared part of the row.
+     * @param <T>           the row type.
+     * @return a thread safe hasher.
+     */
+    public static <T> Function<T, String> sha256(final Function<T, String> canonicalForm) {
+        final var digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return row -> Hexa.toHex(digests.get().digest(canonicalForm.apply(row).getBytes(UTF_8)));
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.component.diff.DiffEntry;
+import io.yupiik.batch.runtime.component.diff.DiffStatistics;
+import io.yupiik.batch.runtime.component.diff.Digest;
+import io.yupiik.batch.runtime.documentation.Component;
+import io.yupiik.batch.runtime.iterator.CountingIterator;
+import io.yupiik.batch.runtime.iterator.RowSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.ADD;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.DELETE;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.UPDATE;
+
+@Component("""
+        Component which takes as input two iterators representing datasets which do not need to be sorted
+        (unlike `DatasetDiffComputer` it does not require a `SortingIterator` nor an `ORDER BY`).
+
+        The reference dataset is indexed in a hash table of `key -> content hash` (using the key extractor and hasher passed in the constructor)
+        then the incoming dataset is streamed against this index: unknown keys are additions, known keys are updates if their hashes differ
+        and keys never seen in the incoming dataset are deletions.
+        As with `DigestDatasetDiffComputer`, reference rows are not kept so deleted rows are created from their key
+        with the factory passed in the constructor and `DigestDatasetDiffComputer.sha256(canonicalForm)` is a convenient hasher.
+
+        If a memory budget (`maxInMemoryRows`) and a `RowSerializer` are set, the reference rows exceeding the budget
+        are spilled on disk in `partitions` files (by key hash) with the incoming rows not matching the in memory index.
+        Each partition is then compared the same way - with the same budget, spilling again if it is still too big -
+        so the index never holds more than `maxInMemoryRows` entries.
+
+        Keys must implement `equals`/`hashCode` and be unique per dataset.
+        As with `DatasetDiffComputer`, the result is a `Diff` (or a `StreamingDiff` using `stream()`) but changes
+        are not emitted in key order.""")
+public class HashDatasetDiffComputer<T, K> extends BaseDatasetDiffComputer<T, T, Digest<K>> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Function<T, K> keyExtractor;
+    private final Function<T, String> hasher;
+    private final Function<K, T> deletedRowFactory;
+    private final long maxInMemoryRows;
+    private final int partitions;
+    private final RowSerializer<T> serializer;
+    private final Path directory;
+
+    public HashDatasetDiffComputer(final Function<T, K> keyExtractor, final Function<T, String> hasher,
+                                   final Function<K, T> deletedRowFactory) {
+        this(keyExtractor, hasher, deletedRowFactory, Long.MAX_VALUE, 1, null, null);
+    }
+
+    /**
+     * @param keyExtractor      extracts the identifier of a row.
+     * @param hasher            computes the content hash of a row (rows with the same key and hash are equal).
+     * @param deletedRowFactory creates the row representing a deleted key.
+     * @param maxInMemoryRows   max number of reference entries indexed in memory before spilling the datasets on disk.
+     * @param partitions        number of partitions (files per dataset) used when spilling.
+     * @param serializer        how to write/read rows on disk.
+     * @param directory         where to create temporary files, {@code null} for the default temporary directory.
+     */
+    public HashDatasetDiffComputer(final Function<T, K> keyExtractor, final Function<T, String> hasher,
+                                   final Function<K, T> deletedRowFactory,
+                                   final long maxInMemoryRows, final int partitions,
+                                   final RowSerializer<T> serializer, final Path directory) {
+        if (maxInMemoryRows <= 0) {
+            throw new IllegalArgumentException("maxInMemoryRows must be > 0: " + maxInMemoryRows);
+        }
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be > 0: " + partitions);
+        }
+        if (maxInMemoryRows != Long.MAX_VALUE && serializer == null) {
+            throw new IllegalArgumentException("a serializer is required when maxInMemoryRows is set");
+        }
+        this.keyExtractor = keyExtractor;
+        this.hasher = hasher;
+        this.deletedRowFactory = deletedRowFactory;
+        this.maxInMemoryRows = maxInMemoryRows;
+        this.partitions = partitions;
+        this.serializer = serializer;
+        this.directory = directory;
+    }
+
+    /**
+     * @param row the row to fingerprint.
+     * @return the digest of the row.
+     */
+    public Digest<K> digest(final T row) {
+        return new Digest<>(keyExtractor.apply(row), hasher.apply(row));
+    }
+
+    @Override
+    protected DiffStatistics compare(final CountingIterator<T> incoming, final CountingIterator<T> reference,
+                                     final Consumer<DiffEntry<T>> sink) throws IOException {
+        final var counters = new long[3]; // missing, added, updated
+        final var pending = new ArrayDeque<Partition<T>>();
+        try {
+            compare(incoming, reference, 0, pending, sink, counters);
+            while (!pending.isEmpty()) { // depth first to keep the number of spill files low
+                try (final var partition = pending.pop();
+                     final var partitionReference = partition.reference.read();
+                     final var partitionIncoming = partition.incoming.read()) {
+                    compare(partitionIncoming, partitionReference, partition.level + 1, pending, sink, counters);
+                }
+            }
+        } catch (final RuntimeException | Error | IOException e) {
+            try {
+                close(pending);
+            } catch (final RuntimeException ce) {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+        return new DiffStatistics(counters[0], counters[1], counters[2], reference.getTotal(), incoming.getTotal());
+    }
+
+    @Override
+    protected T mapMiss(final Digest<K> data) {
+        return deletedRowFactory.apply(data.key());
+    }
+
+    // indexes up to maxInMemoryRows reference rows, the remaining ones and the incoming rows not matching the index
+    // are spilled in partitions (pushed to pending) which are compared later
+    private void compare(final Iterator<T> incoming, final Iterator<T> reference, final int level,
+                         final Deque<Partition<T>> pending, final Consumer<DiffEntry<T>> sink, final long[] counters) throws IOException {
+        final var index = new HashMap<K, String>();
+        while (reference.hasNext() && index.size() < maxInMemoryRows) {
+            final var row = reference.next();
+            index.put(keyExtractor.apply(row), hasher.apply(row));
+        }
+
+        final var spill = reference.hasNext() ? new ArrayList<Partition<T>>(partitions) : null;
+        try {
+            if (spill != null) {
+                for (int i = 0; i < partitions; i++) {
+                    spill.add(new Partition<>(level, directory, serializer));
+                }
+                while (reference.hasNext()) {
+                    final var row = reference.next();
+                    spill.get(partition(keyExtractor.apply(row), level)).reference.write(row);
+                }
+            }
+            while (incoming.hasNext()) {
+                final var newData = incoming.next();
+                final var key = keyExtractor.apply(newData);
+                final var existingHash = index.remove(key);
+                if (existingHash != null) {
+                    if (!existingHash.equals(hasher.apply(newData))) {
+                        sink.accept(new DiffEntry<>(UPDATE, mapUpdate(new Digest<>(key, existingHash), newData)));
+                        counters[2]++;
+                    } // else no diff
+                } else if (spill != null) { // can still match a spilled reference row
+                    spill.get(partition(key, level)).incoming.write(newData);
+                } else {
+                    sink.accept(new DiffEntry<>(ADD, mapAdd(newData)));
+                    counters[1]++;
+                }
+            }
+            // keys are unique so what remains in the index was deleted
+            for (final var existing : index.entrySet()) {
+                sink.accept(new DiffEntry<>(DELETE, mapMiss(new Digest<>(existing.getKey(), existing.getValue()))));
+                counters[0]++;
+            }
+        } catch (final RuntimeException | Error | IOException e) {
+            if (spill != null) {
+                try {
+                    close(spill);
+                } catch (final RuntimeException ce) {
+                    e.addSuppressed(ce);
+                }
+            }
+            throw e;
+        }
+        if (spill != null) {
+            for (final var partition : spill) {
+                if (partition.isEmpty()) {
+                    partition.close();
+                } else {
+                    pending.push(partition);
+                }
+            }
+        }
+    }
+
+    // level changes the distribution so a partition spilled again is split differently
+    private int partition(final K key, final int level) {
+        int hash = key.hashCode() + level * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, partitions);
+    }
+
+    private void close(final Iterable<Partition<T>> partitions) {
+        final var error = new IllegalStateException("An error occurred closing spill files");
+        for (final var partition : partitions) {
+            try {
+                partition.close();
+            } catch (final IOException e) {
+                error.addSuppressed(e);
+            }
+        }
+        if (error.getSuppressed().length > 0) {
+            throw error;
+        }
+    }
+
+    private static class Partition<T> implements AutoCloseable {
+        private final int level;
+        private final SpillFile<T> reference;
+        private final SpillFile<T> incoming;
+
+        private Partition(final int level, final Path directory, final RowSerializer<T> serializer) {
+            this.level = level;
+            this.reference = new SpillFile<>(directory, serializer);
+            this.incoming = new SpillFile<>(directory, serializer);
+        }
+
+        private boolean isEmpty() {
+            return reference.size == 0 && incoming.size == 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reference.close();
+            } finally {
+                incoming.close();
+            }
+        }
+    }
+
+    // the file is only created when a row is written
+    private static class SpillFile<T> implements AutoCloseable {
+        private final Path directory;
+        private final RowSerializer<T> serializer;
+        private Path file;
+        private DataOutputStream output;
+        private long size;
+
+        private SpillFile(final Path directory, final RowSerializer<T> serializer) {
+            this.directory = directory;
+            this.serializer = serializer;
+        }
+
+        private void write(final T row) throws IOException {
+            if (output == null) {
+                file = directory == null ?
+                        Files.createTempFile("yupiik-batch-diff-", ".partition") :
+                        Files.createTempFile(directory, "yupiik-batch-diff-", ".partition");
+                output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+            }
+            serializer.write(output, row);
+            size++;
+        }
+
+        private Reader<T> read() throws IOException {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+            final var input = size == 0 ?
+                    null : new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            return new Reader<>(input, size, serializer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (output != null) {
+                    output.close();
+                    output = null;
+                }
+            } finally {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static class Reader<T> implements Iterator<T>, AutoCloseable {
+        private final DataInputStream input;
+        private final RowSerializer<T> serializer;
+        private long remaining;
+
+        private Reader(final DataInputStream input, final long size, final RowSerializer<T> serializer) {
+            this.input = input;
+            this.remaining = size;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                remaining--;
+                return serializer.read(input);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+}
@@ -15,21 +15,26 @@
  */
 package io.yupiik.batch.runtime.component;
 
+import io.yupiik.batch.runtime.component.mapping.GeneratedMapperFactory;
 import io.yupiik.batch.runtime.component.mapping.Mapping;
 import io.yupiik.batch.runtime.documentation.Component;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static io.yupiik.batch.runtime.component.mapping.MapperTableLoader.collectMappingTables;
+import static java.lang.invoke.MethodType.methodType;
 import static java.util.Comparator.comparing;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
@@ -72,8 +77,26 @@ import static java.util.stream.Collectors.toMap;
                 
         The specification API enables static mapping (`properties`) or custom mapping - `@Mapping.Custom` - for more advanced logic.
                 
-        The companion class `io.yupiik.batch.runtime.documentation.MapperDocGenerator` enables to generate an asciidoctor documentation for a mapper class.""")
+        The companion class `io.yupiik.batch.runtime.documentation.MapperDocGenerator` enables to generate an asciidoctor documentation for a mapper class.
+                
+        TIP: adding `io.yupiik.batch:mapping-processor` as annotation processor generates the mappers at build time.
+        `Mapper` then uses the generated class instead of reflection when it is available (mapping tables can still be overridden at runtime).""")
 public class Mapper<A, B, C> implements Function<A, B> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle APPLY;
+    private static final MethodHandle ON_CONSTRUCTOR_ERROR;
+    private static final MethodHandle REQUIRE_PRIMITIVE_VALUE;
+
+    static {
+        try {
+            APPLY = LOOKUP.findVirtual(Function.class, "apply", methodType(Object.class, Object.class));
+            ON_CONSTRUCTOR_ERROR = LOOKUP.findStatic(Mapper.class, "onConstructorError", methodType(Object.class, Throwable.class));
+            REQUIRE_PRIMITIVE_VALUE = LOOKUP.findStatic(Mapper.class, "requirePrimitiveValue", methodType(Object.class, Object.class, String.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private final Function<A, B> delegate;
     private final C delegateInstance;
 
@@ -93,7 +116,7 @@ public class Mapper<A, B, C> implements Function<A, B> {
         } else {
             delegateInstance = null;
         }
-        this.delegate = createMapper(spec);
+        this.delegate = ofNullable(findGeneratedMapper(spec)).orElseGet(() -> createMapper(spec));
     }
 
     public C getDelegateInstance() {
@@ -105,6 +128,57 @@ public class Mapper<A, B, C> implements Function<A, B> {
         return delegate.apply(a);
     }
 
+    // mapping-processor generates the mapper at build time and registers its factory as a service,
+    // if present it avoids any runtime reflection
+    private Function<A, B> findGeneratedMapper(final Class<C> spec) {
+        final var conf = spec.getAnnotation(Mapping.class);
+        if (conf == null) {
+            return null;
+        }
+
+        final var packageName = spec.getPackageName();
+        final var generatedName = (packageName.isEmpty() ? "" : packageName + '.') +
+                spec.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1).replace('$', '_') +
+                "_GeneratedMapper";
+        final var factoryName = generatedName + "$Factory";
+        final var factory = findFactory(spec, generatedName + "$Factory");
+        if (factory == null) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked") final var mapper = (Function<Object, B>) factory
+                .create(delegateInstance, collectMappingTables(spec.getName(), conf, n -> true));
+
+        final var from = conf.from();
+        return input -> {
+            if (!from.isInstance(input)) {
+                throw new IllegalArgumentException("Unsupported input: " + input + ", expected: " + from);
+            }
+            return mapper.apply(input);
+        };
+    }
+
+    // a stale provider (removed specification) must not prevent others to be found
+    private GeneratedMapperFactory findFactory(final Class<C> spec, final String factoryName) {
+        final var providers = ServiceLoader.load(GeneratedMapperFactory.class, spec.getClassLoader()).stream().iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    return null;
+                }
+                final var provider = providers.next();
+                if (factoryName.equals(provider.type().getName())) {
+                    final var factory = provider.get();
+                    if (factory.spec() == spec) {
+                        return factory;
+                    }
+                }
+            } catch (final ServiceConfigurationError sce) {
+                // no-op, try next one
+            }
+        }
+    }
+
     private Function<A, B> createMapper(final Class<?> spec) {
         final var conf = spec.getAnnotation(Mapping.class);
         if (conf == null) {
@@ -139,24 +213,70 @@ public class Mapper<A, B, C> implements Function<A, B> {
                         }))
                 .collect(toList());
 
+        final var constructor = toConstructorHandle(toConstructor, orderedMappers);
         return input -> {
             if (!from.isInstance(input)) {
                 throw new IllegalArgumentException("Unsupported input: " + input + ", expected: " + from);
             }
             try {
-                final var params = orderedMappers.stream()
-                        .map(it -> it.apply(input))
-                        .toArray(Object[]::new);
-                final var newInstance = toConstructor.newInstance(params);
-                return (B) newInstance;
-            } catch (final InstantiationException | IllegalAccessException e) {
+                return (B) constructor.invokeExact((Object) input);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
                 throw new IllegalStateException(e);
-            } catch (final InvocationTargetException e) {
-                throw new IllegalStateException(e.getTargetException());
             }
         };
     }
 
+    // builds (Object)Object handle calling the constructor with each parameter computed by its mapper from the input,
+    // this avoids per row parameter array and reflection.
+    // error semantic is the reflective one: constructor failures are wrapped in an IllegalStateException
+    // and a null value for a primitive parameter is an IllegalArgumentException (mapper failures are propagated as is)
+    private MethodHandle toConstructorHandle(final Constructor<?> constructor, final List<Function<Object, Object>> mappers) {
+        final MethodHandle target;
+        try {
+            target = LOOKUP.unreflectConstructor(constructor);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        final var parameterTypes = target.type().parameterList();
+        final var wrapped = MethodHandles.catchException(target, Throwable.class, MethodHandles.dropArguments(
+                ON_CONSTRUCTOR_ERROR.asType(methodType(target.type().returnType(), Throwable.class)), 1, parameterTypes));
+
+        final var parameters = constructor.getParameters();
+        final var filters = new MethodHandle[mappers.size()];
+        for (int i = 0; i < filters.length; i++) {
+            final var mapper = APPLY.bindTo(mappers.get(i));
+            filters[i] = parameters[i].getType().isPrimitive() ?
+                    MethodHandles.filterReturnValue(mapper, MethodHandles.insertArguments(
+                            REQUIRE_PRIMITIVE_VALUE, 1, "'" + parameters[i].getName() + "' of " + constructor)) :
+                    mapper;
+        }
+        return toSingleInputHandle(wrapped, filters);
+    }
+
+    private static Object onConstructorError(final Throwable error) {
+        throw new IllegalStateException(error);
+    }
+
+    private static Object requirePrimitiveValue(final Object value, final String parameter) {
+        if (value == null) {
+            throw new IllegalArgumentException("null value for primitive parameter " + parameter);
+        }
+        return value;
+    }
+
+    // target(P1...Pn) + filters (Object)Pi -> (Object)Object, all filters get the same input
+    private static MethodHandle toSingleInputHandle(final MethodHandle target, final MethodHandle[] filters) {
+        final var parameterTypes = target.type().parameterArray();
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = filters[i].asType(methodType(parameterTypes[i], Object.class));
+        }
+        final var filtered = MethodHandles.filterArguments(target, 0, filters);
+        final var generic = filtered.asType(filtered.type().changeReturnType(Object.class));
+        return MethodHandles.permuteArguments(generic, methodType(Object.class, Object.class), new int[filters.length]);
+    }
+
     private Map<String, Function<Object, Object>> collectMappers(final Class<?> spec, final Mapping conf,
                                                                  final Class<?> from,
                                                                  final Map<String, Map<String, String>> tableMappings,
@@ -217,49 +337,40 @@ public class Mapper<A, B, C> implements Function<A, B> {
             throw new IllegalArgumentException("Can't access " + method);
         }
 
-        return switch (method.getParameterCount()) {
-            case 0 -> input -> {
-                try {
-                    return method.invoke(delegateInstance);
-                } catch (final IllegalAccessException e) {
-                    throw new IllegalStateException(e);
-                } catch (final InvocationTargetException e) {
-                    throw new IllegalStateException("Error invoking " + method, e.getTargetException());
-                }
-            };
-            default -> {
-                final var parametersFactory = Stream.of(method.getParameters())
-                        .map(it -> {
-                            if (inputType == Object.class || it.getType().isAssignableFrom(inputType)) {
-                                return (Function<Object, Object>) i -> i;
-                            }
-                            if (it.isAnnotationPresent(Mapping.Table.class)) {
-                                final var name = it.getAnnotation(Mapping.Table.class).value();
-                                final var mapping = tables.get(name);
-                                if (mapping == null) {
-                                    throw new IllegalArgumentException("No mapping table named '" + name + "'");
-                                }
-                                if (Mapping.ReversedTable.class == it.getType()) {
-                                    final var value = new Mapping.ReversedTable(mapping.entrySet());
-                                    return (Function<Object, Object>) i -> value;
-                                }
-                                return (Function<Object, Object>) i -> mapping;
-                            }
-                            throw new IllegalArgumentException("Unsupported parameter: " + it.getName() + " in " + method);
-                        })
-                        .collect(toList());
-                yield input -> {
-                    final var params = parametersFactory.stream()
-                            .map(it -> it.apply(input))
-                            .toArray(Object[]::new);
-                    try {
-                        return method.invoke(delegateInstance, params);
-                    } catch (final IllegalAccessException e) {
-                        throw new IllegalStateException(e);
-                    } catch (final InvocationTargetException e) {
-                        throw new IllegalStateException("Error invoking " + method + " with parameters " + List.of(params), e.getTargetException());
+        final var parametersFactory = Stream.of(method.getParameters())
+                .map(it -> {
+                    if (inputType == Object.class || it.getType().isAssignableFrom(inputType)) {
+                        return MethodHandles.identity(Object.class);
                     }
-                };
+                    if (it.isAnnotationPresent(Mapping.Table.class)) {
+                        final var name = it.getAnnotation(Mapping.Table.class).value();
+                        final var mapping = tables.get(name);
+                        if (mapping == null) {
+                            throw new IllegalArgumentException("No mapping table named '" + name + "'");
+                        }
+                        final Object value = Mapping.ReversedTable.class == it.getType() ?
+                                new Mapping.ReversedTable(mapping.entrySet()) : mapping;
+                        return MethodHandles.dropArguments(MethodHandles.constant(Object.class, value), 0, Object.class);
+                    }
+                    throw new IllegalArgumentException("Unsupported parameter: " + it.getName() + " in " + method);
+                })
+                .toArray(MethodHandle[]::new);
+
+        final var hasParameters = parametersFactory.length > 0;
+        final MethodHandle invoker;
+        try {
+            final var unreflected = LOOKUP.unreflect(method);
+            invoker = toSingleInputHandle(
+                    Modifier.isStatic(method.getModifiers()) ? unreflected : unreflected.bindTo(delegateInstance),
+                    parametersFactory);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return input -> {
+            try {
+                return invoker.invokeExact((Object) input);
+            } catch (final Throwable e) {
+                throw new IllegalStateException("Error invoking " + method + (hasParameters ? " with input " + input : ""), e);
             }
         };
     }
@@ -339,7 +450,7 @@ public class Mapper<A, B, C> implements Function<A, B> {
         private final String name;
         private final Function<Object, Object> mapper;
 
-        private volatile Field extractor;
+        private volatile MethodHandle extractor;
 
         private MappedMapper(final String name, final Function<Object, Object> mapper) {
             this.name = name;
@@ -350,17 +461,22 @@ public class Mapper<A, B, C> implements Function<A, B> {
         public Object apply(final A a) {
             if (extractor == null) {
                 try {
-                    extractor = a.getClass().getDeclaredField(name);
-                    if (!extractor.canAccess(a)) {
-                        extractor.setAccessible(true);
+                    final var field = a.getClass().getDeclaredField(name);
+                    if (!field.canAccess(a)) {
+                        field.setAccessible(true);
                     }
+                    extractor = LOOKUP.unreflectGetter(field).asType(methodType(Object.class, Object.class));
                 } catch (final NoSuchFieldException e) {
                     throw new IllegalArgumentException(e);
+                } catch (final IllegalAccessException e) {
+                    throw new IllegalStateException(e);
                 }
             }
             try {
-                return mapper.apply(extractor.get(a));
-            } catch (final IllegalAccessException e) {
+                return mapper.apply(extractor.invokeExact((Object) a));
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
                 throw new IllegalStateException(e);
             }
         }
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.documentation.Component;
+import io.yupiik.batch.runtime.iterator.PipedIterator;
+import io.yupiik.batch.runtime.iterator.RespectingContractIterator;
+import io.yupiik.batch.runtime.sql.ReusedSQLSupplierDataSource;
+import io.yupiik.batch.runtime.sql.SQLFunction;
+import io.yupiik.batch.runtime.sql.SQLSupplier;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+@Component("""
+        Enables to extract data from a SQL query splitting the extraction in multiple partitions read concurrently,
+        each partition using its own connection.
+
+        The partitioning relies on a numeric key column: the query is wrapped to read its min/max value then each partition
+        reads a range of this key (`key >= lower AND key < upper`). Rows with a `NULL` key are read by a dedicated partition (`key IS NULL`)
+        which comes last, as with a `NULLS LAST` ordering.
+
+        In ordered mode (default), partitions are sorted by key (`ORDER BY key`) and consumed one after the other - since ranges are disjoint
+        the output is globally sorted by key which makes it usable with `DatasetDiffComputer` - while the next partitions are prefetched
+        in bounded queues.
+        In unordered mode, rows are emitted as soon as any partition reads them.
+
+        As with `SQLQuery`, a custom mapper is called for each `ResultSet` line to convert current row in an object passed to the rest of the `BatchChain`.""")
+public class PartitionedSQLQuery<T> extends RespectingContractIterator<T> implements Iterator<T>, AutoCloseable {
+    public PartitionedSQLQuery(final SQLSupplier<Connection> connectionSupplier, final String query,
+                               final String keyColumn, final int partitions,
+                               final SQLFunction<ResultSet, T> mapper) {
+        this(connectionSupplier, query, keyColumn, partitions, mapper, 0, true, 1024, null);
+    }
+
+    /**
+     * @param connectionSupplier connection factory, called once to compute the partitions and once per partition,
+     *                           it must not share a single connection ({@link ReusedSQLSupplierDataSource}).
+     * @param query              the query to partition (without any {@code ORDER BY}), it is used as a subquery.
+     * @param keyColumn          the numeric column used to partition the query.
+     * @param partitions         max number of partitions (concurrent queries).
+     * @param mapper             row mapper.
+     * @param fetchSize          fetch size of partition queries, ignored if not positive.
+     * @param ordered            if {@code true} output is sorted by key else rows are emitted as soon as they are read.
+     * @param capacity           max number of rows buffered per partition (ordered mode) or globally (unordered mode).
+     * @param executor           executor running partition queries, {@code null} to use a thread per partition.
+     */
+    public PartitionedSQLQuery(final SQLSupplier<Connection> connectionSupplier, final String query,
+                               final String keyColumn, final int partitions,
+                               final SQLFunction<ResultSet, T> mapper, final int fetchSize,
+                               final boolean ordered, final int capacity, final Executor executor) {
+        super(new Impl<>(connectionSupplier, query, keyColumn, partitions, mapper, fetchSize, ordered, capacity, executor));
+    }
+
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Impl<T> implements Iterator<T>, AutoCloseable {
+        private final SQLSupplier<Connection> connectionSupplier;
+        private final String query;
+        private final String keyColumn;
+        private final int partitions;
+        private final SQLFunction<ResultSet, T> mapper;
+        private final int fetchSize;
+        private final boolean ordered;
+        private final int capacity;
+        private final Executor executor;
+
+        private List<PipedIterator<T>> pipes;
+        private int current;
+
+        private Impl(final SQLSupplier<Connection> connectionSupplier, final String query,
+                     final String keyColumn, final int partitions,
+                     final SQLFunction<ResultSet, T> mapper, final int fetchSize,
+                     final boolean ordered, final int capacity, final Executor executor) {
+            if (partitions <= 0) {
+                throw new IllegalArgumentException("partitions must be > 0: " + partitions);
+            }
+            this.connectionSupplier = connectionSupplier;
+            this.query = query;
+            this.keyColumn = keyColumn;
+            this.partitions = partitions;
+            this.mapper = mapper;
+            this.fetchSize = fetchSize;
+            this.ordered = ordered;
+            this.capacity = capacity;
+            this.executor = executor == null ? task -> {
+                final var thread = new Thread(task, PartitionedSQLQuery.class.getName() + "-partition");
+                thread.setDaemon(true);
+                thread.start();
+            } : executor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pipes == null) {
+                start();
+            }
+            while (current < pipes.size()) {
+                if (pipes.get(current).hasNext()) {
+                    return true;
+                }
+                current++;
+            }
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pipes.get(current).next();
+        }
+
+        @Override
+        public void close() {
+            if (pipes != null) {
+                pipes.forEach(PipedIterator::close);
+            }
+        }
+
+        private void start() {
+            final var readers = computeRanges().stream()
+                    .map(range -> (Supplier<Iterator<T>>) () -> new PartitionReader<>(
+                            connectionSupplier, "" +
+                            "SELECT * FROM (" + query + ") yupiik_batch_partition" +
+                            " WHERE " + (range.nulls() ?
+                                    keyColumn + " IS NULL" :
+                                    (keyColumn + " >= ?" + (range.upper() == null ? "" : " AND " + keyColumn + " < ?") +
+                                            (ordered ? " ORDER BY " + keyColumn : ""))),
+                            range, mapper, fetchSize))
+                    .collect(toList());
+            pipes = ordered ?
+                    readers.stream().map(reader -> new PipedIterator<>(capacity, executor, reader)).collect(toList()) :
+                    List.of(new PipedIterator<>(capacity, executor, readers));
+        }
+
+        // split [min, max] in ranges of the same size (last one is unbounded) and add a partition for NULL keys if needed
+        private List<Range> computeRanges() {
+            final boolean hasKeys;
+            final long min;
+            final long max;
+            final boolean hasNulls;
+            try (final var connection = connectionSupplier.get()) {
+                if (ReusedSQLSupplierDataSource.isShared(connection)) {
+                    throw new IllegalStateException("Partitions are read concurrently and require a connection each but the connection supplier shares a single connection, " +
+                            "use a pool (DataSourceConfiguration#toPooledDataSource() for example)");
+                }
+                try (final var statement = connection.createStatement();
+                     final var resultSet = statement.executeQuery("" +
+                             "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + "), COUNT(*) - COUNT(" + keyColumn + ") " +
+                             "FROM (" + query + ") yupiik_batch_partition")) {
+                    if (!resultSet.next()) {
+                        return List.of();
+                    }
+                    hasKeys = resultSet.getObject(1) != null;
+                    min = resultSet.getLong(1);
+                    max = resultSet.getLong(2);
+                    hasNulls = resultSet.getLong(3) > 0;
+                }
+            } catch (final SQLException e) {
+                throw new IllegalStateException(e);
+            }
+
+            final var ranges = new ArrayList<Range>(partitions + 1);
+            if (hasKeys) {
+                // max - min and step can exceed Long.MAX_VALUE but they always fit in 64 bits as unsigned values,
+                // and lower + step never goes past max so the signed result is exact
+                final long step = Long.divideUnsigned(max - min, partitions) + 1;
+                long lower = min;
+                for (int i = 0; i < partitions; i++) {
+                    if (i == partitions - 1 || Long.compareUnsigned(max - lower, step) < 0) {
+                        ranges.add(new Range(lower, null, false));
+                        break;
+                    }
+                    ranges.add(new Range(lower, lower + step, false));
+                    lower += step;
+                }
+            }
+            if (hasNulls) {
+                ranges.add(new Range(0, null, true));
+            }
+            return ranges;
+        }
+    }
+
+    private record Range(long lower, Long upper, boolean nulls) {
+    }
+
+    private static class PartitionReader<T> implements Iterator<T>, AutoCloseable {
+        private final SQLSupplier<Connection> connectionSupplier;
+        private final String query;
+        private final Range range;
+        private final SQLFunction<ResultSet, T> mapper;
+        private final int fetchSize;
+
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+
+        private PartitionReader(final SQLSupplier<Connection> connectionSupplier, final String query, final Range range,
+                                final SQLFunction<ResultSet, T> mapper, final int fetchSize) {
+            this.connectionSupplier = connectionSupplier;
+            this.query = query;
+            this.range = range;
+            this.mapper = mapper;
+            this.fetchSize = fetchSize;
+        }
+
+        @Override
+        public boolean hasNext() { // only called once per next() by PipedIterator
+            try {
+                if (resultSet == null) {
+                    connection = connectionSupplier.get();
+                    statement = connection.prepareStatement(query);
+                    if (fetchSize > 0) {
+                        statement.setFetchSize(fetchSize);
+                    }
+                    if (!range.nulls()) {
+                        statement.setLong(1, range.lower());
+                        if (range.upper() != null) {
+                            statement.setLong(2, range.upper());
+                        }
+                    }
+                    resultSet = statement.executeQuery();
+                }
+                return resultSet.next();
+            } catch (final SQLException throwables) {
+                throw new IllegalStateException(throwables);
+            }
+        }
+
+        @Override
+        public T next() {
+            try {
+                return mapper.apply(resultSet);
+            } catch (final SQLException throwables) {
+                throw new IllegalStateException(throwables);
+            }
+        }
+
+        @Override
+        public void close() {
+            final var error = new IllegalStateException("An error occurred closing " + getClass());
+            Stream.of(resultSet, statement, connection)
+                    .filter(Objects::nonNull)
+                    .forEach(it -> {
+                        try {
+                            it.close();
+                        } catch (final Exception e) {
+                            error.addSuppressed(e);
+                        }
+                    });
+            connection = null;
+            statement = null;
+            resultSet = null;
+            if (error.getSuppressed().length > 0) {
+                throw error;
+            }
+        }
+    }
+}
@@ -17,6 +17,8 @@ package io.yupiik.batch.runtime.component;
 
 import io.yupiik.batch.runtime.documentation.Component;
 import io.yupiik.batch.runtime.iterator.RespectingContractIterator;
+import io.yupiik.batch.runtime.progress.ProgressListener;
+import io.yupiik.batch.runtime.progress.ProgressTracker;
 import io.yupiik.batch.runtime.sql.SQLFunction;
 import io.yupiik.batch.runtime.sql.SQLSupplier;
 
@@ -24,6 +26,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -31,8 +34,12 @@ import java.util.stream.Stream;
 @Component("""
         Enables to extract data from a SQL query.
                 
-        A custom mapper will be called for each `ResultSet` line to convert current row in an object passed to the rest of the `BatchChain`.""")
+        A custom mapper will be called for each `ResultSet` line to convert current row in an object passed to the rest of the `BatchChain`.
+
+        A `ProgressListener` can be set to be notified of the number of read rows.""")
 public class SQLQuery<T> extends RespectingContractIterator<T> implements Iterator<T>, AutoCloseable {
+    private final Impl<T> impl;
+
     public SQLQuery(final SQLSupplier<Connection> connectionSupplier, final String query,
                     final SQLFunction<ResultSet, T> mapper) {
         this(connectionSupplier, query, mapper, 0);
@@ -40,7 +47,23 @@ public class SQLQuery<T> extends RespectingContractIterator<T> implements Iterat
 
     public SQLQuery(final SQLSupplier<Connection> connectionSupplier, final String query,
                     final SQLFunction<ResultSet, T> mapper, final int fetchSize) {
-        super(new Impl<>(connectionSupplier, query, mapper, fetchSize));
+        this(new Impl<>(connectionSupplier, query, mapper, fetchSize));
+    }
+
+    private SQLQuery(final Impl<T> impl) {
+        super(impl);
+        this.impl = impl;
+    }
+
+    /**
+     * @param name     name of the query in progress events.
+     * @param listener listener notified of the read rows.
+     * @param interval min duration between two events.
+     * @return this.
+     */
+    public SQLQuery<T> setProgressListener(final String name, final ProgressListener listener, final Duration interval) {
+        impl.tracker = listener == null ? null : new ProgressTracker(name, -1, listener, interval);
+        return this;
     }
 
     @Override
@@ -62,6 +85,7 @@ public class SQLQuery<T> extends RespectingContractIterator<T> implements Iterat
         private Statement statement;
         private ResultSet resultSet;
         private final int fetchSize;
+        private ProgressTracker tracker;
 
         private Impl(final SQLSupplier<Connection> connectionSupplier, final String query,
                      final SQLFunction<ResultSet, T> mapper) {
@@ -94,7 +118,11 @@ public class SQLQuery<T> extends RespectingContractIterator<T> implements Iterat
                 }
             }
             try {
-                return resultSet.next();
+                final boolean next = resultSet.next();
+                if (!next && tracker != null) {
+                    tracker.end();
+                }
+                return next;
             } catch (final SQLException throwables) {
                 throw new IllegalStateException(throwables);
             }
@@ -102,6 +130,9 @@ public class SQLQuery<T> extends RespectingContractIterator<T> implements Iterat
 
         @Override
         public T next() {
+            if (tracker != null) {
+                tracker.increment();
+            }
             try {
                 return mapper.apply(resultSet);
             } catch (final SQLException throwables) {
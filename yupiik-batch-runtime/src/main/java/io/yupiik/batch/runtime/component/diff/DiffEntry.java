@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component.diff;
+
+/**
+ * A single change emitted by a streaming diff.
+ *
+ * @param operation the kind of change.
+ * @param value     the changed data (mapped by the diff computer).
+ * @param <T>       the data type.
+ */
+public record DiffEntry<T>(Operation operation, T value) {
+    public enum Operation {
+        ADD, UPDATE, DELETE
+    }
+}
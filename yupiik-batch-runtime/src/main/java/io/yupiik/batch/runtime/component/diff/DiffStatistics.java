@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component.diff;
+
+import io.yupiik.batch.runtime.batch.builder.BatchChain;
+
+/**
+ * Counters of a diff, useful when the changes themselves are not kept in memory.
+ */
+public record DiffStatistics(long deleted, long added, long updated,
+                             long initialTotal, long newSize) implements BatchChain.Commentifiable {
+    @Override
+    public String toComment() {
+        return "deleted: " + deleted +
+                ", added: " + added +
+                ", updated: " + updated +
+                ", initial-size=" + initialTotal +
+                ", new-size=" + newSize;
+    }
+}
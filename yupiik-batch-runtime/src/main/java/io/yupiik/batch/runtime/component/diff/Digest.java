@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component.diff;
+
+/**
+ * The fingerprint of a row: its key and a hash of its content.
+ * A stream of digests (sorted by key) can replace the reference dataset of a diff, typically when it is persisted in a digest table.
+ *
+ * @param key  the row identifier.
+ * @param hash the content hash (hexadecimal).
+ * @param <K>  the key type.
+ */
+public record Digest<K>(K key, String hash) {
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component.diff;
+
+import io.yupiik.batch.runtime.batch.BatchPromise;
+import io.yupiik.batch.runtime.batch.builder.BatchChain;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A diff which is not materialized: changes are pushed in a bounded queue while the comparison runs
+ * (in a background task) and consumed as an iterator, enabling to apply them while the diff is still computed.
+ * The bounded queue gives backpressure to the comparison if the consumer is slower.
+ *
+ * It is a {@link BatchPromise} (of itself) so the tracing of the step creating it ends with the comparison.
+ *
+ * @param <T> the data type.
+ */
+public class StreamingDiff<T> implements Iterator<DiffEntry<T>>, BatchPromise<StreamingDiff<T>>,
+        BatchChain.Commentifiable, AutoCloseable {
+    private static final DiffEntry<?> END = new DiffEntry<>(null, null);
+
+    private final BlockingQueue<DiffEntry<T>> queue;
+    private final CompletableFuture<Void> end = new CompletableFuture<>();
+
+    private volatile boolean closed;
+    private volatile DiffStatistics statistics;
+    private volatile Throwable error;
+    private DiffEntry<T> next;
+    private boolean done;
+
+    public StreamingDiff(final int capacity, final Executor executor,
+                         final Function<Consumer<DiffEntry<T>>, DiffStatistics> producer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        // the end marker is pushed by the producer task itself: a completion callback could run in the caller thread
+        // if the task is already done and block it on a full queue before any consumption started
+        CompletableFuture.runAsync(() -> {
+            try {
+                statistics = producer.apply(this::push);
+                end.complete(null);
+            } catch (final RuntimeException | Error e) {
+                error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                end.completeExceptionally(error);
+            }
+            if (!closed) {
+                try {
+                    push(endMarker());
+                } catch (final CancellationException ce) {
+                    // closed while waiting, no-op
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * @return the diff statistics, only available once the comparison is done.
+     */
+    public DiffStatistics statistics() {
+        return statistics;
+    }
+
+    @Override
+    public StreamingDiff<T> value() {
+        return this;
+    }
+
+    @Override
+    public CompletionStage<Void> end() {
+        return end;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        try {
+            final var entry = queue.take();
+            if (entry == END) {
+                done = true;
+                if (error != null) {
+                    if (error instanceof RuntimeException re) {
+                        throw re;
+                    }
+                    throw new IllegalStateException(error);
+                }
+                return false;
+            }
+            next = entry;
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public DiffEntry<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final var entry = next;
+        next = null;
+        return entry;
+    }
+
+    @Override
+    public String toComment() {
+        final var stats = statistics;
+        return stats == null ? "in progress" : stats.toComment();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear(); // unlock the producer if waiting, it will then see the closed flag
+    }
+
+    private void push(final DiffEntry<T> entry) {
+        try {
+            while (!queue.offer(entry, 100, MILLISECONDS)) {
+                if (closed) {
+                    throw new CancellationException("Streaming diff closed");
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private DiffEntry<T> endMarker() {
+        return (DiffEntry<T>) END;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component.mapping;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Registered as a {@link java.util.ServiceLoader} provider by {@code mapping-processor} for each generated mapper,
+ * it enables {@code Mapper} to instantiate it without any reflection (native-image friendly).
+ */
+public interface GeneratedMapperFactory {
+    /**
+     * @return the {@link Mapping} specification this factory creates a mapper for.
+     */
+    Class<?> spec();
+
+    /**
+     * @param spec   the specification instance (can be {@code null} if the specification can't be instantiated).
+     * @param tables the mapping tables of the specification.
+     * @return the generated mapper.
+     */
+    Function<?, ?> create(Object spec, Map<String, Map<String, String>> tables);
+}
@@ -64,6 +64,7 @@ public class MapperTableFilter implements Predicate<String> {
     public static class CountingPredicate<A> implements Predicate<A> {
         private final LongAdder counter = new LongAdder();
         private final Predicate<A> filter;
+        private Runnable rejectionListener;
 
         private CountingPredicate(final Predicate<A> filter) {
             this.filter = filter;
@@ -74,6 +75,10 @@ public class MapperTableFilter implements Predicate<String> {
             final var result = filter.test(a);
             if (!result) {
                 counter.increment();
+                final var listener = rejectionListener;
+                if (listener != null) {
+                    listener.run();
+                }
             }
             return result;
         }
@@ -81,5 +86,18 @@ public class MapperTableFilter implements Predicate<String> {
         public long getCounter() {
             return counter.sum();
         }
+
+        /**
+         * @param listener callback called for each rejected element (metrics for example), must be registered before the predicate is used.
+         * @return this predicate.
+         */
+        public CountingPredicate<A> addRejectionListener(final Runnable listener) {
+            final var current = rejectionListener;
+            rejectionListener = current == null ? listener : () -> {
+                current.run();
+                listener.run();
+            };
+            return this;
+        }
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntSupplier;
+
+/**
+ * Groups the elements of an iterator in chunks of {@code size} elements (last one can be smaller).
+ * If {@code reuse} is true, the same list is returned for each chunk - it is only valid until next call to {@link #next()} -
+ * which avoids to allocate a list per chunk when the consumer does not keep it (writing a batch for example).
+ * The size can also be a supplier, read for each chunk, to adapt it while iterating.
+ *
+ * @param <A> the element type.
+ */
+public class ChunkingIterator<A> implements Iterator<List<A>>, AutoCloseable {
+    private final Iterator<A> delegate;
+    private final IntSupplier size;
+    private final boolean reuse;
+    private List<A> buffer;
+
+    public ChunkingIterator(final Iterator<A> delegate, final int size, final boolean reuse) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0: " + size);
+        }
+        this.delegate = delegate;
+        this.size = () -> size;
+        this.reuse = reuse;
+    }
+
+    public ChunkingIterator(final Iterator<A> delegate, final IntSupplier size, final boolean reuse) {
+        this.delegate = delegate;
+        this.size = size;
+        this.reuse = reuse;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return delegate.hasNext();
+    }
+
+    @Override
+    public List<A> next() {
+        if (!delegate.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final int size = this.size.getAsInt();
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0: " + size);
+        }
+        final List<A> chunk;
+        if (reuse) {
+            if (buffer == null) {
+                buffer = new ArrayList<>(size);
+            } else {
+                buffer.clear();
+            }
+            chunk = buffer;
+        } else {
+            chunk = new ArrayList<>(size);
+        }
+        for (int i = 0; i < size && delegate.hasNext(); i++) {
+            chunk.add(delegate.next());
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (AutoCloseable.class.isInstance(delegate)) {
+            AutoCloseable.class.cast(delegate).close();
+        }
+    }
+}
@@ -16,24 +16,56 @@
 package io.yupiik.batch.runtime.iterator;
 
 import java.util.Iterator;
+import java.util.function.LongConsumer;
 
 public class CountingIterator<T> implements Iterator<T>, AutoCloseable {
     private final Iterator<T> delegate;
     private long total;
+    private LongConsumer listener; // only timed when set
+    private long latency;
 
     public CountingIterator(final Iterator<T> delegate) {
         this.delegate = delegate;
     }
 
+    /**
+     * Registers a callback called for each element with the time spent to produce it ({@code hasNext()} and {@code next()}) in nanoseconds.
+     * It does not change the iterator instance so it can be used without altering the value of a step (metrics for example).
+     *
+     * @param listener the callback to add (composed with previously registered ones).
+     * @return this iterator.
+     */
+    public CountingIterator<T> addElementListener(final LongConsumer listener) {
+        this.listener = this.listener == null ? listener : this.listener.andThen(listener);
+        return this;
+    }
+
     @Override
     public boolean hasNext() {
-        return delegate.hasNext();
+        if (listener == null) {
+            return delegate.hasNext();
+        }
+        final var start = System.nanoTime();
+        try {
+            return delegate.hasNext();
+        } finally {
+            latency += System.nanoTime() - start;
+        }
     }
 
     @Override
     public T next() {
+        if (listener == null) {
+            final var next = delegate.next();
+            total++;
+            return next;
+        }
+        final var start = System.nanoTime();
         final var next = delegate.next();
         total++;
+        final var duration = latency + System.nanoTime() - start;
+        latency = 0;
+        listener.accept(duration);
         return next;
     }
 
@@ -18,44 +18,73 @@ package io.yupiik.batch.runtime.iterator;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Spliterator;
-import java.util.Spliterators;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.logging.Logger;
-import java.util.stream.StreamSupport;
 
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
-
-// todo: better impl in terms of mem
+/**
+ * Keeps a single element per key, the winner being the first one in {@code comparator} order
+ * (the first seen one in case of tie).
+ * The output order is the order of the first occurrence of each key.
+ *
+ * @param <A> the element type.
+ * @param <B> the key type.
+ */
 public class DistinctIterator<A, B> implements Iterator<A>, AutoCloseable {
     private final Logger logger = Logger.getLogger(getClass().getName());
 
     private final Iterator<A> delegate;
+    private final Function<A, B> keyExtractor;
+    private final Comparator<A> comparator;
+    private final Mode mode;
+
+    // HASH mode
+    private Iterator<A> winners;
+
+    // SORTED mode
+    private A next;
+    private A pending;
+    private B pendingKey;
 
     public DistinctIterator(final Iterator<A> delegate, final Function<A, B> keyExtractor, final Comparator<A> comparator) {
-        final var data = StreamSupport.stream(Spliterators.spliteratorUnknownSize(delegate, Spliterator.IMMUTABLE), false)
-                .collect(groupingBy(keyExtractor, LinkedHashMap::new, toList())); // keep the order
-        this.delegate = data.values().stream()
-                .map(l -> {
-                    if (l.size() == 1) {
-                        return l.get(0);
-                    }
-                    l.sort(comparator);
-                    logger.info(() -> "Discarding " + l.subList(1, l.size()) + " in favor of " + l.get(0));
-                    return l.get(0);
-                })
-                .iterator();
+        this(delegate, keyExtractor, comparator, Mode.HASH);
+    }
+
+    public DistinctIterator(final Iterator<A> delegate, final Function<A, B> keyExtractor, final Comparator<A> comparator,
+                            final Mode mode) {
+        this.delegate = delegate;
+        this.keyExtractor = keyExtractor;
+        this.comparator = comparator;
+        this.mode = mode;
     }
 
     @Override
     public boolean hasNext() {
-        return delegate.hasNext();
+        return switch (mode) {
+            case HASH -> {
+                if (winners == null) {
+                    winners = selectWinners();
+                }
+                yield winners.hasNext();
+            }
+            case SORTED -> next != null || findNextSorted();
+        };
     }
 
     @Override
     public A next() {
-        return delegate.next();
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return switch (mode) {
+            case HASH -> winners.next();
+            case SORTED -> {
+                final var value = next;
+                next = null;
+                yield value;
+            }
+        };
     }
 
     @Override
@@ -64,4 +93,65 @@ public class DistinctIterator<A, B> implements Iterator<A>, AutoCloseable {
             AutoCloseable.class.cast(delegate).close();
         }
     }
+
+    private Iterator<A> selectWinners() {
+        final var data = new LinkedHashMap<B, A>(); // keep the order
+        while (delegate.hasNext()) {
+            final var value = delegate.next();
+            final var key = keyExtractor.apply(value);
+            final var current = data.putIfAbsent(key, value);
+            if (current != null) {
+                data.put(key, elect(current, value));
+            }
+        }
+        return data.values().iterator();
+    }
+
+    // adjacent elements with the same key are reduced to a single one so only the current run is kept in memory
+    private boolean findNextSorted() {
+        while (delegate.hasNext()) {
+            final var value = delegate.next();
+            final var key = keyExtractor.apply(value);
+            if (pending == null) {
+                pending = value;
+                pendingKey = key;
+            } else if (Objects.equals(pendingKey, key)) {
+                pending = elect(pending, value);
+            } else {
+                next = pending;
+                pending = value;
+                pendingKey = key;
+                return true;
+            }
+        }
+        if (pending != null) {
+            next = pending;
+            pending = null;
+            pendingKey = null;
+            return true;
+        }
+        return false;
+    }
+
+    private A elect(final A current, final A candidate) {
+        if (comparator.compare(candidate, current) < 0) {
+            logger.fine(() -> "Discarding " + current + " in favor of " + candidate);
+            return candidate;
+        }
+        logger.fine(() -> "Discarding " + candidate + " in favor of " + current);
+        return current;
+    }
+
+    public enum Mode {
+        /**
+         * Input can be in any order, only the current winner of each key is kept in memory until the input is fully read.
+         */
+        HASH,
+
+        /**
+         * Input is sorted by key (elements with the same key are adjacent) - this is generally the case before a diff -
+         * so elements are emitted in streaming mode with a constant memory usage.
+         */
+        SORTED
+    }
 }
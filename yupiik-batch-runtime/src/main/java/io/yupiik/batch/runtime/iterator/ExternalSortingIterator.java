@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorting iterator which does not require the whole dataset to fit in memory.
+ * Data are read by runs of {@code runSize} rows, each run is sorted in memory and spilled in a temporary file
+ * then all runs are merged (k-way merge) when iterating.
+ * If the input fits in a single run nothing is written on disk.
+ * To bound the number of open files, when there are more than {@code maxFanIn} runs they are first merged
+ * by groups of {@code maxFanIn} into bigger runs until the final merge fits the limit.
+ *
+ * @param <A> the row type.
+ */
+public class ExternalSortingIterator<A> implements Iterator<A>, AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_FAN_IN = 128;
+
+    private final Iterator<A> input;
+    private final Comparator<A> comparator;
+    private final int runSize;
+    private final RowSerializer<A> serializer;
+    private final Path directory;
+    private int maxFanIn = DEFAULT_MAX_FAN_IN;
+
+    private final List<Run<A>> runs = new ArrayList<>();
+    private Iterator<A> inMemory;
+    private PriorityQueue<Run<A>> merger;
+
+    public ExternalSortingIterator(final Iterator<A> input, final Comparator<A> comparator,
+                                   final int runSize, final RowSerializer<A> serializer) {
+        this(input, comparator, runSize, serializer, null);
+    }
+
+    /**
+     * @param input      data to sort.
+     * @param comparator the sorting comparator.
+     * @param runSize    max number of rows kept in memory.
+     * @param serializer how to write/read rows on disk.
+     * @param directory  where to create temporary files, {@code null} for the default temporary directory.
+     */
+    public ExternalSortingIterator(final Iterator<A> input, final Comparator<A> comparator,
+                                   final int runSize, final RowSerializer<A> serializer, final Path directory) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("runSize must be > 0: " + runSize);
+        }
+        this.input = input;
+        this.comparator = comparator;
+        this.runSize = runSize;
+        this.serializer = serializer;
+        this.directory = directory;
+    }
+
+    /**
+     * @param maxFanIn max number of runs merged (so files opened) at the same time, default to {@value #DEFAULT_MAX_FAN_IN}.
+     * @return this.
+     */
+    public ExternalSortingIterator<A> setMaxFanIn(final int maxFanIn) {
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("maxFanIn must be >= 2: " + maxFanIn);
+        }
+        this.maxFanIn = maxFanIn;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (inMemory == null && merger == null) {
+            sort();
+        }
+        if (inMemory != null) {
+            return inMemory.hasNext();
+        }
+        return !merger.isEmpty();
+    }
+
+    @Override
+    public A next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (inMemory != null) {
+            return inMemory.next();
+        }
+        final var run = merger.poll();
+        final var value = run.current;
+        try {
+            if (run.advance()) {
+                merger.add(run);
+            } else {
+                run.close();
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws Exception {
+        final var error = new IllegalStateException("An error occurred closing " + getClass());
+        for (final var run : runs) {
+            try {
+                run.close();
+            } catch (final IOException e) {
+                error.addSuppressed(e);
+            }
+        }
+        runs.clear();
+        if (merger != null) {
+            merger.clear();
+        }
+        try {
+            if (AutoCloseable.class.isInstance(input)) {
+                AutoCloseable.class.cast(input).close();
+            }
+        } catch (final Exception e) {
+            error.addSuppressed(e);
+        }
+        if (error.getSuppressed().length > 0) {
+            throw error;
+        }
+    }
+
+    private void sort() {
+        final var buffer = new ArrayList<A>(Math.min(runSize, 1024));
+        try {
+            while (input.hasNext()) {
+                buffer.add(input.next());
+                if (buffer.size() == runSize) {
+                    spill(buffer);
+                }
+            }
+            buffer.sort(comparator);
+            if (runs.isEmpty()) {
+                inMemory = buffer.iterator();
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                spill(buffer);
+            }
+
+            while (runs.size() > maxFanIn) {
+                reduceRuns();
+            }
+            merger = open(runs);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // merges consecutive groups of runs so the run order (and therefore the sort stability) is kept
+    private void reduceRuns() throws IOException {
+        final var merged = new ArrayList<Run<A>>(runs.size() / maxFanIn + 1);
+        try {
+            for (int from = 0; from < runs.size(); from += maxFanIn) {
+                final var group = runs.subList(from, Math.min(runs.size(), from + maxFanIn));
+                if (group.size() == 1) { // just reindex it
+                    final var run = group.get(0);
+                    merged.add(new Run<>(merged.size(), run.file, run.remaining, serializer));
+                    continue;
+                }
+
+                final var file = createTempFile();
+                final var run = new Run<>(merged.size(), file, 0, serializer);
+                merged.add(run);
+                final var queue = open(group);
+                try (final var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+                    while (!queue.isEmpty()) {
+                        final var current = queue.poll();
+                        serializer.write(output, current.current);
+                        run.remaining++;
+                        if (current.advance()) {
+                            queue.add(current);
+                        } else {
+                            current.close();
+                        }
+                    }
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            for (final var run : merged) {
+                try {
+                    run.close();
+                } catch (final IOException ioe) {
+                    e.addSuppressed(ioe);
+                }
+            }
+            throw e;
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    private PriorityQueue<Run<A>> open(final List<Run<A>> toMerge) throws IOException {
+        // tie on the run index to keep the sort stable
+        final var queue = new PriorityQueue<Run<A>>(toMerge.size(), (r1, r2) -> {
+            final int diff = comparator.compare(r1.current, r2.current);
+            return diff != 0 ? diff : Integer.compare(r1.index, r2.index);
+        });
+        for (final var run : toMerge) {
+            if (run.open()) {
+                queue.add(run);
+            } else {
+                run.close();
+            }
+        }
+        return queue;
+    }
+
+    private Path createTempFile() throws IOException {
+        return directory == null ?
+                Files.createTempFile("yupiik-batch-sort-", ".run") :
+                Files.createTempFile(directory, "yupiik-batch-sort-", ".run");
+    }
+
+    private void spill(final List<A> buffer) throws IOException {
+        buffer.sort(comparator);
+        final var file = createTempFile();
+        final var run = new Run<>(runs.size(), file, buffer.size(), serializer);
+        runs.add(run);
+        try (final var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            for (final var row : buffer) {
+                serializer.write(output, row);
+            }
+        }
+        buffer.clear();
+    }
+
+    private static class Run<A> implements AutoCloseable {
+        private final int index;
+        private final Path file;
+        private final RowSerializer<A> serializer;
+        private long remaining;
+
+        private DataInputStream input;
+        private A current;
+
+        private Run(final int index, final Path file, final long size, final RowSerializer<A> serializer) {
+            this.index = index;
+            this.file = file;
+            this.remaining = size;
+            this.serializer = serializer;
+        }
+
+        private boolean open() throws IOException {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            return advance();
+        }
+
+        private boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                return false;
+            }
+            remaining--;
+            current = serializer.read(input);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (input != null) {
+                    input.close();
+                    input = null;
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -19,6 +19,8 @@ import io.yupiik.batch.runtime.batch.builder.BatchChain;
 
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -38,18 +40,132 @@ public class FluentIterator<A> implements Iterator<A>, BatchChain.Commentifiable
         return new FluentIterator<>(new MappingIterator<>(delegate, function));
     }
 
+    /**
+     * Maps the elements with {@code parallelism} threads keeping the input order (see {@link ParallelMappingIterator}).
+     * IMPORTANT: the iterator must be closed if not fully consumed to release the workers.
+     *
+     * @param function    the mapper, it must be thread safe.
+     * @param parallelism number of workers.
+     * @param bufferSize  max number of elements mapped or waiting to be consumed, must be greater or equal to parallelism.
+     * @param <B>         the mapped type.
+     * @return the mapped iterator.
+     */
+    public <B> FluentIterator<B> parallelMap(final Function<A, B> function, final int parallelism, final int bufferSize) {
+        return parallelMap(function, parallelism, bufferSize, true);
+    }
+
+    /**
+     * Same as {@link #parallelMap(Function, int, int)} but enables to emit results as soon as they are computed if order does not matter.
+     *
+     * @param function    the mapper, it must be thread safe.
+     * @param parallelism number of workers.
+     * @param bufferSize  max number of elements mapped or waiting to be consumed, must be greater or equal to parallelism.
+     * @param ordered     if true the input order is preserved.
+     * @param <B>         the mapped type.
+     * @return the mapped iterator.
+     */
+    public <B> FluentIterator<B> parallelMap(final Function<A, B> function, final int parallelism, final int bufferSize,
+                                             final boolean ordered) {
+        return new FluentIterator<>(new ParallelMappingIterator<>(delegate, function, parallelism, bufferSize, ordered));
+    }
+
     public <B> FluentIterator<B> flatMap(final Function<A, Iterator<B>> function) {
         return new FluentIterator<>(new FlatMappingIterator<>(delegate, function));
     }
 
+    /**
+     * Reads ahead up to {@code size} elements in a background thread (see {@link PrefetchingIterator}).
+     *
+     * @param size max number of prefetched elements.
+     * @return the prefetching iterator.
+     */
+    public FluentIterator<A> prefetch(final int size) {
+        return new FluentIterator<>(new PrefetchingIterator<>(delegate, size));
+    }
+
     public FluentIterator<A> sort(final Comparator<A> comparator) {
         return new FluentIterator<>(new SortingIterator<>(delegate, comparator));
     }
 
+    /**
+     * Sorts the data without requiring the whole dataset to fit in memory, see {@link ExternalSortingIterator}.
+     *
+     * @param comparator the sorting comparator.
+     * @param runSize    max number of rows kept in memory, other rows are spilled on disk.
+     * @param serializer how to write/read rows on disk.
+     * @return the sorted iterator.
+     */
+    public FluentIterator<A> sort(final Comparator<A> comparator, final int runSize, final RowSerializer<A> serializer) {
+        return new FluentIterator<>(new ExternalSortingIterator<>(delegate, comparator, runSize, serializer));
+    }
+
     public <B> FluentIterator<A> distinct(final Function<A, B> keyExtractor, final Comparator<A> comparator) {
         return new FluentIterator<>(new DistinctIterator<>(delegate, keyExtractor, comparator));
     }
 
+    public <B> FluentIterator<A> distinct(final Function<A, B> keyExtractor, final Comparator<A> comparator,
+                                          final DistinctIterator.Mode mode) {
+        return new FluentIterator<>(new DistinctIterator<>(delegate, keyExtractor, comparator, mode));
+    }
+
+    /**
+     * @param size max number of elements per chunk.
+     * @return an iterator of chunks, a new list is created per chunk.
+     */
+    public FluentIterator<List<A>> chunk(final int size) {
+        return chunk(size, false);
+    }
+
+    /**
+     * @param size  max number of elements per chunk.
+     * @param reuse if true the same list is reused for all chunks (see {@link ChunkingIterator}).
+     * @return an iterator of chunks.
+     */
+    public FluentIterator<List<A>> chunk(final int size, final boolean reuse) {
+        return new FluentIterator<>(new ChunkingIterator<>(delegate, size, reuse));
+    }
+
+    /**
+     * @param size number of elements per window.
+     * @param step number of elements between two window starts.
+     * @return an iterator of windows (reused buffer, see {@link WindowingIterator}).
+     */
+    public FluentIterator<List<A>> window(final int size, final int step) {
+        return new FluentIterator<>(new WindowingIterator<>(delegate, size, step));
+    }
+
+    /**
+     * @param keyExtractor the grouping key.
+     * @param <K>          the key type.
+     * @return an iterator of groups of consecutive elements with the same key (see {@link GroupingIterator}).
+     */
+    public <K> FluentIterator<List<A>> groupAdjacentBy(final Function<A, K> keyExtractor) {
+        return new FluentIterator<>(new GroupingIterator<>(delegate, keyExtractor));
+    }
+
+    /**
+     * Maps the elements by chunks (batched lookup for example) and flattens the results.
+     *
+     * @param size     max number of elements per chunk.
+     * @param function the chunk mapper, the chunk list is reused so it must not be kept.
+     * @param <B>      the mapped type.
+     * @return the mapped iterator.
+     */
+    public <B> FluentIterator<B> mapChunks(final int size, final Function<List<A>, ? extends Iterable<B>> function) {
+        return new FluentIterator<>(new FlatMappingIterator<>(
+                new ChunkingIterator<>(delegate, size, true), chunk -> function.apply(chunk).iterator()));
+    }
+
+    /**
+     * Consumes the remaining elements by chunks (a transaction or a batched statement per chunk for example).
+     *
+     * @param size     max number of elements per chunk.
+     * @param consumer the chunk consumer, the chunk list is reused so it must not be kept.
+     */
+    public void forEachChunk(final int size, final Consumer<List<A>> consumer) {
+        new ChunkingIterator<>(delegate, size, true).forEachRemaining(consumer);
+    }
+
     public CommentedIterator<A> withComment(final String comment) {
         return new CommentedIterator<>(comment, delegate);
     }
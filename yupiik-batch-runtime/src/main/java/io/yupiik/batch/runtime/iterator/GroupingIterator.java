@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Groups consecutive elements having the same key (compared with {@link Objects#equals(Object, Object)}).
+ * It does not buffer more than a group so the input is generally sorted by key (a {@code ORDER BY} for example)
+ * to get a single group per key.
+ *
+ * @param <A> the element type.
+ * @param <K> the key type.
+ */
+public class GroupingIterator<A, K> implements Iterator<List<A>>, AutoCloseable {
+    private final Iterator<A> delegate;
+    private final Function<A, K> keyExtractor;
+
+    private A pending;
+    private K pendingKey;
+    private boolean hasPending;
+
+    public GroupingIterator(final Iterator<A> delegate, final Function<A, K> keyExtractor) {
+        this.delegate = delegate;
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasPending || delegate.hasNext();
+    }
+
+    @Override
+    public List<A> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (!hasPending) {
+            pending = delegate.next();
+            pendingKey = keyExtractor.apply(pending);
+        }
+        final var group = new ArrayList<A>();
+        group.add(pending);
+        final var key = pendingKey;
+        hasPending = false;
+        pending = null;
+        pendingKey = null;
+        while (delegate.hasNext()) {
+            final var next = delegate.next();
+            final var nextKey = keyExtractor.apply(next);
+            if (!Objects.equals(key, nextKey)) {
+                pending = next;
+                pendingKey = nextKey;
+                hasPending = true;
+                break;
+            }
+            group.add(next);
+        }
+        return group;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (AutoCloseable.class.isInstance(delegate)) {
+            AutoCloseable.class.cast(delegate).close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import io.yupiik.batch.runtime.util.Threads;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Applies a function to the elements of an iterator using {@code parallelism} worker threads.
+ * The source is read by the consumer thread, at most {@code bufferSize} elements are mapped concurrently or waiting to be consumed.
+ *
+ * In ordered mode the results are emitted in the input order (a slow element delays the next ones),
+ * in unordered mode they are emitted as soon as they are computed.
+ *
+ * A mapping failure is rethrown by {@link #next()} and stops the workers, {@link #close()} cancels pending mappings,
+ * stops the workers and closes the source.
+ *
+ * @param <A> input type.
+ * @param <B> output type.
+ */
+public class ParallelMappingIterator<A, B> implements Iterator<B>, AutoCloseable {
+    private final Iterator<A> delegate;
+    private final Function<A, B> function;
+    private final int parallelism;
+    private final int bufferSize;
+    private final boolean ordered;
+
+    private final Queue<CompletableFuture<B>> pending = new ArrayDeque<>(); // ordered mode
+    private final BlockingQueue<CompletableFuture<B>> completed = new LinkedBlockingQueue<>(); // unordered mode
+    private int inFlight;
+    private ExecutorService pool;
+    private boolean failed;
+
+    public ParallelMappingIterator(final Iterator<A> delegate, final Function<A, B> function,
+                                   final int parallelism, final int bufferSize, final boolean ordered) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0: " + parallelism);
+        }
+        if (bufferSize < parallelism) {
+            throw new IllegalArgumentException("bufferSize must be >= parallelism: " + bufferSize);
+        }
+        this.delegate = delegate;
+        this.function = function;
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (failed) {
+            return false;
+        }
+        while (inFlight < bufferSize && delegate.hasNext()) {
+            submit(delegate.next());
+        }
+        if (inFlight == 0) {
+            shutdown();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public B next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final CompletableFuture<B> result;
+        if (ordered) {
+            result = pending.poll();
+        } else {
+            try {
+                result = completed.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new IllegalStateException(e);
+            }
+        }
+        inFlight--;
+        try {
+            return result.join();
+        } catch (final CompletionException | CancellationException e) {
+            failed = true;
+            cancel();
+            final var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        cancel();
+        if (AutoCloseable.class.isInstance(delegate)) {
+            AutoCloseable.class.cast(delegate).close();
+        }
+    }
+
+    private void submit(final A element) {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(parallelism, Threads.platformThreadFactory(getClass().getName() + "-"));
+        }
+        final var result = CompletableFuture.supplyAsync(() -> function.apply(element), pool);
+        if (ordered) {
+            pending.add(result);
+        } else {
+            result.whenComplete((ok, ko) -> completed.add(result));
+        }
+        inFlight++;
+    }
+
+    private void cancel() {
+        pending.forEach(it -> it.cancel(true));
+        pending.clear();
+        completed.clear();
+        inFlight = 0;
+        shutdown();
+    }
+
+    private void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+}
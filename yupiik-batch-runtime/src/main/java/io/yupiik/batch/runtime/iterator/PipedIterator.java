@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import io.yupiik.batch.runtime.batch.BatchPromise;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Drains a source iterator in a background task into a bounded queue and exposes the queue as an iterator.
+ * It enables to overlap a producer (reading a database for example) and a consumer (writing somewhere else)
+ * with backpressure: when the queue is full the producer waits for the consumer.
+ *
+ * If multiple sources are passed they are drained concurrently (one task per source) and their elements are interleaved
+ * in the queue, i.e. order is only respected per source.
+ * The first source failure stops the other ones and is rethrown by the iterator.
+ *
+ * It is a {@link BatchPromise} (of itself) which ends when the source is fully drained so the producing step tracing stays accurate.
+ *
+ * @param <A> the element type.
+ */
+public class PipedIterator<A> implements Iterator<A>, BatchPromise<PipedIterator<A>>, AutoCloseable {
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final CompletableFuture<Void> end = new CompletableFuture<>();
+
+    private volatile boolean closed;
+    private volatile Throwable error;
+    private Object next;
+    private int running;
+
+    public PipedIterator(final int capacity, final Executor executor, final Supplier<Iterator<A>> source) {
+        this(capacity, executor, List.of(source));
+    }
+
+    public PipedIterator(final int capacity, final Executor executor, final List<Supplier<Iterator<A>>> sources) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.running = sources.size();
+        // each task pushes its end marker itself: a completion callback could run in the caller thread
+        // if the task is already done and block it on a full queue before any consumption started
+        CompletableFuture.allOf(sources.stream()
+                        .map(source -> CompletableFuture.runAsync(() -> {
+                            boolean failed = false;
+                            try {
+                                drain(source);
+                            } catch (final RuntimeException | Error e) {
+                                synchronized (this) {
+                                    if (error == null) {
+                                        error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                                        failed = true;
+                                    }
+                                }
+                            } finally {
+                                if (!closed) {
+                                    // once a source failed, only its end marker is needed (the consumer rethrows the error on it)
+                                    push(END, failed);
+                                }
+                            }
+                        }, executor))
+                        .toArray(CompletableFuture<?>[]::new))
+                .whenComplete((ok, ko) -> {
+                    if (error != null) {
+                        end.completeExceptionally(error);
+                    } else {
+                        end.complete(null);
+                    }
+                });
+    }
+
+    @Override
+    public PipedIterator<A> value() {
+        return this;
+    }
+
+    @Override
+    public CompletionStage<Void> end() {
+        return end;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            while (running > 0) {
+                final var element = queue.take();
+                if (element != END) {
+                    next = element;
+                    return true;
+                }
+                if (error != null) {
+                    running = 0;
+                    if (error instanceof RuntimeException re) {
+                        throw re;
+                    }
+                    throw new IllegalStateException(error);
+                }
+                running--;
+            }
+            return false;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public A next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        @SuppressWarnings("unchecked") final var element = (A) next;
+        next = null;
+        return element;
+    }
+
+    /**
+     * Stops the consumption, if the producer is still running it will stop at next element.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear(); // unlock the producer if waiting, it will then see the closed flag
+    }
+
+    private void drain(final Supplier<Iterator<A>> source) {
+        final var iterator = source.get();
+        try {
+            while (!closed && error == null && iterator.hasNext()) {
+                final var element = iterator.next();
+                if (element == null) {
+                    throw new IllegalArgumentException("null elements are not supported");
+                }
+                if (!push(element, false)) {
+                    break;
+                }
+            }
+        } finally {
+            if (AutoCloseable.class.isInstance(iterator)) {
+                try {
+                    AutoCloseable.class.cast(iterator).close();
+                } catch (final RuntimeException re) {
+                    throw re;
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    // returns false if the consumer closed the iterator or a source failed (unless mandatory), in this case the producer just stops
+    private boolean push(final Object element, final boolean mandatory) {
+        try {
+            while (!queue.offer(element, 100, MILLISECONDS)) {
+                if (closed || (!mandatory && error != null)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reads ahead a blocking source (SQL query, remote file, ...) in a background thread into a bounded buffer,
+ * so the source I/O overlaps with the downstream processing.
+ * The prefetching starts with the first {@link #hasNext()} call.
+ *
+ * {@link #close()} stops the prefetching and waits for the background thread to close the source (if {@link AutoCloseable})
+ * so resources like connections are released when it returns.
+ *
+ * @param <A> the element type.
+ */
+public class PrefetchingIterator<A> implements Iterator<A>, AutoCloseable {
+    private final Iterator<A> delegate;
+    private final int size;
+    private PipedIterator<A> buffer;
+
+    public PrefetchingIterator(final Iterator<A> delegate, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0: " + size);
+        }
+        this.delegate = delegate;
+        this.size = size;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffer == null) {
+            buffer = new PipedIterator<>(size, task -> {
+                final var thread = new Thread(task, getClass().getName() + "-" + delegate.getClass().getSimpleName());
+                thread.setDaemon(true);
+                thread.start();
+            }, () -> delegate);
+        }
+        return buffer.hasNext();
+    }
+
+    @Override
+    public A next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffer.next();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (buffer == null) { // never started
+            if (AutoCloseable.class.isInstance(delegate)) {
+                AutoCloseable.class.cast(delegate).close();
+            }
+            return;
+        }
+        buffer.close();
+        try { // the producer closes the source when it stops
+            buffer.end().toCompletableFuture().join();
+        } catch (final CompletionException ce) {
+            // already propagated by hasNext() or ignored since the consumer stopped
+        }
+    }
+}
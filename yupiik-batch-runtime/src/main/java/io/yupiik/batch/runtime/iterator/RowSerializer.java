@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Enables to write/read rows to/from a binary stream, used when data are spilled on disk.
+ *
+ * @param <A> the row type.
+ */
+public interface RowSerializer<A> {
+    void write(DataOutput output, A row) throws IOException;
+
+    A read(DataInput input) throws IOException;
+
+    /**
+     * Default serializer relying on java serialization, rows must be {@link java.io.Serializable}.
+     * It is convenient but not the fastest option, a custom serializer is recommended for big volumes.
+     *
+     * @param <A> the row type.
+     * @return a serializer using java serialization.
+     */
+    static <A> RowSerializer<A> serialization() {
+        return new RowSerializer<>() {
+            @Override
+            public void write(final DataOutput output, final A row) throws IOException {
+                final var buffer = new ByteArrayOutputStream();
+                try (final var out = new ObjectOutputStream(buffer)) {
+                    out.writeObject(row);
+                }
+                output.writeInt(buffer.size());
+                output.write(buffer.toByteArray());
+            }
+
+            @Override
+            public A read(final DataInput input) throws IOException {
+                final var bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                try (final var in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    @SuppressWarnings("unchecked") final var row = (A) in.readObject();
+                    return row;
+                } catch (final ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+}
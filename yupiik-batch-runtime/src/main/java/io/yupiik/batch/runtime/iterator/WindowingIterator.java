@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Emits windows of {@code size} consecutive elements, each window starting {@code step} elements after the previous one
+ * (sliding windows if {@code step < size}, elements are skipped if {@code step > size}).
+ * Only full windows are emitted (trailing elements which do not fill a window are dropped, use {@link ChunkingIterator} to keep them).
+ *
+ * The returned window is a read only view of an internal buffer, it is only valid until next call to {@link #hasNext()}/{@link #next()},
+ * copy it if it must be kept.
+ *
+ * @param <A> the element type.
+ */
+public class WindowingIterator<A> implements Iterator<List<A>>, AutoCloseable {
+    private final Iterator<A> delegate;
+    private final int size;
+    private final int step;
+    private final List<A> buffer;
+    private final List<A> view;
+    private boolean emitted;
+    private boolean ready;
+
+    public WindowingIterator(final Iterator<A> delegate, final int size, final int step) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0: " + size);
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be > 0: " + step);
+        }
+        this.delegate = delegate;
+        this.size = size;
+        this.step = step;
+        this.buffer = new ArrayList<>(size);
+        this.view = unmodifiableList(buffer);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready) {
+            return true;
+        }
+        if (emitted) { // slide
+            if (step >= size) {
+                buffer.clear();
+                for (int i = size; i < step && delegate.hasNext(); i++) {
+                    delegate.next();
+                }
+            } else {
+                buffer.subList(0, step).clear();
+            }
+            emitted = false;
+        }
+        while (buffer.size() < size && delegate.hasNext()) {
+            buffer.add(delegate.next());
+        }
+        ready = buffer.size() == size;
+        return ready;
+    }
+
+    @Override
+    public List<A> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        emitted = true;
+        return view;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (AutoCloseable.class.isInstance(delegate)) {
+            AutoCloseable.class.cast(delegate).close();
+        }
+    }
+}
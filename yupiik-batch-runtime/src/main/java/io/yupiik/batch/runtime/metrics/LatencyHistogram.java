@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR-like histogram: values are stored in power of two buckets each split in {@code 2^precision} linear sub-buckets
+ * so the relative error of a percentile is bounded (~3% with the default precision) whatever the magnitude of the value,
+ * with a fixed memory footprint and a lock-free recording.
+ */
+public class LatencyHistogram {
+    private final int precision;
+    private final int subBuckets;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        this(5);
+    }
+
+    /**
+     * @param precision number of bits used for the sub-buckets (between 1 and 10).
+     */
+    public LatencyHistogram(final int precision) {
+        if (precision < 1 || precision > 10) {
+            throw new IllegalArgumentException("precision must be in [1, 10]: " + precision);
+        }
+        this.precision = precision;
+        this.subBuckets = 1 << precision;
+        this.counts = new AtomicLongArray((64 - precision + 1) * subBuckets);
+    }
+
+    /**
+     * @param value the value to record, negative values are recorded as 0.
+     */
+    public void record(final long value) {
+        final var positive = Math.max(0, value);
+        counts.incrementAndGet(indexOf(positive));
+        count.increment();
+        sum.add(positive);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @param percentile the percentile to compute (between 0 and 100).
+     * @return the highest value equivalent to the bucket containing the percentile, 0 if there is no value.
+     */
+    public long percentile(final double percentile) {
+        final long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100. * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(counts.length() - 1);
+    }
+
+    // values < subBuckets are stored exactly in the first bucket, then each power of two has subBuckets linear slots
+    private int indexOf(final long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value); // >= precision
+        final int bucket = exponent - precision + 1;
+        final int subBucket = (int) (value >>> (exponent - precision)) - subBuckets;
+        return bucket * subBuckets + subBucket;
+    }
+
+    private long highestValueOf(final int index) {
+        final int bucket = index / subBuckets;
+        final int subBucket = index % subBuckets;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        final int shift = bucket - 1;
+        final long lowest = ((long) (subBuckets + subBucket)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Holds the metrics of the steps of a batch.
+ */
+public interface MetricsRegistry {
+    /**
+     * @param name the step name.
+     * @return the metrics of this step, created if needed.
+     */
+    StepMetrics step(String name);
+
+    /**
+     * @return all step metrics sorted by name.
+     */
+    Collection<StepMetrics> steps();
+
+    static MetricsRegistry inMemory() {
+        return new InMemory();
+    }
+
+    class InMemory implements MetricsRegistry {
+        private final Map<String, StepMetrics> steps = new ConcurrentHashMap<>();
+
+        @Override
+        public StepMetrics step(final String name) {
+            return steps.computeIfAbsent(name, StepMetrics::new);
+        }
+
+        @Override
+        public List<StepMetrics> steps() {
+            return steps.values().stream().sorted(comparing(StepMetrics::name)).collect(toList());
+        }
+    }
+}
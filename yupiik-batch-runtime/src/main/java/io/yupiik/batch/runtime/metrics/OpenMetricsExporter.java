@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Exports a {@link MetricsRegistry} in OpenMetrics text format.
+ * The payload does not end with {@code # EOF} so it can be pushed as is to {@code yupiik-batch-metrics-relay}
+ * (which concatenates the pushed payloads and appends it), {@link #push(HttpClient, URI, String, boolean)} does it.
+ */
+public class OpenMetricsExporter {
+    private static final int GZIP_THRESHOLD = 64 * 1024;
+
+    private final String prefix;
+    private final Map<String, String> labels;
+
+    /**
+     * @param batch the batch name, added as {@code batch} label.
+     */
+    public OpenMetricsExporter(final String batch) {
+        this("yupiik_batch_", Map.of("batch", batch));
+    }
+
+    /**
+     * @param prefix metric names prefix.
+     * @param labels labels added to all samples.
+     */
+    public OpenMetricsExporter(final String prefix, final Map<String, String> labels) {
+        this.prefix = prefix;
+        this.labels = labels;
+    }
+
+    public String export(final MetricsRegistry registry) {
+        final var steps = registry.steps();
+        final var out = new StringBuilder();
+        family(out, "step_rows_in", "counter", "Rows read by the step.");
+        steps.forEach(s -> sample(out, "step_rows_in_total", s, null, Long.toString(s.rowsIn())));
+        family(out, "step_rows_out", "counter", "Rows produced by the step.");
+        steps.forEach(s -> sample(out, "step_rows_out_total", s, null, Long.toString(s.rowsOut())));
+        family(out, "step_rows_filtered", "counter", "Rows rejected by the step filter.");
+        steps.forEach(s -> sample(out, "step_rows_filtered_total", s, null, Long.toString(s.rowsFiltered())));
+        family(out, "step_rows_per_second", "gauge", "Rows produced by the step per second.");
+        steps.forEach(s -> sample(out, "step_rows_per_second", s, null, Double.toString(s.rowsPerSecond())));
+        family(out, "step_duration_seconds", "gauge", "Step execution duration.");
+        steps.forEach(s -> sample(out, "step_duration_seconds", s, null, seconds(s.durationNanos())));
+        family(out, "step_allocated_bytes", "gauge", "Bytes allocated by the step execution thread.");
+        steps.forEach(s -> sample(out, "step_allocated_bytes", s, null, Long.toString(s.allocatedBytes())));
+        family(out, "step_gc_seconds", "gauge", "GC time during the step execution.");
+        steps.forEach(s -> sample(out, "step_gc_seconds", s, null, Double.toString(s.gcTimeMillis() / 1_000.)));
+        family(out, "step_element_latency_seconds", "summary", "Time to produce an output element.");
+        steps.forEach(s -> {
+            final var latency = s.latency();
+            sample(out, "step_element_latency_seconds", s, "0.5", seconds(latency.percentile(50)));
+            sample(out, "step_element_latency_seconds", s, "0.99", seconds(latency.percentile(99)));
+            sample(out, "step_element_latency_seconds_sum", s, null, seconds(latency.sum()));
+            sample(out, "step_element_latency_seconds_count", s, null, Long.toString(latency.count()));
+        });
+        return out.toString();
+    }
+
+    /**
+     * Pushes the metrics to a metrics relay.
+     *
+     * @param client     the HTTP client to use.
+     * @param relay      the relay base URI (the {@code /relay} endpoint is appended).
+     * @param id         the entry identifier in the relay (same identifier replaces previous metrics).
+     * @param dropOnPull should the relay drop the metrics once pulled.
+     * @param registry   the metrics to push.
+     */
+    public void push(final HttpClient client, final URI relay, final String id, final boolean dropOnPull,
+                     final MetricsRegistry registry) {
+        final var payload = export(registry).getBytes(UTF_8);
+        final var request = HttpRequest.newBuilder()
+                .uri(relayEndpoint(relay, id, dropOnPull))
+                .header("Content-Type", "text/plain");
+        if (payload.length > GZIP_THRESHOLD) {
+            final var gzipped = new ByteArrayOutputStream();
+            try (final var gzip = new GZIPOutputStream(gzipped)) {
+                gzip.write(payload);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            request.header("Content-Encoding", "gzip").POST(HttpRequest.BodyPublishers.ofByteArray(gzipped.toByteArray()));
+        } else {
+            request.POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+        }
+        try {
+            final var response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Can't push metrics: HTTP " + response.statusCode() + "\n" + response.body());
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void family(final StringBuilder out, final String name, final String type, final String help) {
+        out.append("# TYPE ").append(prefix).append(name).append(' ').append(type).append('\n')
+                .append("# HELP ").append(prefix).append(name).append(' ').append(help).append('\n');
+    }
+
+    private void sample(final StringBuilder out, final String name, final StepMetrics step, final String quantile, final String value) {
+        final var sampleLabels = new LinkedHashMap<>(labels);
+        sampleLabels.put("step", step.name());
+        if (quantile != null) {
+            sampleLabels.put("quantile", quantile);
+        }
+        out.append(prefix).append(name)
+                .append(sampleLabels.entrySet().stream()
+                        .map(e -> e.getKey() + "=\"" + escape(e.getValue()) + '"')
+                        .collect(joining(",", "{", "}")))
+                .append(' ').append(value).append('\n');
+    }
+
+    private String seconds(final long nanos) {
+        return Double.toString(nanos / 1_000_000_000.);
+    }
+
+    private String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // URI#resolve would replace the last segment of a base without a trailing slash so append the endpoint instead
+    static URI relayEndpoint(final URI relay, final String id, final boolean dropOnPull) {
+        final var base = relay.toString();
+        return URI.create(base + (base.endsWith("/") ? "" : "/") +
+                "relay?id=" + URLEncoder.encode(id, UTF_8) + "&dropOnPull=" + dropOnPull);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a step (aggregated if the step runs multiple times).
+ * Rows are only counted when the step input/output is a {@link io.yupiik.batch.runtime.iterator.CountingIterator}
+ * and filtered rows when the step filter is registered with {@link StepMetricsCollector#filtered}.
+ * The element latency is the time spent to produce each output element
+ * (time spent in the output iterator {@code hasNext()}/{@code next()}).
+ * Allocated bytes and GC time are measured around the step execution on the calling thread so they don't include
+ * the lazy work done when a downstream step consumes the output iterator.
+ */
+public class StepMetrics {
+    private final String name;
+    private final LongAdder rowsIn = new LongAdder();
+    private final LongAdder rowsOut = new LongAdder();
+    private final LongAdder rowsFiltered = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder duration = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder gcTime = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public StepMetrics(final String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void onRowIn() {
+        rowsIn.increment();
+    }
+
+    public void onRowOut(final long latencyNanos) {
+        rowsOut.increment();
+        latency.record(latencyNanos);
+    }
+
+    public void onRowFiltered() {
+        rowsFiltered.increment();
+    }
+
+    /**
+     * @param durationNanos  step duration (including the asynchronous part for promises).
+     * @param allocatedBytes bytes allocated by the step execution, negative if unknown.
+     * @param gcTimeMillis   GC time during the step execution.
+     */
+    public void onExecution(final long durationNanos, final long allocatedBytes, final long gcTimeMillis) {
+        executions.increment();
+        duration.add(durationNanos);
+        if (allocatedBytes > 0) {
+            this.allocatedBytes.add(allocatedBytes);
+        }
+        gcTime.add(gcTimeMillis);
+    }
+
+    public long rowsIn() {
+        return rowsIn.sum();
+    }
+
+    public long rowsOut() {
+        return rowsOut.sum();
+    }
+
+    public long rowsFiltered() {
+        return rowsFiltered.sum();
+    }
+
+    public long executions() {
+        return executions.sum();
+    }
+
+    public long durationNanos() {
+        return duration.sum();
+    }
+
+    public long allocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public long gcTimeMillis() {
+        return gcTime.sum();
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * @return output rows per second, based on the time spent producing them if the output is lazy else on the step duration.
+     */
+    public double rowsPerSecond() {
+        final long rows = rowsOut();
+        if (rows == 0) {
+            return 0;
+        }
+        final long nanos = Math.max(latency.sum(), durationNanos());
+        return nanos == 0 ? 0 : rows * 1_000_000_000. / nanos;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import com.sun.management.ThreadMXBean;
+import io.yupiik.batch.runtime.batch.BatchPromise;
+import io.yupiik.batch.runtime.batch.builder.BatchChain;
+import io.yupiik.batch.runtime.batch.builder.Executable;
+import io.yupiik.batch.runtime.batch.builder.RunConfiguration;
+import io.yupiik.batch.runtime.component.mapping.MapperTableFilter;
+import io.yupiik.batch.runtime.iterator.CountingIterator;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collects {@link StepMetrics} of the elements of a {@link BatchChain}.
+ * Step values are never replaced (steps can rely on their concrete type) so rows are only counted when a step
+ * returns a {@link CountingIterator} - directly or as the value of a {@link BatchPromise}: its elements are the rows out
+ * (with their latency) of this step and the rows in of the step consuming it.
+ * Rows rejected by a {@link MapperTableFilter.CountingPredicate} are counted once it is registered
+ * with {@link #filtered(MetricsRegistry, String, MapperTableFilter.CountingPredicate)}.
+ */
+public class StepMetricsCollector {
+    private final MetricsRegistry registry;
+    private final ThreadMXBean threads;
+    private final List<GarbageCollectorMXBean> gcs;
+
+    public StepMetricsCollector(final MetricsRegistry registry) {
+        this.registry = registry;
+        this.gcs = ManagementFactory.getGarbageCollectorMXBeans();
+        this.threads = ManagementFactory.getThreadMXBean() instanceof ThreadMXBean t && t.isThreadAllocatedMemorySupported() ?
+                t : null;
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    public Executable.Result<?> collect(final RunConfiguration configuration,
+                                        final Executable<?, ?> executable, final String name,
+                                        final Executable.Result<?> previous) {
+        final var metrics = registry.step(name);
+        if (previous != null && rows(previous.value()) instanceof CountingIterator<?> counting) {
+            counting.addElementListener(latency -> metrics.onRowIn());
+        }
+
+        final var start = System.nanoTime();
+        final var allocated = allocatedBytes();
+        final var gcTime = gcTime();
+        @SuppressWarnings("unchecked") final var executed = executable.execute(configuration, Executable.Result.class.cast(previous));
+        final var allocation = allocated < 0 ? -1 : allocatedBytes() - allocated;
+        final var gc = gcTime() - gcTime;
+        if (executed != null && rows(executed.value()) instanceof CountingIterator<?> counting) {
+            counting.addElementListener(metrics::onRowOut);
+        }
+        if (executed != null && executed.value() instanceof BatchPromise<?> promise) {
+            promise.end().whenComplete((ok, ko) -> metrics.onExecution(System.nanoTime() - start, allocation, gc));
+        } else {
+            metrics.onExecution(System.nanoTime() - start, allocation, gc);
+        }
+        return executed;
+    }
+
+    // a promise transmits its value to the next step
+    private Object rows(final Object value) {
+        return value instanceof BatchPromise<?> promise ? promise.value() : value;
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private long gcTime() {
+        long total = 0;
+        for (final var gc : gcs) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Wraps the element execution of the configuration (keeping the existing wrapper if any) to collect step metrics.
+     *
+     * @param configuration the configuration to enrich.
+     * @param registry      where to store the metrics.
+     * @return the configuration.
+     */
+    public static RunConfiguration collect(final RunConfiguration configuration, final MetricsRegistry registry) {
+        final var collector = new StepMetricsCollector(registry);
+        final Function<BatchChain<?, ?, ?>, Executable<?, ?>> existing = configuration.getElementExecutionWrapper();
+        configuration.setElementExecutionWrapper(e -> {
+            final Executable<?, ?> delegate = existing == null ? e : existing.apply(e);
+            if (e.skipTracing()) {
+                return delegate;
+            }
+            return (c, r) -> {
+                @SuppressWarnings("unchecked") final Executable.Result<Object> result = (Executable.Result<Object>) collector.collect(c, delegate, e.name(), r);
+                return result;
+            };
+        });
+        return configuration;
+    }
+
+    /**
+     * Counts the rows rejected by the filter of a step.
+     *
+     * @param registry  where to store the metrics.
+     * @param name      the step name.
+     * @param predicate the filter to meter.
+     * @param <A>       the filtered element type.
+     * @return the predicate.
+     */
+    public static <A> MapperTableFilter.CountingPredicate<A> filtered(final MetricsRegistry registry, final String name,
+                                                                      final MapperTableFilter.CountingPredicate<A> predicate) {
+        return predicate.addRejectionListener(registry.step(name)::onRowFiltered);
+    }
+}
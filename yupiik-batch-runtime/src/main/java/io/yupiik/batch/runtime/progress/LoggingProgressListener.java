@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.progress;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs progress events summaries, it is the default listener of the components supporting it.
+ */
+public class LoggingProgressListener implements ProgressListener {
+    private final Logger logger;
+    private final Level level;
+
+    public LoggingProgressListener() {
+        this(Logger.getLogger(ProgressListener.class.getName()), Level.INFO);
+    }
+
+    public LoggingProgressListener(final Logger logger, final Level level) {
+        this.logger = logger;
+        this.level = level;
+    }
+
+    @Override
+    public void onProgress(final ProgressEvent event) {
+        logger.log(level, event::toSummary);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.progress;
+
+import java.time.Duration;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Progress snapshot.
+ *
+ * @param source   name of the component reporting its progress.
+ * @param done     number of processed rows.
+ * @param total    expected number of rows, negative if unknown.
+ * @param elapsed  duration since the processing started in nanoseconds.
+ * @param finished {@code true} for the last event of a processing.
+ */
+public record ProgressEvent(String source, long done, long total, long elapsed, boolean finished) {
+    /**
+     * @return number of rows processed per second.
+     */
+    public double rate() {
+        return elapsed <= 0 ? 0 : done * 1_000_000_000. / elapsed;
+    }
+
+    /**
+     * @return estimated remaining duration, {@code null} if total is unknown or nothing was processed yet.
+     */
+    public Duration eta() {
+        if (total < 0 || done <= 0) {
+            return null;
+        }
+        return Duration.ofNanos((long) (Math.max(0, total - done) * (elapsed / (double) done)));
+    }
+
+    /**
+     * @return a human readable summary of the progress.
+     */
+    public String toSummary() {
+        final var rate = String.format("%.1f rows/s", rate());
+        if (finished) {
+            return source + ": done, " + done + " rows in " + Duration.ofMillis(NANOSECONDS.toMillis(elapsed)) + " (" + rate + ")";
+        }
+        if (total < 0) {
+            return source + ": " + done + " rows, " + rate;
+        }
+        final var eta = eta();
+        return source + ": " + done + "/" + total + " rows (" + String.format("%.2f", total == 0 ? 100. : done * 100. / total) + "%), " +
+                rate + ", ETA " + (eta == null ? "?" : Duration.ofSeconds(eta.toSeconds()));
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.progress;
+
+/**
+ * Receives the progress of a long running processing (diff application, query extraction, file reading, ...).
+ * Events are sampled - see {@link ProgressTracker} - so implementations do not need to be very fast but must be thread safe
+ * since a listener can be shared by multiple components.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+    void onProgress(ProgressEvent event);
+
+    static ProgressListener noop() {
+        return event -> {
+        };
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.progress;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the processed rows of a component and notifies a {@link ProgressListener} at most once per {@code interval}
+ * (and always at the end) so it can be called for each row.
+ * It is thread safe.
+ */
+public class ProgressTracker {
+    private final String source;
+    private final long total;
+    private final ProgressListener listener;
+    private final long interval;
+    private final long start = System.nanoTime();
+    private final LongAdder done = new LongAdder();
+    private final AtomicLong nextEvent;
+    private volatile boolean ended;
+
+    /**
+     * @param source   name of the component reporting its progress.
+     * @param total    expected number of rows, negative if unknown.
+     * @param listener the listener to notify.
+     * @param interval min duration between two events.
+     */
+    public ProgressTracker(final String source, final long total, final ProgressListener listener, final Duration interval) {
+        this.source = source;
+        this.total = total;
+        this.listener = listener;
+        this.interval = interval.toNanos();
+        this.nextEvent = new AtomicLong(start + this.interval);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(final long rows) {
+        done.add(rows);
+        final long now = System.nanoTime();
+        final long next = nextEvent.get();
+        if (now - next >= 0 && nextEvent.compareAndSet(next, now + interval)) { // only one thread emits the event
+            listener.onProgress(new ProgressEvent(source, done.sum(), total, now - start, false));
+        }
+    }
+
+    /**
+     * Emits the final event, next calls are ignored.
+     */
+    public synchronized void end() {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        listener.onProgress(new ProgressEvent(source, done.sum(), total, System.nanoTime() - start, true));
+    }
+}
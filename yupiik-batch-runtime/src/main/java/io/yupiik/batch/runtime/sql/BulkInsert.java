@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import io.yupiik.batch.runtime.util.Hexa;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Insert writer loading rows in bulk, it can be used as {@code DiffExecutor} insert factory.
+ *
+ * If the connection is a PostgreSQL one (detected with {@link Connection#unwrap(Class)}), rows are buffered as CSV
+ * and streamed with {@code CopyManager} on {@link #close()}.
+ * Otherwise, rows are inserted with multi-row {@code INSERT INTO table (columns) VALUES (...), (...)} statements
+ * (batched when full, the remaining rows being inserted on {@link #close()}).
+ *
+ * @param <R> the row type.
+ */
+public abstract class BulkInsert<R> implements SQLBiConsumer<Connection, R>, AutoCloseable {
+    private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+    protected final String table;
+    protected final List<String> columns;
+    private final int maxRowsPerStatement;
+    private int rowsPerStatement;
+
+    private Connection connection;
+    private Boolean copy;
+    private List<R> pending;
+    private PreparedStatement statement;
+    private StringBuilder csv;
+
+    /**
+     * @param table            the table to insert rows into.
+     * @param columns          the inserted columns, {@link #values(Object)} must return the values in the same order.
+     * @param rowsPerStatement max number of rows per {@code INSERT} statement, it is capped by {@link #maxParameters(Connection)}
+     *                         and {@link #maxRows(Connection)}.
+     */
+    protected BulkInsert(final String table, final List<String> columns, final int rowsPerStatement) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("No column for table " + table);
+        }
+        if (rowsPerStatement <= 0) {
+            throw new IllegalArgumentException("rowsPerStatement must be > 0: " + rowsPerStatement);
+        }
+        this.table = table;
+        this.columns = List.copyOf(columns);
+        this.maxRowsPerStatement = rowsPerStatement;
+    }
+
+    /**
+     * @param row the row to insert.
+     * @return the values of the row in {@code columns} order.
+     */
+    protected abstract Object[] values(R row);
+
+    /**
+     * @param connection the connection rows are inserted with.
+     * @return max number of parameters of an {@code INSERT} statement, default is guessed from the database product name.
+     * @throws SQLException if the connection can't be inspected.
+     */
+    protected int maxParameters(final Connection connection) throws SQLException {
+        return switch (String.valueOf(connection.getMetaData().getDatabaseProductName())) {
+            case "Microsoft SQL Server" -> 2_099; // 2100 including the declaration parameter of sp_executesql
+            case "SQLite" -> 999; // SQLITE_MAX_VARIABLE_NUMBER before 3.32
+            default -> Short.MAX_VALUE; // PostgreSQL driver limit, it is also supported by H2, MySQL, MariaDB, Oracle...
+        };
+    }
+
+    /**
+     * @param connection the connection rows are inserted with.
+     * @return max number of rows of an {@code INSERT} statement, default is guessed from the database product name.
+     * @throws SQLException if the connection can't be inspected.
+     */
+    protected int maxRows(final Connection connection) throws SQLException {
+        return "Microsoft SQL Server".equals(connection.getMetaData().getDatabaseProductName()) ? 1_000 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param connection the connection.
+     * @return {@code true} if rows must be loaded with {@link #copy(Connection, String, Reader)}.
+     * @throws SQLException if the connection can't be inspected.
+     */
+    protected boolean supportsCopy(final Connection connection) throws SQLException {
+        final var pgConnection = findClass(connection, PG_CONNECTION);
+        return pgConnection != null && connection.isWrapperFor(pgConnection);
+    }
+
+    /**
+     * @return the {@code COPY} statement loading the CSV data.
+     */
+    protected String copySql() {
+        return "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)";
+    }
+
+    /**
+     * Loads CSV data, default implementation uses PostgreSQL {@code CopyManager}.
+     *
+     * @param connection the connection.
+     * @param sql        the copy statement.
+     * @param data       the CSV data.
+     * @throws SQLException if the copy fails.
+     */
+    protected void copy(final Connection connection, final String sql, final Reader data) throws SQLException {
+        try {
+            final var pgConnection = connection.unwrap(findClass(connection, PG_CONNECTION));
+            final var copyManager = pgConnection.getClass().getMethod("getCopyAPI").invoke(pgConnection);
+            copyManager.getClass().getMethod("copyIn", String.class, Reader.class).invoke(copyManager, sql, data);
+        } catch (final InvocationTargetException ite) {
+            final var cause = ite.getTargetException();
+            if (cause instanceof SQLException sqle) {
+                throw sqle;
+            }
+            throw new SQLException(cause);
+        } catch (final ReflectiveOperationException e) {
+            throw new SQLException("Can't use CopyManager", e);
+        }
+    }
+
+    @Override
+    public void accept(final Connection connection, final R row) throws SQLException {
+        if (copy == null) {
+            this.connection = connection;
+            copy = supportsCopy(connection);
+            if (copy) {
+                csv = new StringBuilder();
+            } else {
+                rowsPerStatement = Math.max(1, Math.min(
+                        Math.min(maxRowsPerStatement, maxRows(connection)), maxParameters(connection) / columns.size()));
+                pending = new ArrayList<>(rowsPerStatement);
+            }
+        }
+        if (copy) {
+            appendCsv(values(row));
+            return;
+        }
+        pending.add(row);
+        if (pending.size() == rowsPerStatement) {
+            if (statement == null) {
+                statement = connection.prepareStatement(insertSql(rowsPerStatement));
+            }
+            bindPending(statement);
+            statement.addBatch();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (copy == null) { // no row
+            return;
+        }
+        if (copy) {
+            if (!csv.isEmpty()) {
+                copy(connection, copySql(), new StringReader(csv.toString()));
+                csv.setLength(0);
+            }
+            return;
+        }
+        if (statement != null) {
+            try {
+                statement.executeBatch();
+            } finally {
+                statement.close();
+                statement = null;
+            }
+        }
+        if (!pending.isEmpty()) {
+            try (final var remaining = connection.prepareStatement(insertSql(pending.size()))) {
+                bindPending(remaining);
+                remaining.executeUpdate();
+            }
+        }
+    }
+
+    private String insertSql(final int rows) {
+        final var row = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES " + String.join(", ", Collections.nCopies(rows, row));
+    }
+
+    private void bindPending(final PreparedStatement statement) throws SQLException {
+        int index = 1;
+        for (final var row : pending) {
+            final var values = values(row);
+            if (values.length != columns.size()) {
+                throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length + " for " + row);
+            }
+            for (final var value : values) {
+                statement.setObject(index++, value);
+            }
+        }
+        pending.clear();
+    }
+
+    // null is an unquoted empty value, other values are quoted (an empty string stays an empty string)
+    private void appendCsv(final Object[] values) {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            final var value = values[i];
+            if (value == null) {
+                continue;
+            }
+            final var string = value instanceof byte[] bytes ? "\\x" + Hexa.toHex(bytes) : String.valueOf(value);
+            csv.append('"').append(string.replace("\"", "\"\"")).append('"');
+        }
+        csv.append('\n');
+    }
+
+    private static Class<?> findClass(final Connection connection, final String name) {
+        for (final var loader : List.of(
+                Thread.currentThread().getContextClassLoader() == null ?
+                        BulkInsert.class.getClassLoader() : Thread.currentThread().getContextClassLoader(),
+                connection.getClass().getClassLoader() == null ?
+                        BulkInsert.class.getClassLoader() : connection.getClass().getClassLoader())) {
+            try {
+                return Class.forName(name, false, loader);
+            } catch (final ClassNotFoundException | NoClassDefFoundError e) {
+                // try next one
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param table            the table to insert rows into.
+     * @param columns          the inserted columns.
+     * @param rowsPerStatement max number of rows per {@code INSERT} statement.
+     * @param values           extracts the values of a row in {@code columns} order.
+     * @param <R>              the row type.
+     * @return a bulk insert writer.
+     */
+    public static <R> BulkInsert<R> of(final String table, final List<String> columns, final int rowsPerStatement,
+                                       final Function<R, Object[]> values) {
+        return new BulkInsert<>(table, columns, rowsPerStatement) {
+            @Override
+            protected Object[] values(final R row) {
+                return values.apply(row);
+            }
+        };
+    }
+}
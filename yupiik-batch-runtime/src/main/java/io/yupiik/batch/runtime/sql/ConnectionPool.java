@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Small connection pool for batches running concurrent readers/writers (partitioned queries, parallel diff application, ...).
+ * Unlike {@link ReusedSQLSupplierDataSource}, each caller gets its own connection.
+ *
+ * Idle connections are kept in a lock-free LIFO deque (most recently used first) and a semaphore bounds the number of
+ * borrowed connections, so borrow and return do not take any lock while connections are available.
+ * Borrowed connections are plain delegating wrappers - closing them returns the physical connection to the pool
+ * after a rollback of any pending transaction and the restoration of the auto-commit mode.
+ *
+ * Note that statements expose the physical connection ({@code Statement#getConnection()}) which must not be closed.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final SQLSupplier<Connection> connectionSupplier;
+    private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final int maxSize;
+    private final int validationTimeout;
+    private final long maxWait;
+
+    private volatile boolean closed;
+
+    /**
+     * @param connectionSupplier physical connection factory.
+     * @param maxSize            max number of connections.
+     * @param validationTimeout  timeout in seconds of the validation ({@link Connection#isValid(int)}) of idle connections when borrowed, negative to skip it.
+     * @param maxWait            max duration in milliseconds to wait for a connection when all are borrowed.
+     */
+    public ConnectionPool(final SQLSupplier<Connection> connectionSupplier, final int maxSize,
+                          final int validationTimeout, final long maxWait) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0: " + maxSize);
+        }
+        this.connectionSupplier = connectionSupplier;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize);
+        this.validationTimeout = validationTimeout;
+        this.maxWait = maxWait;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of connections currently borrowed.
+     */
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * @return number of idle connections.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Pool closed");
+        }
+        try {
+            if (!permits.tryAcquire() && !permits.tryAcquire(maxWait, MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No connection available after " + maxWait + "ms (max=" + maxSize + ")");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        try {
+            return new PooledConnection(this, borrow());
+        } catch (final SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return getConnection();
+    }
+
+    void release(final Connection connection) {
+        try {
+            if (closed) {
+                closeQuietly(connection);
+                return;
+            }
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idle.offerFirst(connection);
+                if (closed && idle.remove(connection)) { // pool closed concurrently
+                    closeQuietly(connection);
+                }
+            } catch (final SQLException | RuntimeException e) { // broken connection
+                logger.log(Level.FINE, e.getMessage(), e);
+                closeQuietly(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection borrow() throws SQLException {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (validationTimeout < 0 || isValid(connection)) {
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+        connection = connectionSupplier.get();
+        if (!connection.getAutoCommit()) { // same contract as ReusedSQLSupplierDataSource
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+
+    private boolean isValid(final Connection connection) {
+        try {
+            return connection.isValid(validationTimeout);
+        } catch (final SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeQuietly(final Connection connection) {
+        try {
+            connection.close();
+        } catch (final SQLException | RuntimeException e) {
+            logger.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) {
+        // no-op
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) {
+        // no-op
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) {
+        return iface.isInstance(this) ? iface.cast(this) : null;
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Closes idle connections, borrowed ones are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            closeQuietly(connection);
+        }
+    }
+}
@@ -35,6 +35,15 @@ public class DataSourceConfiguration {
     @Param(description = "Database password.")
     private String password;
 
+    @Param(description = "Max number of connections of the pool created by `toPooledDataSource()`.")
+    private int poolSize = 8;
+
+    @Param(description = "Timeout (in seconds) of the validation of a pooled connection when borrowed, negative to disable the validation.")
+    private int poolValidationTimeout = 5;
+
+    @Param(description = "Max duration (in milliseconds) to wait for a pooled connection when all are used.")
+    private long poolMaxWait = 30_000;
+
     public String getDriver() {
         return driver;
     }
@@ -51,11 +60,28 @@ public class DataSourceConfiguration {
         return password;
     }
 
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getPoolValidationTimeout() {
+        return poolValidationTimeout;
+    }
+
+    public long getPoolMaxWait() {
+        return poolMaxWait;
+    }
+
     // no need of pool for the batches normally
     public ReusedSQLSupplierDataSource toDataSource() {
         return new ReusedSQLSupplierDataSource(toConnectionProvider());
     }
 
+    // when connections are used concurrently (partitioned queries, parallel diff executors, ...)
+    public ConnectionPool toPooledDataSource() {
+        return new ConnectionPool(toConnectionProvider(), poolSize, poolValidationTimeout, poolMaxWait);
+    }
+
     public SQLSupplier<Connection> toConnectionProvider() {
         final var properties = new Properties();
         if (username != null) {
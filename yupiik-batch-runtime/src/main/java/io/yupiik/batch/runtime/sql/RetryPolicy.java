@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Defines when and how a failed database operation is replayed: exponential backoff with jitter, bounded number of attempts
+ * and a classifier of the retryable {@link SQLException} (by default {@link #isTransient(SQLException)}).
+ */
+public class RetryPolicy {
+    // connection exceptions (08xxx) are handled by class
+    private static final Set<String> TRANSIENT_STATES = Set.of(
+            "40001", // serialization failure
+            "40P01", // deadlock detected (PostgreSQL)
+            "57P01", "57P02", "57P03", // admin/crash shutdown, cannot connect now (PostgreSQL)
+            "53300", // too many connections (PostgreSQL)
+            "HYT00", "HYT01"); // timeouts
+
+    private int maxAttempts = 3;
+    private Duration initialDelay = Duration.ofMillis(500);
+    private Duration maxDelay = Duration.ofSeconds(30);
+    private double multiplier = 2;
+    private double jitter = 0.5;
+    private Predicate<SQLException> retryable = RetryPolicy::isTransient;
+
+    /**
+     * @param maxAttempts max number of executions (first one included), 1 disables retries.
+     * @return this.
+     */
+    public RetryPolicy setMaxAttempts(final int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be > 0: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param initialDelay delay before the first retry.
+     * @return this.
+     */
+    public RetryPolicy setInitialDelay(final Duration initialDelay) {
+        this.initialDelay = initialDelay;
+        return this;
+    }
+
+    /**
+     * @param maxDelay max delay between two attempts.
+     * @return this.
+     */
+    public RetryPolicy setMaxDelay(final Duration maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * @param multiplier factor applied to the delay after each failed attempt.
+     * @return this.
+     */
+    public RetryPolicy setMultiplier(final double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be >= 1: " + multiplier);
+        }
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * @param jitter ratio of the delay which is randomized (between 0 and 1), it avoids all clients to reconnect at the same time.
+     * @return this.
+     */
+    public RetryPolicy setJitter(final double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * @param retryable classifier of the errors which can be retried.
+     * @return this.
+     */
+    public RetryPolicy setRetryable(final Predicate<SQLException> retryable) {
+        this.retryable = retryable;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt the failed attempt (1 for the first execution).
+     * @param error   the failure.
+     * @return {@code true} if the operation can be replayed, i.e. attempts remain and a {@link SQLException} of the cause chain is retryable.
+     */
+    public boolean shouldRetry(final int attempt, final Throwable error) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof SQLException sqle) {
+                for (var it = sqle; it != null; it = it.getNextException()) {
+                    if (retryable.test(it)) {
+                        return true;
+                    }
+                }
+            }
+            current = current.getCause() == current ? null : current.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt the failed attempt (1 for the first execution).
+     * @return the delay before next attempt in milliseconds.
+     */
+    public long delay(final int attempt) {
+        final double exponential = initialDelay.toMillis() * Math.pow(multiplier, attempt - 1);
+        final double delay = Math.min(maxDelay.toMillis(), exponential);
+        return (long) (delay * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * @param exception the error to classify.
+     * @return {@code true} for transient/recoverable exceptions, connection errors ({@code 08xxx} SQLState) and
+     * usual transient states (serialization failure, deadlock, server shutdown, timeouts).
+     */
+    public static boolean isTransient(final SQLException exception) {
+        if (exception instanceof SQLTransientException || exception instanceof SQLRecoverableException) {
+            return true;
+        }
+        final var state = exception.getSQLState();
+        return state != null && (state.startsWith("08") || TRANSIENT_STATES.contains(state));
+    }
+}
@@ -17,18 +17,27 @@ package io.yupiik.batch.runtime.sql;
 
 import javax.sql.DataSource;
 import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
 import java.sql.Wrapper;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 // easy bridge between datasource configuration and DataSource API
+// note: uses a lock and not synchronized to not pin virtual threads while connecting
+// note: the shared connection is recreated when it failed with a connection error (or is no more valid after an error) so a retry gets a new one
 public class ReusedSQLSupplierDataSource implements DataSource, AutoCloseable {
     private final SQLSupplier<Connection> connectionSQLSupplier;
+    private final ReentrantLock lock = new ReentrantLock();
 
     private Connection connection;
 
@@ -37,9 +46,40 @@ public class ReusedSQLSupplierDataSource implements DataSource, AutoCloseable {
     }
 
     @Override
-    public synchronized Connection getConnection() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
-            return connection;
+    public Connection getConnection() throws SQLException {
+        lock.lock();
+        try {
+            return doGetConnection();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param connection a connection.
+     * @return {@code true} if the connection is the one shared by a {@link ReusedSQLSupplierDataSource}, it must not be used concurrently then.
+     */
+    public static boolean isShared(final Connection connection) {
+        return Proxy.isProxyClass(connection.getClass()) && Proxy.getInvocationHandler(connection) instanceof SharedConnectionHandler;
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return getConnection();
+    }
+
+    private Connection doGetConnection() throws SQLException {
+        if (connection != null) {
+            if (isUsable()) {
+                return connection;
+            }
+            final var delegate = Wrapper.class.cast(connection).unwrap(Connection.class);
+            connection = null;
+            try {
+                delegate.close();
+            } catch (final SQLException | RuntimeException e) { // already broken
+                Logger.getLogger(getClass().getName()).log(Level.FINE, e.getMessage(), e);
+            }
         }
         final var delegate = connectionSQLSupplier.get();
         if (!delegate.getAutoCommit()) { // all the logic relies on that since we don't handle explicitly commits but only bulks
@@ -49,27 +89,24 @@ public class ReusedSQLSupplierDataSource implements DataSource, AutoCloseable {
                 Proxy.newProxyInstance(
                         Thread.currentThread().getContextClassLoader(),
                         new Class<?>[]{Connection.class, Wrapper.class},
-                        (proxy, method, args) -> {
-                            if ("close".equals(method.getName())) {
-                                return null;
-                            }
-                            if ("unwrap".equals(method.getName())) {
-                                return delegate;
-                            }
-                            try {
-                                return method.invoke(delegate, args);
-                            } catch (final InvocationTargetException ite) {
-                                throw ite.getTargetException();
-                            }
-                        }
-                )
-        );
+                        new SharedConnectionHandler(delegate)));
         return connection;
     }
 
-    @Override
-    public Connection getConnection(final String username, final String password) throws SQLException {
-        return getConnection();
+    private boolean isUsable() {
+        final var handler = (SharedConnectionHandler) Proxy.getInvocationHandler(connection);
+        try {
+            if (handler.broken || handler.delegate.isClosed()) {
+                return false;
+            }
+            if (handler.failed) { // a dead socket does not make the connection closed, validate it once
+                handler.failed = false;
+                return handler.delegate.isValid(5);
+            }
+            return true;
+        } catch (final SQLException | RuntimeException e) {
+            return false;
+        }
     }
 
     @Override
@@ -108,10 +145,54 @@ public class ReusedSQLSupplierDataSource implements DataSource, AutoCloseable {
     }
 
     @Override
-    public synchronized void close() throws Exception {
-        if (connection != null) {
-            Wrapper.class.cast(connection).unwrap(Connection.class).close();
-            connection = null;
+    public void close() throws Exception {
+        lock.lock();
+        try {
+            if (connection != null) {
+                Wrapper.class.cast(connection).unwrap(Connection.class).close();
+                connection = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class SharedConnectionHandler implements InvocationHandler {
+        private final Connection delegate;
+        private volatile boolean broken; // connection error
+        private volatile boolean failed; // other error, connection must be validated
+
+        private SharedConnectionHandler(final Connection delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if ("close".equals(method.getName())) {
+                return null;
+            }
+            if ("unwrap".equals(method.getName())) {
+                return delegate;
+            }
+            try {
+                return method.invoke(delegate, args);
+            } catch (final InvocationTargetException ite) {
+                final var error = ite.getTargetException();
+                if (error instanceof SQLException sqle) {
+                    if (isConnectionError(sqle)) {
+                        broken = true;
+                    } else {
+                        failed = true;
+                    }
+                }
+                throw error;
+            }
+        }
+
+        private boolean isConnectionError(final SQLException error) {
+            final var state = error.getSQLState();
+            return error instanceof SQLRecoverableException || error instanceof SQLNonTransientConnectionException ||
+                    (state != null && state.startsWith("08"));
         }
     }
 }
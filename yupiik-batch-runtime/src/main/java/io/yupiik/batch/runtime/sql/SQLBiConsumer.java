@@ -18,6 +18,9 @@ package io.yupiik.batch.runtime.sql;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @FunctionalInterface
 public interface SQLBiConsumer<A, B> {
@@ -51,4 +54,95 @@ public interface SQLBiConsumer<A, B> {
             }
         }
     }
+
+    /**
+     * Groups the keys of {@code keysPerStatement} rows in a single statement - {@code DELETE FROM t WHERE id IN (?, ?, ...)} for example -
+     * to reduce the number of executions. Full statements are batched and executed with the remaining keys on {@link #close()}.
+     *
+     * @param <R> the row type.
+     */
+    abstract class BatchedIn<R> implements SQLBiConsumer<Connection, R>, AutoCloseable {
+        protected final int keysPerStatement;
+        private final List<R> pending;
+        private Connection connection;
+        private PreparedStatement statement;
+
+        protected BatchedIn(final int keysPerStatement) {
+            if (keysPerStatement <= 0) {
+                throw new IllegalArgumentException("keysPerStatement must be > 0: " + keysPerStatement);
+            }
+            this.keysPerStatement = keysPerStatement;
+            this.pending = new ArrayList<>(keysPerStatement);
+        }
+
+        /**
+         * @param placeholders the key placeholders, {@code ?, ?, ?} (or {@code (?, ?), (?, ?)} if there are multiple key columns).
+         * @return the SQL using these placeholders, ex: {@code "DELETE FROM t WHERE id IN (" + placeholders + ")"}.
+         */
+        protected abstract String createSql(String placeholders);
+
+        /**
+         * Binds the key of a row.
+         *
+         * @param statement the statement.
+         * @param index     the index of the first key parameter of this row.
+         * @param row       the row.
+         * @throws SQLException if binding fails.
+         */
+        protected abstract void bind(PreparedStatement statement, int index, R row) throws SQLException;
+
+        /**
+         * @return number of parameters per key, when greater than 1 placeholders are grouped: {@code (?, ?)}.
+         */
+        protected int keyColumns() {
+            return 1;
+        }
+
+        @Override
+        public final void accept(final Connection connection, final R row) throws SQLException {
+            this.connection = connection;
+            pending.add(row);
+            if (pending.size() == keysPerStatement) {
+                if (statement == null) {
+                    statement = connection.prepareStatement(createSql(placeholders(keysPerStatement)));
+                }
+                bindPending(statement);
+                statement.addBatch();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (statement != null) {
+                try {
+                    statement.executeBatch();
+                } finally {
+                    statement.close();
+                    statement = null;
+                }
+            }
+            if (!pending.isEmpty()) {
+                try (final var remaining = connection.prepareStatement(createSql(placeholders(pending.size())))) {
+                    bindPending(remaining);
+                    remaining.executeUpdate();
+                }
+            }
+        }
+
+        private void bindPending(final PreparedStatement statement) throws SQLException {
+            final int columns = keyColumns();
+            int index = 1;
+            for (final var row : pending) {
+                bind(statement, index, row);
+                index += columns;
+            }
+            pending.clear();
+        }
+
+        private String placeholders(final int keys) {
+            final int columns = keyColumns();
+            final var key = columns == 1 ? "?" : "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            return String.join(", ", Collections.nCopies(keys, key));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.tracing;
+
+import io.yupiik.batch.runtime.sql.SQLSupplier;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Variant of {@link ExecutionTracer} writing the executions while the batch runs:
+ * <ul>
+ *     <li>the job row is inserted when the job starts (without status nor end date) then updated when it ends,</li>
+ *     <li>steps are pushed in a bounded queue when they end and a background thread inserts them by batches
+ *     once {@code batchSize} steps are waiting or {@code flushInterval} elapsed.</li>
+ * </ul>
+ * The batch only waits for the tracing when the queue is full and at the end where pending steps are flushed before the job update.
+ * If a flush fails, pending steps are retried every {@code flushInterval}, at most {@code capacity} of them are kept (oldest are dropped).
+ * When the job ends, its row is always updated then the last failure - or dropped steps - is rethrown.
+ */
+public class AsyncExecutionTracer extends ExecutionTracer {
+    private static final StepExecution END = new StepExecution(null, null, null, null, null, null, null);
+
+    private String updateJobStatement = "" +
+            "UPDATE BATCH_JOB_EXECUTION_TRACE" +
+            " SET status = ?, comment = ?, finished = ?" +
+            " WHERE id = ?";
+    private int capacity = 1024;
+    private int batchSize = 50;
+    private long flushInterval = 1000;
+
+    private volatile BlockingQueue<StepExecution> queue;
+    private volatile Thread writer;
+    private volatile Exception error;
+    private volatile JobExecution runningJob;
+    private boolean jobInserted;
+    private long droppedSteps;
+
+    public AsyncExecutionTracer(final SQLSupplier<Connection> dataSource,
+                                final String batchName, final Clock clock) {
+        super(dataSource, batchName, clock);
+    }
+
+    public AsyncExecutionTracer(final SQLSupplier<Connection> dataSource,
+                                final String batchName, final Clock clock,
+                                final boolean forceSkip) {
+        super(dataSource, batchName, clock, forceSkip);
+    }
+
+    /**
+     * Enables to override default statement if some columns were renamed.
+     * IMPORTANT: parameter order must stay the same (status, comment, finished, id).
+     *
+     * @param updateJobStatement the update job statement to use.
+     * @return this.
+     */
+    public AsyncExecutionTracer setUpdateJobStatement(final String updateJobStatement) {
+        this.updateJobStatement = updateJobStatement;
+        return this;
+    }
+
+    /**
+     * @param capacity max number of steps waiting to be written, when reached the batch waits for the writer.
+     * @return this.
+     */
+    public AsyncExecutionTracer setCapacity(final int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * @param batchSize number of waiting steps triggering a flush.
+     * @return this.
+     */
+    public AsyncExecutionTracer setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param flushInterval max duration (in milliseconds) steps can wait before being flushed.
+     * @return this.
+     */
+    public AsyncExecutionTracer setFlushInterval(final long flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    @Override
+    protected void onJobStart(final JobExecution execution) {
+        if (forceSkip) {
+            return;
+        }
+        runningJob = execution;
+        ensureStarted();
+    }
+
+    @Override
+    protected void onStepEnd(final StepExecution execution) {
+        if (forceSkip) {
+            return;
+        }
+        ensureStarted();
+        try {
+            queue.put(execution);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void doSave(final JobExecution job, final List<StepExecution> steps) {
+        try {
+            final var thread = writer;
+            if (thread != null) {
+                try {
+                    queue.put(END);
+                    thread.join();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (!jobInserted) { // nothing was written so save everything synchronously
+                super.doSave(job, steps);
+                return;
+            }
+
+            // even if some steps were not saved, the job row must not stay "running"
+            try (final var connection = dataSource.get();
+                 final var statement = connection.prepareStatement(updateJobStatement)) {
+                statement.setString(1, job.status() == null ? "-" : job.status().name());
+                statement.setString(2, job.comment());
+                statement.setObject(3, job.finished());
+                statement.setString(4, job.id());
+                statement.executeUpdate();
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            } catch (final SQLException throwables) {
+                final var ise = new IllegalStateException(throwables);
+                if (error != null) {
+                    ise.addSuppressed(error);
+                }
+                throw ise;
+            }
+            if (error != null) {
+                throw new IllegalStateException("Can't save steps of job '" + job.name() + "'", error);
+            }
+            if (droppedSteps > 0) {
+                throw new IllegalStateException("Can't save " + droppedSteps + " steps of job '" + job.name() + "'");
+            }
+        } finally { // enables to reuse the tracer for another run
+            reset();
+        }
+    }
+
+    private synchronized void reset() {
+        writer = null;
+        queue = null;
+        error = null;
+        runningJob = null;
+        jobInserted = false;
+        droppedSteps = 0;
+    }
+
+    private synchronized void ensureStarted() {
+        if (writer != null) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(this::write, getClass().getName() + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void write() {
+        final var pending = new ArrayList<StepExecution>(batchSize);
+        final var interval = MILLISECONDS.toNanos(flushInterval);
+        var nextFlush = System.nanoTime() + interval;
+        while (true) {
+            final StepExecution step;
+            try {
+                step = queue.poll(Math.max(0, nextFlush - System.nanoTime()), NANOSECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (step == END) {
+                flush(pending);
+                return;
+            }
+            if (step != null) {
+                pending.add(step);
+            }
+            // after a failure, wait for the interval before retrying
+            if ((pending.size() >= batchSize && error == null) || System.nanoTime() >= nextFlush) {
+                flush(pending);
+                nextFlush = System.nanoTime() + interval;
+            }
+            if (pending.size() > capacity) { // database unavailable, don't keep steps forever
+                final int dropped = pending.size() - capacity;
+                pending.subList(0, dropped).clear();
+                droppedSteps += dropped;
+                Logger.getLogger(getClass().getName()).warning(() -> "Dropped " + dropped + " steps which can't be saved");
+            }
+        }
+    }
+
+    // job row is inserted with the first flush, steps are kept for next flush in case of error
+    private void flush(final List<StepExecution> pending) {
+        if (pending.isEmpty() && (jobInserted || runningJob == null)) {
+            return;
+        }
+        try (final var connection = dataSource.get()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                if (!jobInserted && runningJob != null) {
+                    try (final var statement = connection.prepareStatement(insertJobStatement)) {
+                        bindInsertJob(runningJob, statement);
+                        statement.setNull(3, Types.VARCHAR); // running
+                        statement.executeUpdate();
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    if (runningJob == null) { // job not yet started (child configuration), keep steps until we know it
+                        connection.rollback();
+                        return;
+                    }
+                    try (final var statement = connection.prepareStatement(insertStepStatement)) {
+                        for (final var step : pending) {
+                            bindInsertStep(runningJob, step, statement);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                connection.commit();
+                jobInserted = jobInserted || runningJob != null;
+                pending.clear();
+                error = null;
+            } catch (final SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (final SQLException | RuntimeException ex) {
+            error = ex;
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+}
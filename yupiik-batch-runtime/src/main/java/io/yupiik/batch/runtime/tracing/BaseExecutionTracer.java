@@ -49,6 +49,24 @@ public abstract class BaseExecutionTracer {
 
     protected abstract void save(final JobExecution execution, final List<StepExecution> steps);
 
+    /**
+     * Called when the job starts, execution has no status nor end date yet.
+     *
+     * @param execution the running job.
+     */
+    protected void onJobStart(final JobExecution execution) {
+        // no-op
+    }
+
+    /**
+     * Called each time a step ends (can be called concurrently for asynchronous steps).
+     *
+     * @param execution the step execution.
+     */
+    protected void onStepEnd(final StepExecution execution) {
+        // no-op
+    }
+
     public Executable.Result<?> traceStep(final RunConfiguration configuration,
                                           final BatchChain<?, ?, ?> batchChain, final BatchChain.Result<?> previous) {
         if (forceSkip || batchChain.skipTracing()) {
@@ -114,11 +132,14 @@ public abstract class BaseExecutionTracer {
                 LocalDateTime.ofInstant(start, clock.getZone()), LocalDateTime.ofInstant(end, clock.getZone()),
                 steps.isEmpty() ? null : steps.get(steps.size() - 1).id());
         steps.add(execution);
+        onStepEnd(execution);
     }
 
     public Runnable traceExecution(final Runnable runnable) {
         return () -> {
+            final var id = UUID.randomUUID().toString();
             final var start = clock.instant();
+            onJobStart(new JobExecution(id, batchName, null, null, LocalDateTime.ofInstant(start, clock.getZone()), null));
             var status = Status.SUCCESS;
             String error = null;
             try {
@@ -130,7 +151,7 @@ public abstract class BaseExecutionTracer {
             } finally {
                 final var end = clock.instant();
                 final var execution = new JobExecution(
-                        UUID.randomUUID().toString(), batchName, status, error,
+                        id, batchName, status, error,
                         LocalDateTime.ofInstant(start, clock.getZone()), LocalDateTime.ofInstant(end, clock.getZone()));
                 save(execution, steps);
             }
@@ -30,12 +30,12 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ExecutionTracer extends BaseExecutionTracer {
-    private final SQLSupplier<Connection> dataSource;
-    private String insertJobStatement = "" +
+    protected final SQLSupplier<Connection> dataSource;
+    protected String insertJobStatement = "" +
             "INSERT INTO BATCH_JOB_EXECUTION_TRACE" +
             " (id, name, status, comment, started, finished) VALUES " +
             " (?, ?, ?, ?, ?, ?)";
-    private String insertStepStatement = "" +
+    protected String insertStepStatement = "" +
             "INSERT INTO BATCH_STEP_EXECUTION_TRACE" +
             " (id, job_id, name, status, comment, started, finished, previous_id) VALUES" +
             " (?, ?, ?, ?, ?, ?, ?, ?)";
@@ -92,7 +92,7 @@ public class ExecutionTracer extends BaseExecutionTracer {
         doSave(job, steps);
     }
 
-    private void doSave(final JobExecution job, final List<StepExecution> steps) {
+    protected void doSave(final JobExecution job, final List<StepExecution> steps) {
         try (final var connection = dataSource.get();
              final var statement = connection.prepareStatement(insertJobStatement)) {
             bindInsertJob(job, statement);
@@ -15,11 +15,9 @@
  */
 package io.yupiik.batch.runtime.util;
 
-import java.util.stream.IntStream;
-
-import static java.util.stream.Collectors.joining;
-
 public final class Hexa {
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
     private Hexa() {
         // no-op
     }
@@ -36,13 +34,12 @@ public final class Hexa {
     }
 
     public static String toHex(final byte[] hash) {
-        return IntStream.range(0, hash.length)
-                .mapToObj(i -> {
-                    final byte b = hash[i];
-                    final var s = Integer.toHexString(b & 0xff);
-                    return (s.length() == 1 ? "0" : "") + s;
-                })
-                .collect(joining());
+        final var out = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            out[i * 2] = DIGITS[(hash[i] >> 4) & 0x0f];
+            out[i * 2 + 1] = DIGITS[hash[i] & 0x0f];
+        }
+        return new String(out);
     }
 
     private static int toBin(final char ch) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Thread helpers, mainly to use virtual threads when the JVM supports them (Java 21+) while the runtime stays compatible with Java 17.
+ * Virtual threads are interesting for I/O bound tasks (piped stages, JDBC workers, partitions) since they do not require a big platform thread pool.
+ */
+public final class Threads {
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle FACTORY;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        if (Runtime.version().feature() >= 21) { // Java 19/20 have the API as a preview feature, ignore it
+            try {
+                final var lookup = MethodHandles.publicLookup();
+                final var builder = Class.forName("java.lang.Thread$Builder");
+                final var ofVirtualType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", methodType(ofVirtualType));
+                name = lookup.findVirtual(builder, "name", methodType(builder, String.class, long.class));
+                factory = lookup.findVirtual(builder, "factory", methodType(ThreadFactory.class));
+
+                // ensure it is usable once instead of failing on the first task
+                ((ThreadFactory) factory.invoke(ofVirtual.invoke())).newThread(() -> {
+                });
+            } catch (final Throwable e) { // no virtual threads, fallback on platform threads
+                ofVirtual = null;
+                name = null;
+                factory = null;
+            }
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private Threads() {
+        // no-op
+    }
+
+    /**
+     * @return true if the JVM supports virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param prefix thread name prefix, a counter is appended.
+     * @return a factory creating virtual threads or daemon platform threads if the JVM does not support virtual threads.
+     */
+    public static ThreadFactory virtualThreadFactory(final String prefix) {
+        if (!hasVirtualThreads()) {
+            return platformThreadFactory(prefix);
+        }
+        try {
+            final var builder = NAME.invoke(OF_VIRTUAL.invoke(), prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param prefix thread name prefix, a counter is appended.
+     * @return a factory creating daemon platform threads.
+     */
+    public static ThreadFactory platformThreadFactory(final String prefix) {
+        final var counter = new AtomicLong();
+        return task -> {
+            final var thread = new Thread(task, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param factory the thread factory.
+     * @return an executor starting a new thread per task (intended to be used with virtual threads).
+     */
+    public static Executor threadPerTaskExecutor(final ThreadFactory factory) {
+        return task -> factory.newThread(task).start();
+    }
+}
@@ -16,12 +16,26 @@
 package io.yupiik.batch.runtime.batch.builder;
 
 import io.yupiik.batch.runtime.batch.BatchPromise;
+import io.yupiik.batch.runtime.iterator.FluentIterator;
+import io.yupiik.batch.runtime.util.Threads;
 import org.junit.jupiter.api.Test;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -82,4 +96,161 @@ class BatchChainTest {
         config.setForceAwaitOnPromiseError(true);
         assertDoesNotThrow(() -> successStep.run(config));
     }
+
+    @Test
+    void partition() {
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var names = new CopyOnWriteArrayList<String>();
+            final var threads = new CopyOnWriteArrayList<String>();
+            final var result = new AtomicLong();
+            final var configuration = new RunConfiguration()
+                    .setElementExecutionWrapper(e -> (c, r) -> {
+                        if (!e.skipTracing()) {
+                            names.add(e.name());
+                        }
+                        return Executable.Result.class.cast(e.execute(c, Executable.Result.class.cast(r)));
+                    });
+            new BatchChain.BatchRoot<Iterator<Integer>>() {
+                @Override
+                public Result<Iterator<Integer>> execute() {
+                    return new Result<>(IntStream.range(0, 100).boxed().iterator(), Result.Type.CONTINUE);
+                }
+
+                @Override
+                public String name() {
+                    return "input";
+                }
+            }
+                    .partition(
+                            "sum", Partitions.byHash(i -> i, 4), executor,
+                            root -> root
+                                    .filter("skip-empty", p -> !p.isEmpty())
+                                    .map("partial-sum", p -> {
+                                        threads.add(Thread.currentThread().getName());
+                                        return p.stream().mapToLong(i -> i).sum();
+                                    }),
+                            sums -> sums.stream().mapToLong(i -> i).sum())
+                    .then("result", result::set)
+                    .run(configuration);
+
+            assertEquals(4950, result.get());
+            assertEquals(4, threads.size());
+            assertFalse(threads.contains(Thread.currentThread().getName()));
+            assertEquals(
+                    List.of("input", "partial-sum[0]", "partial-sum[1]", "partial-sum[2]", "partial-sum[3]", "result",
+                            "skip-empty[0]", "skip-empty[1]", "skip-empty[2]", "skip-empty[3]", "sum"),
+                    names.stream().sorted().collect(toList()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void partitionFailure() {
+        final var error = assertThrows(IllegalStateException.class, () -> new BatchChain.BatchRoot<List<Integer>>() {
+            @Override
+            public Result<List<Integer>> execute() {
+                return new Result<>(List.of(1, 2), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .partition(
+                        "fail", List::copyOf, Runnable::run,
+                        root -> root.map("check", i -> {
+                            if (i == 2) {
+                                throw new IllegalArgumentException("oops");
+                            }
+                            return i;
+                        }),
+                        identity())
+                .run(new RunConfiguration()));
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+
+    @Test
+    void pipe() {
+        final var producers = new CopyOnWriteArrayList<String>();
+        final var result = new AtomicLong();
+        new BatchChain.BatchRoot<Iterator<Integer>>() {
+            @Override
+            public Result<Iterator<Integer>> execute() {
+                return new Result<>(IntStream.range(0, 1_000).boxed().iterator(), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .pipe("read", 10, input -> FluentIterator.of(input).map(i -> {
+                    producers.add(Thread.currentThread().getName());
+                    return (long) i;
+                }))
+                .then("write", it -> {
+                    long sum = 0;
+                    while (it.hasNext()) {
+                        sum += it.next();
+                    }
+                    result.set(sum);
+                })
+                .run(new RunConfiguration());
+        assertEquals(499_500, result.get());
+        assertEquals(1_000, producers.size());
+        assertEquals(Set.of("yupiik-batch-pipe-read"), Set.copyOf(producers));
+    }
+
+    @Test
+    void pipeConsumerFailure() {
+        final var error = assertThrows(IllegalArgumentException.class, () -> new BatchChain.BatchRoot<Iterator<Integer>>() {
+            @Override
+            public Result<Iterator<Integer>> execute() {
+                return new Result<>(IntStream.range(0, 1_000).boxed().iterator(), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .pipe("read", 1, identity())
+                .then("write", it -> {
+                    throw new IllegalArgumentException("oops");
+                })
+                .run(new RunConfiguration()));
+        assertEquals("oops", error.getMessage());
+    }
+
+    @Test
+    void pipeThreadFactory() {
+        final var created = new AtomicLong();
+        final var producers = new CopyOnWriteArrayList<String>();
+        new BatchChain.BatchRoot<Iterator<Integer>>() {
+            @Override
+            public Result<Iterator<Integer>> execute() {
+                return new Result<>(IntStream.range(0, 10).boxed().iterator(), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .pipe("read", 2, input -> FluentIterator.of(input).map(i -> {
+                    producers.add(Thread.currentThread().getName());
+                    return i;
+                }))
+                .then("write", it -> it.forEachRemaining(i -> {
+                }))
+                .run(new RunConfiguration().setThreadFactory(task -> {
+                    created.incrementAndGet();
+                    return Threads.platformThreadFactory("custom-").newThread(task);
+                }));
+        assertEquals(1, created.get());
+        assertEquals(Set.of("yupiik-batch-pipe-read"), Set.copyOf(producers));
+    }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+import io.yupiik.batch.runtime.batch.builder.BatchChain;
+import io.yupiik.batch.runtime.batch.builder.RunConfiguration;
+import io.yupiik.batch.runtime.component.BaseDiffExecutor;
+import io.yupiik.batch.runtime.component.diff.Diff;
+import io.yupiik.batch.runtime.component.diff.DiffEntry;
+import io.yupiik.batch.runtime.component.diff.DiffStatistics;
+import io.yupiik.batch.runtime.component.diff.StreamingDiff;
+import io.yupiik.batch.runtime.fn.CommentifiableConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.ADD;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.UPDATE;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+    @Test
+    void resume(@TempDir final Path work) {
+        final var file = work.resolve("checkpoints.properties");
+        final var diff = new Diff<>(
+                List.of(-1, -2),
+                IntStream.range(0, 25).boxed().collect(toList()),
+                List.of(100),
+                3, 26);
+        final var applied = new ArrayList<Integer>();
+        final var executor = new ListDiffExecutor(applied, 10);
+        final var firstStep = new AtomicInteger();
+        final var firstStepConsumer = new CheckpointableConsumer(firstStep);
+
+        // first run fails after the second chunk of additions
+        executor.failOn = 21;
+        assertThrows(IllegalStateException.class, () -> batch(diff, firstStepConsumer, executor)
+                .run(new RunConfiguration().setCheckpointStore(new FileCheckpointStore(file))));
+        assertEquals(1, firstStep.get());
+        assertEquals(IntStream.range(0, 20).boxed().collect(toList()), applied);
+        final var store = new FileCheckpointStore(file);
+        assertEquals(Checkpoint.COMPLETED, store.load("first"));
+        assertEquals("ADD=20,UPDATE=0,DELETE=0", store.load("apply"));
+
+        // restart: first step is skipped and additions restart from the third chunk
+        executor.failOn = null;
+        batch(diff, firstStepConsumer, executor).run(new RunConfiguration().setCheckpointStore(new FileCheckpointStore(file)));
+        assertEquals(1, firstStep.get());
+        assertEquals(IntStream.range(0, 25).boxed().collect(toList()), applied.subList(0, 25));
+        assertEquals(List.of(100, -1, -2), applied.subList(25, applied.size()));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void resumeUpsertStream(@TempDir final Path work) {
+        final var file = work.resolve("checkpoints.properties");
+        // additions (0, 1, ...) and updates (100, 101, ...) are interleaved: each chunk of 4 rows has 3 additions and 1 update
+        final var entries = IntStream.range(0, 12)
+                .mapToObj(i -> i % 3 == 2 ? new DiffEntry<>(UPDATE, 100 + i / 3) : new DiffEntry<>(ADD, i - i / 3))
+                .collect(toList());
+        final var applied = new ArrayList<Integer>();
+        final var executor = new ListDiffExecutor(applied, 4);
+        executor.upsert = true;
+
+        executor.failOn = 4;
+        assertThrows(IllegalStateException.class, () -> applyStream(executor, file, entries));
+        assertEquals("ADD=3,UPDATE=1,DELETE=0", new FileCheckpointStore(file).load("apply"));
+
+        executor.failOn = 6;
+        assertThrows(IllegalStateException.class, () -> applyStream(executor, file, entries));
+        assertEquals("ADD=6,UPDATE=2,DELETE=0", new FileCheckpointStore(file).load("apply"));
+
+        executor.failOn = null;
+        applyStream(executor, file, entries);
+        assertEquals(entries.stream().map(DiffEntry::value).collect(toList()), applied);
+    }
+
+    @Test
+    void noStore() {
+        final var applied = new ArrayList<Integer>();
+        final var executor = new ListDiffExecutor(applied, 2);
+        final var counter = new AtomicInteger();
+        final var diff = new Diff<>(List.<Integer>of(), List.of(1, 2, 3), List.<Integer>of(), 0, 3);
+        batch(diff, new CheckpointableConsumer(counter), executor).run(new RunConfiguration());
+        batch(diff, new CheckpointableConsumer(counter), executor).run(new RunConfiguration());
+        assertEquals(2, counter.get());
+        assertEquals(List.of(1, 2, 3, 1, 2, 3), applied);
+    }
+
+    private void applyStream(final ListDiffExecutor executor, final Path file, final List<DiffEntry<Integer>> entries) {
+        final var consumer = executor.resumableStreaming();
+        Checkpointable.class.cast(consumer).restore(new Checkpoint(new FileCheckpointStore(file), "apply"));
+        consumer.accept(new StreamingDiff<>(2, task -> {
+            final var thread = new Thread(task, "CheckpointTest-stream");
+            thread.setDaemon(true);
+            thread.start();
+        }, sink -> {
+            entries.forEach(sink);
+            return new DiffStatistics(0, 8, 4, 4, 12);
+        }));
+    }
+
+    private BatchChain<?, ?, Diff<Integer>> batch(final Diff<Integer> diff, final CheckpointableConsumer first,
+                                                  final ListDiffExecutor executor) {
+        return new BatchChain.BatchRoot<Diff<Integer>>() {
+            @Override
+            public Result<Diff<Integer>> execute() {
+                return new Result<>(diff, Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "diff";
+            }
+        }
+                .then("first", first)
+                .then("apply", executor.resumable());
+    }
+
+    private static class CheckpointableConsumer implements CommentifiableConsumer<Diff<Integer>>, Checkpointable {
+        private final AtomicInteger counter;
+
+        private CheckpointableConsumer(final AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void restore(final Checkpoint checkpoint) {
+            assertTrue(checkpoint.token() == null);
+        }
+
+        @Override
+        public void accept(final Diff<Integer> diff) {
+            counter.incrementAndGet();
+        }
+    }
+
+    private static class ListDiffExecutor extends BaseDiffExecutor<Integer> {
+        private final List<Integer> applied;
+        private Integer failOn;
+        private boolean upsert;
+
+        private ListDiffExecutor(final List<Integer> applied, final int commitInterval) {
+            super(false, commitInterval);
+            this.applied = applied;
+        }
+
+        @Override
+        protected void batchInsert(final Class<Integer> type, final Iterator<Integer> iterator) {
+            apply(iterator);
+        }
+
+        @Override
+        protected void batchUpdate(final Class<Integer> type, final Iterator<Integer> iterator) {
+            apply(iterator);
+        }
+
+        @Override
+        protected void batchDelete(final Class<Integer> type, final Iterator<Integer> iterator) {
+            apply(iterator);
+        }
+
+        @Override
+        protected boolean isUpsert() {
+            return upsert;
+        }
+
+        @Override
+        protected void batchUpsert(final Class<Integer> type, final Iterator<Integer> iterator) {
+            apply(iterator);
+        }
+
+        private void apply(final Iterator<Integer> iterator) { // transactional: all or nothing
+            final var chunk = new ArrayList<Integer>();
+            iterator.forEachRemaining(chunk::add);
+            if (failOn != null && chunk.contains(failOn)) {
+                throw new IllegalStateException("failing on " + failOn);
+            }
+            applied.addAll(chunk);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.checkpoint;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static java.time.Clock.systemUTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JdbcCheckpointStoreTest {
+    @Test
+    void saveLoadClear() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:JdbcCheckpointStoreTest_saveLoadClear;DB_CLOSE_DELAY=-1");
+        try (final var connection = dataSource.getConnection();
+             final var statement = connection.createStatement()) {
+            statement.execute("" +
+                    "CREATE TABLE BATCH_CHECKPOINT (" +
+                    "batch_name VARCHAR(255) NOT NULL, step_name VARCHAR(255) NOT NULL, token VARCHAR(2048), updated TIMESTAMP," +
+                    " PRIMARY KEY (batch_name, step_name))");
+        }
+
+        final var store = new JdbcCheckpointStore(dataSource::getConnection, "test", systemUTC());
+        final var other = new JdbcCheckpointStore(dataSource::getConnection, "other", systemUTC());
+        assertNull(store.load("step"));
+
+        store.save("step", "1");
+        other.save("step", "other");
+        assertEquals("1", store.load("step"));
+
+        store.save("step", "2");
+        assertEquals("2", store.load("step"));
+        assertEquals("2", new Checkpoint(store, "step").token());
+
+        store.clear();
+        assertNull(store.load("step"));
+        assertEquals("other", other.load("step"));
+    }
+}
@@ -18,12 +18,14 @@ package io.yupiik.batch.runtime.component;
 import io.yupiik.batch.runtime.component.diff.Diff;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.BiPredicate;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DatasetDiffComputerTest {
@@ -133,6 +135,44 @@ class DatasetDiffComputerTest {
         assertEquals(3, diff.initialTotal());
     }
 
+    @Test
+    void stream() {
+        final var added = new ArrayList<Long>();
+        final var updated = new ArrayList<Long>();
+        final var deleted = new ArrayList<Long>();
+        try (final var diff = new DatasetDiffComputer<>(new KeyComparator(), new BeanComparator())
+                .stream(
+                        List.of(new Person(2, "b"), new Person(3, "c"), new Person(4, "d")).iterator(),
+                        List.of(new Person(1, "a"), new Person(2, "b"), new Person(3, "cc"), new Person(5, "e")).iterator(),
+                        1)) { // force the producer to wait for the consumer
+            while (diff.hasNext()) {
+                final var entry = diff.next();
+                final var target = switch (entry.operation()) {
+                    case ADD -> added;
+                    case UPDATE -> updated;
+                    case DELETE -> deleted;
+                };
+                target.add(entry.value().id);
+            }
+            assertEquals(List.of(4L), added);
+            assertEquals(List.of(3L), updated);
+            assertEquals(List.of(1L, 5L), deleted);
+            assertTrue(diff.end().toCompletableFuture().isDone());
+            assertEquals("deleted: 2, added: 1, updated: 1, initial-size=4, new-size=3", diff.toComment());
+        }
+    }
+
+    @Test
+    void streamError() {
+        try (final var diff = new DatasetDiffComputer<Person>((a, b) -> {
+            throw new IllegalArgumentException("oops");
+        }, new BeanComparator())
+                .stream(List.of(new Person(1, "a")).iterator(), List.of(new Person(1, "a")).iterator(), 1)) {
+            assertEquals("oops", assertThrows(IllegalArgumentException.class, diff::hasNext).getMessage());
+            assertTrue(diff.end().toCompletableFuture().isCompletedExceptionally());
+        }
+    }
+
     private Diff<Person> compare(final List<Person> d1,
                                  final List<Person> d2) {
         return new DatasetDiffComputer<>(new KeyComparator(), new BeanComparator()).apply(d1.iterator(), d2.iterator());
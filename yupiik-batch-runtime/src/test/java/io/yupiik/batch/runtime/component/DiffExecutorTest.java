@@ -15,8 +15,15 @@
  */
 package io.yupiik.batch.runtime.component;
 
+import io.yupiik.batch.runtime.checkpoint.Checkpoint;
+import io.yupiik.batch.runtime.checkpoint.Checkpointable;
+import io.yupiik.batch.runtime.checkpoint.JdbcCheckpointStore;
 import io.yupiik.batch.runtime.component.diff.Diff;
 import io.yupiik.batch.runtime.model.Simple;
+import io.yupiik.batch.runtime.progress.ProgressEvent;
+import io.yupiik.batch.runtime.sql.RetryPolicy;
+import io.yupiik.batch.runtime.sql.ReusedSQLSupplierDataSource;
+import io.yupiik.batch.runtime.sql.SQLBiConsumer;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.Test;
 
@@ -28,17 +35,29 @@ import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.ADD;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.DELETE;
+import static io.yupiik.batch.runtime.component.diff.DiffEntry.Operation.UPDATE;
+import static java.time.Clock.systemUTC;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -104,6 +123,407 @@ class DiffExecutorTest {
         }
     }
 
+    @Test
+    void applyStream() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_applyStream");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "applyStream");
+
+            final var executor = new DiffExecutor<Simple>(
+                    dataSource::getConnection, 1, false,
+                    () -> new Simple.Insert("DiffExecutorTest_applyStream"),
+                    () -> new Simple.Update("DiffExecutorTest_applyStream"),
+                    () -> new Simple.Delete("DiffExecutorTest_applyStream"));
+            executor.streaming().accept(new DatasetDiffComputer<>(new Simple.KeyComparator(), new Simple.ValueTester())
+                    .stream(
+                            List.of(new Simple("12346", 3), new Simple("12347", 2)).iterator(),
+                            List.of(new Simple("12345", 1), new Simple("12346", 2)).iterator(),
+                            1));
+            assertEquals("deleted: 1, added: 1, updated: 1, initial-size=2, new-size=2", executor.toComment());
+
+            try (final var connection = dataSource.getConnection();
+                 final var statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 final var resultSet = statement.executeQuery("SELECT name, age from DiffExecutorTest_applyStream ORDER BY name")) {
+                assertTrue(resultSet.next());
+                assertEquals("12346", resultSet.getString("name"));
+                assertEquals(3, resultSet.getInt("age"));
+
+                assertTrue(resultSet.next());
+                assertEquals("12347", resultSet.getString("name"));
+                assertEquals(2, resultSet.getInt("age"));
+
+                assertFalse(resultSet.next());
+            }
+        }
+    }
+
+    @Test
+    void applyUpsert() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_applyUpsert");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "applyUpsert");
+            try (final var statement = keepDb.createStatement()) {
+                statement.execute("INSERT INTO DiffExecutorTest_applyUpsert (name, age) " +
+                        "SELECT '3' || X, X FROM SYSTEM_RANGE(1, 10)");
+            }
+
+            final var statements = new LongAdder();
+            final var deleted = IntStream.rangeClosed(1, 10).mapToObj(i -> new Simple("3" + i, i)).collect(toList());
+            new DiffExecutor<Simple>(
+                    dataSource::getConnection, 4, false,
+                    () -> new Simple.Upsert("DiffExecutorTest_applyUpsert"),
+                    () -> new Simple.DeleteIn("DiffExecutorTest_applyUpsert", 3) {
+                        @Override
+                        protected String createSql(final String placeholders) {
+                            statements.increment();
+                            return super.createSql(placeholders);
+                        }
+                    })
+                    .accept(new Diff<>(deleted, List.of(new Simple("12347", 2)), List.of(new Simple("12346", 3)), 12, 3));
+            assertEquals(5, statements.sum()); // chunks of 4, 4 and 2 keys: (3 + 1) * 2 + 2
+
+            try (final var connection = dataSource.getConnection();
+                 final var statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 final var resultSet = statement.executeQuery("SELECT name, age from DiffExecutorTest_applyUpsert ORDER BY name")) {
+                final var rows = new ArrayList<String>();
+                while (resultSet.next()) {
+                    rows.add(resultSet.getString("name") + "=" + resultSet.getInt("age"));
+                }
+                assertEquals(List.of("12345=1", "12346=3", "12347=2"), rows);
+            }
+        }
+    }
+
+    @Test
+    void upsertFactoryRequired() {
+        final var executor = new DiffExecutor<Simple>(
+                () -> fail("no connection expected"), 4, false,
+                () -> new Simple.Upsert("DiffExecutorTest_upsertFactoryRequired"),
+                () -> new Simple.Delete("DiffExecutorTest_upsertFactoryRequired"));
+        assertThrows(IllegalArgumentException.class, () -> executor.setUpsertFactory(null));
+        assertThrows(IllegalArgumentException.class, () -> new DiffExecutor<Simple>(
+                () -> fail("no connection expected"), 4, false,
+                null, () -> new Simple.Delete("DiffExecutorTest_upsertFactoryRequired")));
+    }
+
+    @Test
+    void applyUpsertStream() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_applyUpsertStream");
+        final var logger = Logger.getLogger(DiffExecutor.class.getName());
+        final var records = new ArrayList<String>();
+        final var handler = new Handler() {
+            @Override
+            public synchronized void publish(final LogRecord record) {
+                if (record.getMessage().startsWith("[")) {
+                    records.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+                // no-op
+            }
+
+            @Override
+            public void close() throws SecurityException {
+                flush();
+            }
+        };
+        final var level = logger.getLevel();
+        logger.setLevel(Level.FINE); // transactions are logged at FINE level
+        logger.addHandler(handler);
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "applyUpsertStream");
+
+            final var executor = new DiffExecutor<Simple>(
+                    dataSource::getConnection, 2, false,
+                    () -> new Simple.Upsert("DiffExecutorTest_applyUpsertStream"),
+                    () -> new Simple.DeleteIn("DiffExecutorTest_applyUpsertStream", 10));
+            executor.streaming().accept(new DatasetDiffComputer<>(new Simple.KeyComparator(), new Simple.ValueTester())
+                    .stream(
+                            List.of(new Simple("12346", 3), new Simple("12347", 2)).iterator(),
+                            List.of(new Simple("12345", 1), new Simple("12346", 2)).iterator(),
+                            1));
+            assertEquals("deleted: 1, added: 1, updated: 1, initial-size=2, new-size=2", executor.toComment());
+
+            try (final var connection = dataSource.getConnection();
+                 final var statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 final var resultSet = statement.executeQuery("SELECT name, age from DiffExecutorTest_applyUpsertStream ORDER BY name")) {
+                final var rows = new ArrayList<String>();
+                while (resultSet.next()) {
+                    rows.add(resultSet.getString("name") + "=" + resultSet.getInt("age"));
+                }
+                assertEquals(List.of("12346=3", "12347=2"), rows);
+            }
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(level);
+        }
+        // added and updated rows share the same transaction
+        assertEquals(List.of(
+                "[C][S] Starting transaction",
+                "[M] Upserting Simple[name=12346, age=3]",
+                "[M] Upserting Simple[name=12347, age=2]",
+                "[C][E] Finished transaction",
+                "[C][S] Starting transaction",
+                "[D] Deleting Simple[name=12345, age=1]",
+                "[C][E] Finished transaction"), records);
+    }
+
+    @Test
+    void adaptiveCommitInterval() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_adaptiveCommitInterval");
+        final var chunks = new ArrayList<Integer>();
+        final var executor = new DiffExecutor<Simple>(
+                dataSource::getConnection, 2, false,
+                () -> {
+                    chunks.add(0);
+                    return (connection, row) -> { // ~1ms per row
+                        LockSupport.parkNanos(MILLISECONDS.toNanos(1));
+                        chunks.set(chunks.size() - 1, chunks.get(chunks.size() - 1) + 1);
+                    };
+                },
+                SQLBiConsumer::noop, SQLBiConsumer::noop);
+        executor.setAdaptiveCommitInterval(Duration.ofMillis(200), 1, 64)
+                .accept(new Diff<>(List.of(), IntStream.range(0, 200).mapToObj(i -> new Simple("a" + i, i)).collect(toList()), List.of(), 0, 200));
+
+        assertEquals(200, chunks.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(List.of(2, 4, 8), chunks.subList(0, 3)); // grows up to x2 per transaction
+        assertTrue(chunks.stream().allMatch(it -> it <= 64), chunks::toString);
+        assertTrue(executor.toComment().contains("commit-interval: initial=2, min=2, "), executor::toComment);
+    }
+
+    @Test
+    void progress() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_progress");
+        final var events = new ArrayList<ProgressEvent>();
+        final var logger = Logger.getLogger(DiffExecutor.class.getName());
+        final var rows = new ArrayList<String>();
+        final var handler = new Handler() {
+            @Override
+            public synchronized void publish(final LogRecord record) {
+                if (record.getLevel() == Level.INFO && record.getMessage().startsWith("[")) {
+                    rows.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+                // no-op
+            }
+
+            @Override
+            public void close() throws SecurityException {
+                flush();
+            }
+        };
+        logger.addHandler(handler);
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "progress");
+            new DiffExecutor<Simple>(
+                    dataSource::getConnection, 2, false,
+                    () -> new Simple.Insert("DiffExecutorTest_progress"),
+                    () -> new Simple.Update("DiffExecutorTest_progress"),
+                    () -> new Simple.Delete("DiffExecutorTest_progress"))
+                    .setProgressListener(events::add)
+                    .setProgressInterval(Duration.ZERO)
+                    .setRowLogSampling(2)
+                    .accept(new Diff<>(
+                            List.of(new Simple("12345", 1)),
+                            IntStream.range(0, 3).mapToObj(i -> new Simple("a" + i, i)).collect(toList()),
+                            List.of(new Simple("12346", 3)),
+                            2, 4));
+        } finally {
+            logger.removeHandler(handler);
+        }
+        assertEquals(List.of("[A] Adding Simple[name=a0, age=0]", "[A] Adding Simple[name=a2, age=2]", "[D] Deleting Simple[name=12345, age=1]"), rows);
+        assertEquals(List.of("1: 2/5 false", "2: 3/5 false", "3: 4/5 false", "4: 5/5 false", "5: 5/5 true"), IntStream.range(0, events.size())
+                .mapToObj(i -> (i + 1) + ": " + events.get(i).done() + "/" + events.get(i).total() + " " + events.get(i).finished())
+                .collect(toList()));
+        assertEquals("DiffExecutor", events.get(0).source());
+    }
+
+    @Test
+    void retry() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_retry");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "retry");
+
+            final var connections = new LongAdder();
+            final var inserts = new AtomicInteger();
+            new DiffExecutor<Simple>(
+                    () -> {
+                        connections.increment();
+                        return dataSource.getConnection();
+                    }, 2, false,
+                    () -> new Simple.Insert("DiffExecutorTest_retry") {
+                        private final boolean fail = inserts.incrementAndGet() == 2; // second chunk fails once
+
+                        @Override
+                        public void close() throws SQLException {
+                            if (fail) {
+                                throw new SQLException("connection lost", "08006");
+                            }
+                            super.close();
+                        }
+                    },
+                    () -> new Simple.Update("DiffExecutorTest_retry"),
+                    () -> new Simple.Delete("DiffExecutorTest_retry"))
+                    .setRetryPolicy(new RetryPolicy().setInitialDelay(Duration.ofMillis(1)))
+                    .accept(new Diff<>(List.of(), IntStream.range(0, 5).mapToObj(i -> new Simple("a" + i, i)).collect(toList()), List.of(), 2, 7));
+            assertEquals(4, connections.sum()); // 3 chunks + 1 retry
+            assertEquals(4, inserts.get());
+
+            try (final var statement = keepDb.createStatement();
+                 final var resultSet = statement.executeQuery("SELECT count(*) FROM DiffExecutorTest_retry")) {
+                assertTrue(resultSet.next());
+                assertEquals(7, resultSet.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void noRetryOnNonTransientError() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_noRetryOnNonTransientError");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "noRetryOnNonTransientError");
+
+            final var inserts = new AtomicInteger();
+            final var executor = new DiffExecutor<Simple>(
+                    dataSource::getConnection, 2, false,
+                    () -> {
+                        inserts.incrementAndGet();
+                        return new Simple.Insert("DiffExecutorTest_noRetryOnNonTransientError");
+                    },
+                    () -> new Simple.Update("DiffExecutorTest_noRetryOnNonTransientError"),
+                    () -> new Simple.Delete("DiffExecutorTest_noRetryOnNonTransientError"))
+                    .setRetryPolicy(new RetryPolicy().setInitialDelay(Duration.ofMillis(1)));
+            assertThrows(IllegalStateException.class, () -> executor.accept(new Diff<>(
+                    List.of(), List.of(new Simple("12345", 1)) /* duplicated key */, List.of(), 2, 3)));
+            assertEquals(1, inserts.get());
+        }
+    }
+
+    @Test
+    void checkpointInTransaction() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_checkpointInTransaction");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "checkpointInTransaction");
+            try (final var statement = keepDb.createStatement()) {
+                statement.execute("" +
+                        "CREATE TABLE BATCH_CHECKPOINT (" +
+                        "batch_name VARCHAR(255) NOT NULL, step_name VARCHAR(255) NOT NULL, token VARCHAR(2048), updated TIMESTAMP," +
+                        " PRIMARY KEY (batch_name, step_name))");
+                keepDb.commit();
+            }
+
+            final var store = new JdbcCheckpointStore(dataSource::getConnection, "test", systemUTC()) {
+                @Override
+                public void save(final String step, final String token) {
+                    fail("checkpoint must be saved in the chunk transaction");
+                }
+            };
+            final var consumer = new DiffExecutor<Simple>(
+                    dataSource::getConnection, 2, false,
+                    () -> new Simple.Insert("DiffExecutorTest_checkpointInTransaction") {
+                        @Override
+                        protected void doAccept(final Simple row) throws SQLException {
+                            if ("a3".equals(row.name())) {
+                                throw new SQLException("failing on " + row.name());
+                            }
+                            super.doAccept(row);
+                        }
+                    },
+                    () -> new Simple.Update("DiffExecutorTest_checkpointInTransaction"),
+                    () -> new Simple.Delete("DiffExecutorTest_checkpointInTransaction"))
+                    .setCheckpointInTransaction(true)
+                    .resumable();
+            Checkpointable.class.cast(consumer).restore(new Checkpoint(store, "apply"));
+            assertThrows(IllegalStateException.class, () -> consumer.accept(new Diff<>(
+                    List.of(), IntStream.range(0, 5).mapToObj(i -> new Simple("a" + i, i)).collect(toList()), List.of(), 2, 7)));
+
+            // first chunk and its checkpoint are committed together, the failing chunk rolled back both
+            assertEquals("ADD=2,UPDATE=0,DELETE=0", store.load("apply"));
+            try (final var statement = keepDb.createStatement();
+                 final var resultSet = statement.executeQuery("SELECT count(*) FROM DiffExecutorTest_checkpointInTransaction")) {
+                assertTrue(resultSet.next());
+                assertEquals(4, resultSet.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void applyInParallel() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_applyInParallel");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "applyInParallel");
+
+            final var added = IntStream.range(0, 100).mapToObj(i -> new Simple("2" + i, i)).collect(toList());
+            new DiffExecutor<>(
+                    dataSource::getConnection, 7, false,
+                    () -> new Simple.Insert("DiffExecutorTest_applyInParallel"),
+                    () -> new Simple.Update("DiffExecutorTest_applyInParallel"),
+                    () -> new Simple.Delete("DiffExecutorTest_applyInParallel"))
+                    .setParallelism(4)
+                    .setPhases(List.of(Set.of(DELETE), Set.of(ADD, UPDATE)))
+                    .accept(new Diff<>(List.of(new Simple("12345", 1)), added, List.of(new Simple("12346", 3)), 2, 101));
+
+            try (final var connection = dataSource.getConnection();
+                 final var statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 final var resultSet = statement.executeQuery("SELECT count(*), sum(age) from DiffExecutorTest_applyInParallel")) {
+                assertTrue(resultSet.next());
+                assertEquals(101, resultSet.getInt(1));
+                assertEquals(4953, resultSet.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    void applyInParallelFailure() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_applyInParallelFailure");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            seed(dataSource, "applyInParallelFailure");
+
+            final var executor = new DiffExecutor<Simple>(
+                    dataSource::getConnection, 1, false,
+                    () -> new Simple.Insert("DiffExecutorTest_applyInParallelFailure"),
+                    () -> new Simple.Update("DiffExecutorTest_applyInParallelFailure"),
+                    () -> new Simple.Delete("DiffExecutorTest_applyInParallelFailure"))
+                    .setParallelism(2);
+            final var error = assertThrows(IllegalStateException.class, () -> executor.accept(new Diff<>(
+                    List.of(), List.of(new Simple("12345", 1)) /* duplicated key */, List.of(), 2, 3)));
+            assertTrue(error.getMessage().startsWith("ADD chunk #0 failed: "), error::getMessage);
+            assertFalse(executor.toComment().isBlank());
+        }
+    }
+
+    @Test
+    void applyInParallelRejectsSharedConnection() throws Exception {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:DiffExecutorTest_applyInParallelRejectsSharedConnection");
+        try (final var shared = new ReusedSQLSupplierDataSource(dataSource::getConnection)) {
+            final var executor = new DiffExecutor<Simple>(
+                    shared::getConnection, 1, false,
+                    () -> new Simple.Insert("DiffExecutorTest_applyInParallelRejectsSharedConnection"),
+                    () -> new Simple.Update("DiffExecutorTest_applyInParallelRejectsSharedConnection"),
+                    () -> new Simple.Delete("DiffExecutorTest_applyInParallelRejectsSharedConnection"))
+                    .setParallelism(2);
+            final var error = assertThrows(IllegalStateException.class, () -> executor.accept(new Diff<>(
+                    List.of(), List.of(new Simple("12345", 1)), List.of(), 0, 1)));
+            assertTrue(error.getMessage().startsWith("Parallel mode requires a connection per worker"), error::getMessage);
+        }
+    }
+
     @Test
     void dryRun() throws SQLException {
         final var diff = newDiff();
@@ -138,6 +558,7 @@ class DiffExecutorTest {
                     () -> new Simple.Insert("DiffExecutorTest_dryRun"),
                     () -> new Simple.Update("DiffExecutorTest_dryRun"),
                     () -> new Simple.Delete("DiffExecutorTest_dryRun"))
+                    .setRowLogSampling(1)
                     .accept(diff);
 
             // ensure database didn't change
@@ -168,15 +589,9 @@ class DiffExecutorTest {
                              To Add: 1
                           To Remove: 1
                           To Update: 1
-                        [C][S] Starting transaction
                         [d][A] Adding Simple[name=12347, age=2]
-                        [C][E] Finished transaction
-                        [C][S] Starting transaction
                         [d][U] Updating Simple[name=12346, age=3]
-                        [C][E] Finished transaction
-                        [C][S] Starting transaction
-                        [d][D] Deleting Simple[name=12345, age=1]
-                        [C][E] Finished transaction""",
+                        [d][D] Deleting Simple[name=12345, age=1]""",
                 records.stream().map(LogRecord::getMessage).collect(joining("\n")));
     }
 
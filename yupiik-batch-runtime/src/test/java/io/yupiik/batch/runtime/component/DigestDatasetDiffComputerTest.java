@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.component.DatasetDiffComputerTest.Person;
+import io.yupiik.batch.runtime.component.diff.Digest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DigestDatasetDiffComputerTest {
+    private final DigestDatasetDiffComputer<Person, Long> computer = new DigestDatasetDiffComputer<>(
+            Person::id, Comparator.naturalOrder(), DigestDatasetDiffComputer.sha256(Person::name), id -> new Person(id, null));
+
+    @Test
+    void sha256() {
+        assertEquals(
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                DigestDatasetDiffComputer.<String>sha256(Function.identity()).apply("abc"));
+    }
+
+    @Test
+    void diff() {
+        final var diff = computer.apply(
+                List.of(new Person(2, "b"), new Person(3, "c"), new Person(4, "d")).iterator(),
+                digests(List.of(new Person(1, "a"), new Person(2, "b"), new Person(3, "cc"), new Person(5, "e"))).iterator());
+        assertEquals(List.of(4L), ids(diff.added()));
+        assertEquals(List.of(3L), ids(diff.updated()));
+        assertEquals("c", diff.updated().iterator().next().name());
+        assertEquals(List.of(new Person(1, null), new Person(5, null)), List.copyOf(diff.deleted()));
+        assertEquals("deleted: 2, added: 1, updated: 1, initial-size=4, new-size=3", diff.toComment());
+    }
+
+    @Test
+    void emptyDatasets() {
+        final var noInput = computer.apply(List.<Person>of().iterator(), digests(List.of(new Person(1, "a"))).iterator());
+        assertEquals(List.of(1L), ids(noInput.deleted()));
+        assertEquals(0, noInput.added().size());
+
+        final var noExisting = computer.apply(List.of(new Person(1, "a"), new Person(2, "b")).iterator(), List.<Digest<Long>>of().iterator());
+        assertEquals(List.of(1L, 2L), ids(noExisting.added()));
+        assertEquals(0, noExisting.deleted().size());
+    }
+
+    @Test
+    void stream() {
+        final var operations = new ArrayList<String>();
+        try (final var diff = computer.stream(
+                List.of(new Person(1, "a"), new Person(3, "c")).iterator(),
+                digests(List.of(new Person(1, "aa"), new Person(2, "b"))).iterator(), 1)) {
+            diff.forEachRemaining(entry -> operations.add(entry.operation() + ":" + entry.value().id()));
+        }
+        assertEquals(List.of("UPDATE:1", "DELETE:2", "ADD:3"), operations);
+    }
+
+    private List<Digest<Long>> digests(final List<Person> persons) {
+        return persons.stream().map(computer::digest).collect(toList());
+    }
+
+    private List<Long> ids(final Collection<Person> persons) {
+        return persons.stream().map(Person::id).collect(toList());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.component.DatasetDiffComputerTest.Person;
+import io.yupiik.batch.runtime.iterator.RowSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashDatasetDiffComputerTest {
+    private static final Function<Long, Person> DELETED = id -> new Person(id, null);
+
+    @Test
+    void unsorted() {
+        final var diff = new HashDatasetDiffComputer<>(Person::id, Person::name, DELETED).apply(
+                List.of(new Person(4, "d"), new Person(3, "c"), new Person(2, "b")).iterator(),
+                List.of(new Person(5, "e"), new Person(3, "cc"), new Person(1, "a"), new Person(2, "b")).iterator());
+        assertEquals(List.of(4L), ids(diff.added()));
+        assertEquals(List.of(3L), ids(diff.updated()));
+        assertEquals(List.of(1L, 5L), sortedIds(diff.deleted()));
+        assertEquals("deleted: 2, added: 1, updated: 1, initial-size=4, new-size=3", diff.toComment());
+    }
+
+    @Test
+    void emptyDatasets() {
+        final var computer = new HashDatasetDiffComputer<>(Person::id, Person::name, DELETED);
+        final var noInput = computer.apply(
+                List.<Person>of().iterator(),
+                List.of(new Person(1, "a"), new Person(2, "b"), new Person(3, "c")).iterator());
+        assertEquals(3, noInput.deleted().size());
+        assertTrue(noInput.added().isEmpty());
+
+        final var noExisting = computer.apply(
+                List.of(new Person(1, "a"), new Person(2, "b")).iterator(),
+                List.<Person>of().iterator());
+        assertEquals(2, noExisting.added().size());
+        assertTrue(noExisting.deleted().isEmpty());
+    }
+
+    @Test
+    void spill(@TempDir final Path work) throws IOException {
+        final var reference = LongStream.range(0, 1_000)
+                .filter(i -> i % 10 != 0) // 0, 10, ... are added
+                .mapToObj(i -> new Person(i, "p" + i))
+                .collect(toList());
+        final var incoming = LongStream.range(0, 1_000)
+                .filter(i -> i % 7 != 0) // 7, 14, ... are deleted (if not multiple of 10)
+                .mapToObj(i -> new Person(i, i % 3 == 0 ? "updated" : "p" + i))
+                .collect(toList());
+        Collections.shuffle(reference, new Random(1234));
+        Collections.shuffle(incoming, new Random(5678));
+
+        final var inMemory = new HashDatasetDiffComputer<>(Person::id, Person::name, DELETED)
+                .apply(incoming.iterator(), reference.iterator());
+        final var spilled = new HashDatasetDiffComputer<>(
+                Person::id, Person::name, DELETED, 100, 8, new PersonSerializer(), work)
+                .apply(incoming.iterator(), reference.iterator());
+        // a single partition is always too big so it is spilled again until it fits the budget
+        final var skewed = new HashDatasetDiffComputer<>(
+                Person::id, Person::name, DELETED, 150, 1, new PersonSerializer(), work)
+                .apply(incoming.iterator(), reference.iterator());
+        final var sorted = new DatasetDiffComputer<>(Comparator.comparingLong(Person::id), new DatasetDiffComputerTest.BeanComparator())
+                .apply(
+                        incoming.stream().sorted(Comparator.comparingLong(Person::id)).iterator(),
+                        reference.stream().sorted(Comparator.comparingLong(Person::id)).iterator());
+        for (final var diff : List.of(inMemory, spilled, skewed)) {
+            assertEquals(sortedIds(sorted.added()), sortedIds(diff.added()));
+            assertEquals(sortedIds(sorted.updated()), sortedIds(diff.updated()));
+            assertEquals(sortedIds(sorted.deleted()), sortedIds(diff.deleted()));
+            assertEquals(sorted.toComment(), diff.toComment());
+        }
+        try (final var files = Files.list(work)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void stream() {
+        final var added = new ArrayList<Long>();
+        try (final var diff = new HashDatasetDiffComputer<>(Person::id, Person::name, DELETED)
+                .stream(List.of(new Person(2, "b"), new Person(1, "a")).iterator(), List.of(new Person(1, "a")).iterator(), 1)) {
+            diff.forEachRemaining(entry -> added.add(entry.value().id()));
+            assertEquals(List.of(2L), added);
+            assertEquals("deleted: 0, added: 1, updated: 0, initial-size=1, new-size=2", diff.toComment());
+        }
+    }
+
+    @Test
+    void indexBudget(@TempDir final Path work) {
+        final var hashed = new ArrayList<Long>();
+        final Function<Person, String> hasher = p -> {
+            hashed.add(p.id());
+            return p.name();
+        };
+        final var diff = new HashDatasetDiffComputer<>(Person::id, hasher, DELETED, 10, 4, new PersonSerializer(), work)
+                .apply(
+                        List.<Person>of().iterator(),
+                        LongStream.range(0, 100).mapToObj(i -> new Person(i, "p" + i)).iterator());
+        assertEquals(100, diff.deleted().size());
+        assertEquals(100, hashed.size()); // each reference row is indexed once, spilled rows are not the indexed ones
+        assertEquals(LongStream.range(0, 100).boxed().collect(toList()), hashed.stream().sorted().collect(toList()));
+        assertTrue(diff.deleted().stream().allMatch(p -> p.name() == null));
+    }
+
+    private List<Long> ids(final Collection<Person> persons) {
+        return persons.stream().map(Person::id).collect(toList());
+    }
+
+    private List<Long> sortedIds(final Collection<Person> persons) {
+        return persons.stream().map(Person::id).sorted().collect(toList());
+    }
+
+    private static class PersonSerializer implements RowSerializer<Person> {
+        @Override
+        public void write(final DataOutput output, final Person row) throws IOException {
+            output.writeLong(row.id());
+            output.writeUTF(row.name());
+        }
+
+        @Override
+        public Person read(final DataInput input) throws IOException {
+            return new Person(input.readLong(), input.readUTF());
+        }
+    }
+}
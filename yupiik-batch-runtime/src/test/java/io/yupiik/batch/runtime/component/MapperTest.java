@@ -18,7 +18,11 @@ package io.yupiik.batch.runtime.component;
 import io.yupiik.batch.runtime.component.mapping.Mapping;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MapperTest {
     @Test
@@ -56,9 +60,42 @@ class MapperTest {
                 new Mapper<>(ReversedTableSpec.class).apply(new Simple("first", 123)));
     }
 
+    @Test
+    void customWithInputAndTable() {
+        assertEquals(
+                new SimpleCopy("premier-123", 123),
+                new Mapper<>(InputAndTableSpec.class).apply(new Simple("first", 123)));
+    }
+
+    @Test
+    void customError() {
+        final var error = assertThrows(IllegalStateException.class, () -> new Mapper<>(FailingSpec.class).apply(new Simple("first", 123)));
+        assertEquals("oops", error.getCause().getMessage());
+    }
+
+    @Test
+    void constructorError() {
+        final var error = assertThrows(IllegalStateException.class, () -> new Mapper<>(ValidatingSpec.class).apply(new Simple("", 123)));
+        assertEquals("empty name", error.getCause().getMessage());
+    }
+
+    @Test
+    void nullPrimitive() {
+        final var error = assertThrows(IllegalArgumentException.class, () -> new Mapper<>(NullAgeSpec.class).apply(new Simple("first", 123)));
+        assertTrue(error.getMessage().startsWith("null value for primitive parameter 'age' of "), error::getMessage);
+    }
+
     public static record Simple(String name, int age) {
     }
 
+    public static record ValidatedCopy(String name, int age) {
+        public ValidatedCopy {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("empty name");
+            }
+        }
+    }
+
     public static record SimpleCopy(String name, int age) {
     }
 
@@ -102,4 +139,39 @@ class MapperTest {
             return simple.age() * 2;
         }
     }
+
+    @Mapping(
+            from = Simple.class,
+            to = SimpleCopy.class,
+            properties = @Mapping.Property(from = "age", to = "age"),
+            tables = @Mapping.MappingTable(name = "m", entries = @Mapping.Entry(input = "first", output = "premier")))
+    public static record InputAndTableSpec() {
+        @Mapping.Custom(description = "")
+        String name(final Simple simple, @Mapping.Table("m") final Map<String, String> table) {
+            return table.get(simple.name()) + '-' + simple.age();
+        }
+    }
+
+    @Mapping(to = ValidatedCopy.class, properties = {
+            @Mapping.Property(from = "name", to = "name"),
+            @Mapping.Property(from = "age", to = "age"),
+    })
+    public static record ValidatingSpec() {
+    }
+
+    @Mapping(from = Simple.class, to = SimpleCopy.class, properties = @Mapping.Property(from = "name", to = "name"))
+    public static record NullAgeSpec() {
+        @Mapping.Custom(description = "")
+        Integer age(final Simple simple) {
+            return null;
+        }
+    }
+
+    @Mapping(from = Simple.class, to = SimpleCopy.class)
+    public static record FailingSpec() {
+        @Mapping.Custom(description = "")
+        String name(final Simple simple) {
+            throw new IllegalArgumentException("oops");
+        }
+    }
 }
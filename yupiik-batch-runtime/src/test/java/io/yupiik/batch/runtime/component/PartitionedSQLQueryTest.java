@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.component;
+
+import io.yupiik.batch.runtime.sql.ReusedSQLSupplierDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedSQLQueryTest {
+    @Test
+    void ordered() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:PartitionedSQLQueryTest_ordered");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            init(dataSource, "PartitionedSQLQueryTest_ordered");
+
+            try (final var query = new PartitionedSQLQuery<>(
+                    dataSource::getConnection, "select id, name from PartitionedSQLQueryTest_ordered", "id", 3,
+                    rs -> rs.getInt("id") + "=" + rs.getString("name"), 0, true, 2, null)) {
+                assertEquals(
+                        IntStream.rangeClosed(1, 10).mapToObj(i -> i + "=name_" + i).collect(toList()),
+                        StreamSupport.stream(Spliterators.spliteratorUnknownSize(query, Spliterator.IMMUTABLE), false).collect(toList()));
+            }
+        }
+    }
+
+    @Test
+    void unordered() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:PartitionedSQLQueryTest_unordered");
+        try (final var keepDb = dataSource.getConnection()) {
+            init(dataSource, "PartitionedSQLQueryTest_unordered");
+
+            try (final var query = new PartitionedSQLQuery<>(
+                    dataSource::getConnection, "select id from PartitionedSQLQueryTest_unordered where id > 2", "id", 4,
+                    rs -> rs.getInt("id"), 0, false, 2, null)) {
+                assertEquals(
+                        IntStream.rangeClosed(3, 10).boxed().collect(toList()),
+                        StreamSupport.stream(Spliterators.spliteratorUnknownSize(query, Spliterator.IMMUTABLE), false).sorted().collect(toList()));
+            }
+        }
+    }
+
+    @Test
+    void empty() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:PartitionedSQLQueryTest_empty");
+        try (final var keepDb = dataSource.getConnection()) {
+            init(dataSource, "PartitionedSQLQueryTest_empty");
+
+            try (final var query = new PartitionedSQLQuery<>(
+                    dataSource::getConnection, "select id from PartitionedSQLQueryTest_empty where id > 10", "id", 4,
+                    rs -> rs.getInt("id"))) {
+                assertEquals(List.of(), StreamSupport.stream(Spliterators.spliteratorUnknownSize(query, Spliterator.IMMUTABLE), false).collect(toList()));
+            }
+        }
+    }
+
+    @Test
+    void nullKeys() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:PartitionedSQLQueryTest_nullKeys");
+        try (final var keepDb = dataSource.getConnection();
+             final var statement = keepDb.createStatement()) {
+            statement.execute("CREATE TABLE PartitionedSQLQueryTest_nullKeys (id BIGINT, name VARCHAR(50) NOT NULL)");
+            statement.execute("INSERT INTO PartitionedSQLQueryTest_nullKeys (id, name) VALUES " +
+                    "(NULL, 'n1'), (" + Long.MAX_VALUE + ", 'max'), (0, 'zero'), (" + Long.MIN_VALUE + ", 'min'), (NULL, 'n2')");
+
+            try (final var query = new PartitionedSQLQuery<>(
+                    dataSource::getConnection, "select id, name from PartitionedSQLQueryTest_nullKeys", "id", 3,
+                    rs -> rs.getString("name"), 0, true, 2, null)) {
+                final var names = StreamSupport.stream(Spliterators.spliteratorUnknownSize(query, Spliterator.IMMUTABLE), false).collect(toList());
+                assertEquals(List.of("min", "zero", "max"), names.subList(0, 3));
+                assertEquals(List.of("n1", "n2"), names.subList(3, 5).stream().sorted().collect(toList()));
+            }
+        }
+    }
+
+    @Test
+    void rejectSharedConnection() throws Exception {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:PartitionedSQLQueryTest_rejectSharedConnection");
+        try (final var keepDb = dataSource.getConnection();
+             final var shared = new ReusedSQLSupplierDataSource(dataSource::getConnection)) {
+            init(dataSource, "PartitionedSQLQueryTest_rejectSharedConnection");
+
+            try (final var query = new PartitionedSQLQuery<>(
+                    shared::getConnection, "select id from PartitionedSQLQueryTest_rejectSharedConnection", "id", 2,
+                    rs -> rs.getInt("id"))) {
+                final var error = assertThrows(IllegalStateException.class, query::hasNext);
+                assertTrue(error.getMessage().contains("use a pool"), error::getMessage);
+            }
+        }
+    }
+
+    private void init(final JdbcDataSource dataSource, final String table) throws SQLException {
+        try (final var connection = dataSource.getConnection();
+             final var statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + table + " (id INT NOT NULL, name VARCHAR(50) NOT NULL)");
+            for (int i = 10; i > 0; i--) {
+                statement.execute("INSERT INTO " + table + " (id, name) VALUES (" + i + ", 'name_" + i + "')");
+            }
+            connection.commit();
+        }
+    }
+}
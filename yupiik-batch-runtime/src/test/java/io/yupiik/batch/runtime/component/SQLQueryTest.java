@@ -15,10 +15,13 @@
  */
 package io.yupiik.batch.runtime.component;
 
+import io.yupiik.batch.runtime.progress.ProgressEvent;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Spliterator;
@@ -27,6 +30,7 @@ import java.util.stream.StreamSupport;
 
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SQLQueryTest {
     @Test
@@ -61,4 +65,21 @@ class SQLQueryTest {
             ), StreamSupport.stream(Spliterators.spliteratorUnknownSize(publisher, Spliterator.IMMUTABLE), false).collect(toList()));
         }
     }
+
+    @Test
+    void progress() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:SQLQueryTest_progress");
+        final var events = new ArrayList<ProgressEvent>();
+        try (final var query = new SQLQuery<>(
+                dataSource::getConnection, "SELECT X FROM SYSTEM_RANGE(1, 5)", rs -> rs.getInt(1))
+                .setProgressListener("range", events::add, Duration.ZERO)) {
+            assertEquals(List.of(1, 2, 3, 4, 5), StreamSupport.stream(Spliterators.spliteratorUnknownSize(query, Spliterator.IMMUTABLE), false).collect(toList()));
+        }
+        assertEquals(6, events.size()); // one per row + end
+        final var last = events.get(events.size() - 1);
+        assertEquals("range", last.source());
+        assertEquals(5, last.done());
+        assertTrue(last.finished());
+    }
 }
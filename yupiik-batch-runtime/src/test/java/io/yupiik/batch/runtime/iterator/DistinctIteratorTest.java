@@ -36,4 +36,30 @@ class DistinctIteratorTest {
         assertEquals("b", iterator.next());
         assertFalse(iterator.hasNext());
     }
+
+    @Test
+    void distinctSorted() {
+        final var iterator = FluentIterator.of(List.of("a", "aa", "aaa", "b", "c", "cc").iterator())
+                .distinct(s -> s.charAt(0), comparing(String::length).reversed(), DistinctIterator.Mode.SORTED)
+                .unwrap();
+        assertTrue(iterator.hasNext());
+        assertEquals("aaa", iterator.next());
+        assertTrue(iterator.hasNext());
+        assertEquals("b", iterator.next());
+        assertTrue(iterator.hasNext());
+        assertEquals("cc", iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void distinctKeepsFirstOnTie() {
+        final var iterator = FluentIterator.of(List.of("a1", "b1", "a2").iterator())
+                .distinct(s -> s.charAt(0), comparing(String::length))
+                .unwrap();
+        assertTrue(iterator.hasNext());
+        assertEquals("a1", iterator.next());
+        assertTrue(iterator.hasNext());
+        assertEquals("b1", iterator.next());
+        assertFalse(iterator.hasNext());
+    }
 }
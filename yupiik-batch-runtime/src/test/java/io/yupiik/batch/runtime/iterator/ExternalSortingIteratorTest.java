@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExternalSortingIteratorTest {
+    @Test
+    void inMemory(@TempDir final Path work) throws Exception {
+        try (final var iterator = new ExternalSortingIterator<>(
+                List.of("c", "a", "b").iterator(), Comparator.<String>naturalOrder(), 10, new StringSerializer(), work)) {
+            assertEquals(List.of("a", "b", "c"), collect(iterator));
+            try (final var files = Files.list(work)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    void spill(@TempDir final Path work) throws Exception {
+        final var input = IntStream.range(0, 1_000).mapToObj(i -> Integer.toString((i * 7919) % 1_000)).collect(toList());
+        try (final var iterator = new ExternalSortingIterator<>(
+                input.iterator(), Comparator.comparing(Integer::parseInt), 64, new StringSerializer(), work)) {
+            assertTrue(iterator.hasNext());
+            try (final var files = Files.list(work)) {
+                assertEquals(16, files.count());
+            }
+            assertEquals(
+                    IntStream.range(0, 1_000).mapToObj(Integer::toString).collect(toList()),
+                    collect(iterator));
+            try (final var files = Files.list(work)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    void fanIn(@TempDir final Path work) throws Exception {
+        final var input = IntStream.range(0, 1_000).mapToObj(i -> Integer.toString((i * 7919) % 1_000)).collect(toList());
+        try (final var iterator = new ExternalSortingIterator<>(
+                input.iterator(), Comparator.comparing(Integer::parseInt), 16, new StringSerializer(), work)
+                .setMaxFanIn(4)) {
+            assertTrue(iterator.hasNext());
+            try (final var files = Files.list(work)) { // 63 runs -> 16 -> 4
+                assertEquals(4, files.count());
+            }
+            assertEquals(
+                    IntStream.range(0, 1_000).mapToObj(Integer::toString).collect(toList()),
+                    collect(iterator));
+            try (final var files = Files.list(work)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    void fluent() throws Exception {
+        try (final var iterator = FluentIterator.of(List.of("d", "b", "a", "c").iterator())
+                .sort(Comparator.naturalOrder(), 2, RowSerializer.serialization())) {
+            assertEquals(List.of("a", "b", "c", "d"), collect(iterator));
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    private List<String> collect(final Iterator<String> iterator) {
+        final var out = new ArrayList<String>();
+        while (iterator.hasNext()) {
+            out.add(iterator.next());
+        }
+        return out;
+    }
+
+    private static class StringSerializer implements RowSerializer<String> {
+        @Override
+        public void write(final DataOutput output, final String row) throws IOException {
+            output.writeUTF(row);
+        }
+
+        @Override
+        public String read(final DataInput input) throws IOException {
+            return input.readUTF();
+        }
+    }
+}
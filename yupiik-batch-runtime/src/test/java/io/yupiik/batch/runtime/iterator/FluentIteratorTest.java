@@ -17,9 +17,11 @@ package io.yupiik.batch.runtime.iterator;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.emptyIterator;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -87,4 +89,68 @@ class FluentIteratorTest {
         assertEquals(2, iterator.next());
         assertFalse(iterator.hasNext());
     }
+
+    @Test
+    void chunk() {
+        final var chunks = new ArrayList<List<Integer>>();
+        FluentIterator.of(List.of(1, 2, 3, 4, 5).iterator()).chunk(2).forEachRemaining(chunks::add);
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4), List.of(5)), chunks);
+    }
+
+    @Test
+    void chunkReuse() {
+        final var iterator = FluentIterator.of(List.of(1, 2, 3).iterator()).chunk(2, true);
+        final var first = iterator.next();
+        assertEquals(List.of(1, 2), first);
+        final var second = iterator.next();
+        assertEquals(List.of(3), second);
+        assertTrue(first == second);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void window() {
+        assertEquals(
+                List.of(List.of(1, 2, 3), List.of(2, 3, 4), List.of(3, 4, 5)),
+                windows(List.of(1, 2, 3, 4, 5), 3, 1));
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4)), windows(List.of(1, 2, 3, 4, 5), 2, 2));
+        assertEquals(List.of(List.of(1, 2), List.of(4, 5)), windows(List.of(1, 2, 3, 4, 5, 6), 2, 3));
+        assertEquals(List.of(), windows(List.of(1), 2, 1));
+    }
+
+    @Test
+    void groupAdjacentBy() {
+        final var groups = new ArrayList<List<String>>();
+        FluentIterator.of(List.of("a1", "a2", "b1", "a3", "c1", "c2").iterator())
+                .groupAdjacentBy(it -> it.charAt(0))
+                .forEachRemaining(groups::add);
+        assertEquals(List.of(List.of("a1", "a2"), List.of("b1"), List.of("a3"), List.of("c1", "c2")), groups);
+    }
+
+    @Test
+    void mapChunks() {
+        final var sizes = new ArrayList<Integer>();
+        final var result = new ArrayList<String>();
+        FluentIterator.of(List.of(1, 2, 3, 4, 5).iterator())
+                .mapChunks(2, chunk -> {
+                    sizes.add(chunk.size());
+                    return chunk.stream().map(i -> "#" + i).collect(toList());
+                })
+                .forEachRemaining(result::add);
+        assertEquals(List.of(2, 2, 1), sizes);
+        assertEquals(List.of("#1", "#2", "#3", "#4", "#5"), result);
+    }
+
+    @Test
+    void forEachChunk() {
+        final var chunks = new ArrayList<List<Integer>>();
+        FluentIterator.of(List.of(1, 2, 3).iterator()).forEachChunk(2, chunk -> chunks.add(List.copyOf(chunk)));
+        assertEquals(List.of(List.of(1, 2), List.of(3)), chunks);
+    }
+
+    private List<List<Integer>> windows(final List<Integer> input, final int size, final int step) {
+        final var windows = new ArrayList<List<Integer>>();
+        FluentIterator.of(input.iterator()).window(size, step).forEachRemaining(w -> windows.add(List.copyOf(w)));
+        return windows;
+    }
 }
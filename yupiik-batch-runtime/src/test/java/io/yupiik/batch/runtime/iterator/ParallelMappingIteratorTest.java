@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelMappingIteratorTest {
+    @Test
+    void ordered() throws Exception {
+        final var threads = ConcurrentHashMap.<String>newKeySet();
+        final var result = new ArrayList<Integer>();
+        try (final var iterator = FluentIterator.of(IntStream.range(0, 200).boxed().iterator())
+                .parallelMap(i -> {
+                    threads.add(Thread.currentThread().getName());
+                    sleep((200 - i) % 3);
+                    return i * 2;
+                }, 4, 16)) {
+            iterator.forEachRemaining(result::add);
+        }
+        assertEquals(IntStream.range(0, 200).map(i -> i * 2).boxed().collect(toList()), result);
+        assertTrue(threads.size() > 1, threads::toString);
+    }
+
+    @Test
+    void unordered() throws Exception {
+        final var result = new ArrayList<Integer>();
+        try (final var iterator = FluentIterator.of(IntStream.range(0, 100).boxed().iterator())
+                .parallelMap(i -> {
+                    sleep(i % 2);
+                    return i;
+                }, 4, 8, false)) {
+            iterator.forEachRemaining(result::add);
+        }
+        assertEquals(100, result.size());
+        assertEquals(IntStream.range(0, 100).boxed().collect(toList()), result.stream().sorted().collect(toList()));
+    }
+
+    @Test
+    void error() throws Exception {
+        try (final var iterator = FluentIterator.of(IntStream.range(0, 100).boxed().iterator())
+                .parallelMap(i -> {
+                    if (i == 10) {
+                        throw new IllegalArgumentException("oops");
+                    }
+                    return i;
+                }, 2, 4)) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, iterator.next());
+            }
+            assertEquals("oops", assertThrows(IllegalArgumentException.class, iterator::next).getMessage());
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    void closeCancels() throws Exception {
+        final var started = new CountDownLatch(1);
+        final var interrupted = new CountDownLatch(1);
+        final var sourceClosed = new AtomicBoolean();
+        final var source = new CloseableIterator(List.of(1, 2).iterator(), sourceClosed);
+        final var iterator = new ParallelMappingIterator<Integer, Integer>(source, i -> {
+            started.countDown();
+            try {
+                Thread.sleep(MINUTES.toMillis(1));
+            } catch (final InterruptedException e) {
+                interrupted.countDown();
+            }
+            return i;
+        }, 1, 1, true);
+        assertTrue(iterator.hasNext());
+        assertTrue(started.await(1, MINUTES));
+        iterator.close();
+        assertTrue(interrupted.await(1, MINUTES));
+        assertTrue(sourceClosed.get());
+    }
+
+    private static void sleep(final long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record CloseableIterator(Iterator<Integer> delegate, AtomicBoolean closed) implements Iterator<Integer>, AutoCloseable {
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Integer next() {
+            return delegate.next();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
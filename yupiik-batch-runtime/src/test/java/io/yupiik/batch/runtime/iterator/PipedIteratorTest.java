@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipedIteratorTest {
+    @Test
+    void multipleSources() {
+        try (final var iterator = new PipedIterator<>(2, task -> {
+            final var thread = new Thread(task);
+            thread.setDaemon(true);
+            thread.start();
+        }, List.<Supplier<Iterator<Integer>>>of(
+                () -> List.of(1, 2).iterator(), () -> List.of(3).iterator()))) {
+            var sum = 0;
+            while (iterator.hasNext()) {
+                sum += iterator.next();
+            }
+            assertEquals(6, sum);
+        }
+    }
+
+    @Test
+    void failureStopsOtherSources() throws InterruptedException {
+        final var finished = new AtomicInteger();
+        final var drained = new CountDownLatch(1);
+        try (final var iterator = new PipedIterator<>(1, task -> {
+            final var thread = new Thread(() -> {
+                task.run();
+                finished.incrementAndGet();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }, List.<Supplier<Iterator<Integer>>>of(
+                () -> new Iterator<>() { // fills the queue then waits to push its end
+                    private boolean done;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (done) {
+                            drained.countDown();
+                        }
+                        return !done;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        done = true;
+                        return 1;
+                    }
+                },
+                () -> {
+                    try {
+                        drained.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalArgumentException("failed");
+                }))) {
+            // healthy source gives up pushing its end marker once the other one failed, failing one waits for the consumer
+            final long end = System.nanoTime() + SECONDS.toNanos(10);
+            while (finished.get() < 1 && System.nanoTime() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, finished.get());
+
+            final var error = assertThrows(IllegalArgumentException.class, () -> {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                }
+            });
+            assertEquals("failed", error.getMessage());
+            assertTrue(iterator.end().toCompletableFuture().isCompletedExceptionally());
+        }
+    }
+}
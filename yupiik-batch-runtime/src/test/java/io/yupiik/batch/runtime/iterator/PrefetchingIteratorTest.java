@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.iterator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefetchingIteratorTest {
+    @Test
+    void prefetch() throws Exception {
+        final var source = new Source(100, -1);
+        final var result = new ArrayList<Integer>();
+        try (final var iterator = FluentIterator.of(source).prefetch(10)) {
+            assertEquals(0, source.read.get()); // lazy
+            assertTrue(iterator.hasNext());
+            final var deadline = System.nanoTime() + 60_000_000_000L;
+            while (source.read.get() < 12 && System.nanoTime() < deadline) { // 1 peeked + 10 buffered + 1 waiting
+                Thread.sleep(10);
+            }
+            Thread.sleep(200); // ensure it is bounded
+            assertEquals(12, source.read.get());
+            iterator.forEachRemaining(result::add);
+        }
+        assertEquals(IntStream.range(0, 100).boxed().collect(toList()), result);
+        assertTrue(source.closed.get());
+        assertNotEquals(Thread.currentThread().getName(), source.thread);
+    }
+
+    @Test
+    void closeReleasesSource() throws Exception {
+        final var source = new Source(1_000, -1);
+        final var iterator = new PrefetchingIterator<>(source, 2);
+        assertEquals(0, iterator.next());
+        iterator.close();
+        assertTrue(source.closed.get());
+        assertTrue(source.read.get() < 1_000);
+    }
+
+    @Test
+    void closeNotStarted() throws Exception {
+        final var source = new Source(10, -1);
+        new PrefetchingIterator<>(source, 2).close();
+        assertTrue(source.closed.get());
+        assertEquals(0, source.read.get());
+    }
+
+    @Test
+    void error() throws Exception {
+        final var source = new Source(100, 5);
+        try (final var iterator = new PrefetchingIterator<>(source, 2)) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(i, iterator.next());
+            }
+            assertEquals("failed at 5", assertThrows(IllegalStateException.class, iterator::hasNext).getMessage());
+            assertFalse(iterator.hasNext());
+        }
+        assertTrue(source.closed.get());
+    }
+
+    private static class Source implements Iterator<Integer>, AutoCloseable {
+        private final int size;
+        private final int failAt;
+        private final AtomicInteger read = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile String thread;
+
+        private Source(final int size, final int failAt) {
+            this.size = size;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read.get() < size;
+        }
+
+        @Override
+        public Integer next() {
+            thread = Thread.currentThread().getName();
+            final int value = read.getAndIncrement();
+            if (value == failAt) {
+                throw new IllegalStateException("failed at " + value);
+            }
+            return value;
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
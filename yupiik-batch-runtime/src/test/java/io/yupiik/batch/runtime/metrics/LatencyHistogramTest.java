@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void percentiles() {
+        final var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        assertEquals(10_000, histogram.count());
+        assertEquals(50_005_000_000L, histogram.sum());
+        assertAround(5_000_000, histogram.percentile(50));
+        assertAround(9_900_000, histogram.percentile(99));
+        assertAround(10_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        final var histogram = new LatencyHistogram();
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        assertEquals(2, histogram.percentile(50));
+        assertEquals(3, histogram.percentile(99));
+        assertEquals(0, new LatencyHistogram().percentile(50));
+    }
+
+    private void assertAround(final long expected, final long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected * 0.04, () -> expected + " != " + actual);
+    }
+}
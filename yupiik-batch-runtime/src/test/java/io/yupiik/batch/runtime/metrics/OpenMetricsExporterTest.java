@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenMetricsExporterTest {
+    @Test
+    void relayEndpoint() {
+        assertEquals(
+                URI.create("http://localhost:8080/metrics/relay?id=my+batch&dropOnPull=true"),
+                OpenMetricsExporter.relayEndpoint(URI.create("http://localhost:8080/metrics"), "my batch", true));
+        assertEquals(
+                URI.create("http://localhost:8080/metrics/relay?id=test&dropOnPull=false"),
+                OpenMetricsExporter.relayEndpoint(URI.create("http://localhost:8080/metrics/"), "test", false));
+    }
+}
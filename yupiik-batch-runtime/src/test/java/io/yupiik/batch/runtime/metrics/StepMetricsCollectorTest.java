@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.metrics;
+
+import io.yupiik.batch.runtime.batch.BatchPromise;
+import io.yupiik.batch.runtime.batch.builder.BatchChain;
+import io.yupiik.batch.runtime.batch.builder.RunConfiguration;
+import io.yupiik.batch.runtime.component.mapping.MapperTableFilter;
+import io.yupiik.batch.runtime.component.mapping.Mapping;
+import io.yupiik.batch.runtime.iterator.CountingIterator;
+import io.yupiik.batch.runtime.iterator.FluentIterator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepMetricsCollectorTest {
+    @Test
+    void collect() {
+        final var registry = MetricsRegistry.inMemory();
+        final var result = new AtomicLong();
+        new BatchChain.BatchRoot<Iterator<Integer>>() {
+            @Override
+            public Result<Iterator<Integer>> execute() {
+                return new Result<>(new CountingIterator<>(IntStream.range(0, 100).boxed().iterator()), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .map("even", it -> (Iterator<Integer>) new CountingIterator<>(FluentIterator.of(it).filter(i -> i % 2 == 0).unwrap()))
+                .then("sum", it -> {
+                    long sum = 0;
+                    while (it.hasNext()) {
+                        sum += it.next();
+                    }
+                    result.set(sum);
+                })
+                .run(StepMetricsCollector.collect(new RunConfiguration(), registry));
+        assertEquals(2_450, result.get());
+
+        final var input = registry.step("input");
+        assertEquals(0, input.rowsIn());
+        assertEquals(100, input.rowsOut());
+        assertEquals(100, input.latency().count());
+
+        final var even = registry.step("even");
+        assertEquals(100, even.rowsIn());
+        assertEquals(50, even.rowsOut());
+        assertTrue(even.rowsPerSecond() > 0);
+
+        final var sum = registry.step("sum");
+        assertEquals(50, sum.rowsIn());
+        assertEquals(0, sum.rowsOut());
+        assertEquals(1, sum.executions());
+
+        final var exported = new OpenMetricsExporter("test").export(registry);
+        assertTrue(exported.contains("" +
+                "# TYPE yupiik_batch_step_rows_in counter\n" +
+                "# HELP yupiik_batch_step_rows_in Rows read by the step.\n" +
+                "yupiik_batch_step_rows_in_total{batch=\"test\",step=\"even\"} 100\n" +
+                "yupiik_batch_step_rows_in_total{batch=\"test\",step=\"input\"} 0\n" +
+                "yupiik_batch_step_rows_in_total{batch=\"test\",step=\"sum\"} 50\n"), exported);
+        assertTrue(exported.contains("yupiik_batch_step_element_latency_seconds_count{batch=\"test\",step=\"even\"} 50\n"), exported);
+        assertTrue(exported.contains("yupiik_batch_step_element_latency_seconds{batch=\"test\",step=\"even\",quantile=\"0.99\"} "), exported);
+    }
+
+    @Test
+    void keepStepValueTypes() {
+        final var registry = MetricsRegistry.inMemory();
+        final var result = new AtomicLong();
+        new BatchChain.BatchRoot<FluentIterator<Integer>>() {
+            @Override
+            public Result<FluentIterator<Integer>> execute() {
+                return new Result<>(FluentIterator.of(IntStream.range(0, 10).boxed().iterator()), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .map("double", (FluentIterator<Integer> it) -> it.map(i -> i * 2))
+                .then("sum", (FluentIterator<Integer> it) -> {
+                    long sum = 0;
+                    while (it.hasNext()) {
+                        sum += it.next();
+                    }
+                    result.set(sum);
+                })
+                .run(StepMetricsCollector.collect(new RunConfiguration(), registry));
+        assertEquals(90, result.get());
+
+        // not a counting iterator so only executions are collected
+        assertEquals(0, registry.step("double").rowsIn());
+        assertEquals(1, registry.step("double").executions());
+        assertEquals(1, registry.step("sum").executions());
+    }
+
+    @Test
+    void promiseAndFilter() {
+        final var registry = MetricsRegistry.inMemory();
+        final var known = StepMetricsCollector.filtered(registry, "known",
+                new MapperTableFilter(Spec.class, "codes").<String>forField(Function.identity()));
+        final var result = new ArrayList<String>();
+        new BatchChain.BatchRoot<BatchPromise<Iterator<String>>>() {
+            @Override
+            public Result<BatchPromise<Iterator<String>>> execute() {
+                return new Result<>(BatchPromise.of(
+                        new CountingIterator<>(List.of("a", "x", "b", "y").iterator()),
+                        CompletableFuture.completedFuture(null)), Result.Type.CONTINUE);
+            }
+
+            @Override
+            public String name() {
+                return "input";
+            }
+        }
+                .map("known", (BatchPromise<Iterator<String>> it) -> (Iterator<String>) new CountingIterator<>(
+                        FluentIterator.of(it.value()).filter(known).unwrap()))
+                .then("collect", it -> it.forEachRemaining(result::add))
+                .run(StepMetricsCollector.collect(new RunConfiguration(), registry));
+        assertEquals(List.of("a", "b"), result);
+
+        final var input = registry.step("input");
+        assertEquals(4, input.rowsOut());
+        assertEquals(1, input.executions());
+
+        final var filter = registry.step("known");
+        assertEquals(4, filter.rowsIn());
+        assertEquals(2, filter.rowsOut());
+        assertEquals(2, filter.rowsFiltered());
+        assertEquals(2, known.getCounter());
+
+        final var exported = new OpenMetricsExporter("test").export(registry);
+        assertTrue(exported.contains("yupiik_batch_step_rows_filtered_total{batch=\"test\",step=\"known\"} 2\n"), exported);
+    }
+
+    @Mapping(to = Record.class, tables = @Mapping.MappingTable(name = "codes", entries = {
+            @Mapping.Entry(input = "a", output = "A"),
+            @Mapping.Entry(input = "b", output = "B")
+    }))
+    public static class Spec {
+    }
+}
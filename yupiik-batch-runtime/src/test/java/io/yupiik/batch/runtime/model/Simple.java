@@ -94,4 +94,42 @@ public record Simple(String name, int age) {
             statement.setString(1, row.name());
         }
     }
+
+    public static class Upsert extends SQLBiConsumer.Batched<Simple> {
+        protected final String table;
+
+        public Upsert(final String table) {
+            this.table = table;
+        }
+
+        @Override
+        protected PreparedStatement createStatement(final Connection connection) throws SQLException {
+            return connection.prepareStatement("MERGE INTO " + table + " (name, age) KEY (name) VALUES (?, ?)");
+        }
+
+        @Override
+        protected void doAccept(final Simple row) throws SQLException {
+            statement.setString(1, row.name());
+            statement.setInt(2, row.age());
+        }
+    }
+
+    public static class DeleteIn extends SQLBiConsumer.BatchedIn<Simple> {
+        protected final String table;
+
+        public DeleteIn(final String table, final int keysPerStatement) {
+            super(keysPerStatement);
+            this.table = table;
+        }
+
+        @Override
+        protected String createSql(final String placeholders) {
+            return "DELETE FROM " + table + " WHERE name IN (" + placeholders + ")";
+        }
+
+        @Override
+        protected void bind(final PreparedStatement statement, final int index, final Simple row) throws SQLException {
+            statement.setString(index, row.name());
+        }
+    }
 }
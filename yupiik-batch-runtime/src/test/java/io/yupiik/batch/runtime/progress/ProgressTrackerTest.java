@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.progress;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressTrackerTest {
+    @Test
+    void sampled() {
+        final var events = new ArrayList<ProgressEvent>();
+        final var tracker = new ProgressTracker("test", 1_000, events::add, Duration.ofHours(1));
+        for (int i = 0; i < 1_000; i++) {
+            tracker.increment();
+        }
+        assertTrue(events.isEmpty());
+        tracker.end();
+        tracker.end();
+        assertEquals(1, events.size());
+
+        final var event = events.get(0);
+        assertEquals("test", event.source());
+        assertEquals(1_000, event.done());
+        assertTrue(event.finished());
+        assertEquals(Duration.ZERO, event.eta());
+        assertTrue(event.toSummary().startsWith("test: done, 1000 rows in "), event::toSummary);
+    }
+
+    @Test
+    void summary() {
+        final var event = new ProgressEvent("query", 250, 1_000, Duration.ofSeconds(5).toNanos(), false);
+        assertEquals(50., event.rate());
+        assertEquals(Duration.ofSeconds(15), event.eta());
+        assertEquals("query: 250/1000 rows (25.00%), 50.0 rows/s, ETA PT15S", event.toSummary());
+
+        final var unknownTotal = new ProgressEvent("query", 250, -1, Duration.ofSeconds(5).toNanos(), false);
+        assertNull(unknownTotal.eta());
+        assertEquals("query: 250 rows, 50.0 rows/s", unknownTotal.toSummary());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import io.yupiik.batch.runtime.component.DiffExecutor;
+import io.yupiik.batch.runtime.component.diff.Diff;
+import io.yupiik.batch.runtime.model.Simple;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BulkInsertTest {
+    @Test
+    void multiRowValues() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:BulkInsertTest_multiRowValues");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            try (final var statement = keepDb.createStatement()) {
+                statement.execute("CREATE TABLE BulkInsertTest_multiRowValues (name VARCHAR(50) NOT NULL PRIMARY KEY, age INT)");
+            }
+
+            final var added = IntStream.range(0, 25).mapToObj(i -> new Simple("n" + i, i)).collect(toList());
+            new DiffExecutor<Simple>(
+                    dataSource::getConnection, 10, false,
+                    () -> BulkInsert.<Simple>of("BulkInsertTest_multiRowValues", List.of("name", "age"), 4, row -> new Object[]{row.name(), row.age()}),
+                    () -> new Simple.Update("BulkInsertTest_multiRowValues"),
+                    () -> new Simple.Delete("BulkInsertTest_multiRowValues"))
+                    .accept(new Diff<>(List.of(), added, List.of(), 0, 25));
+
+            try (final var statement = keepDb.createStatement();
+                 final var resultSet = statement.executeQuery("SELECT count(*), sum(age) FROM BulkInsertTest_multiRowValues")) {
+                resultSet.next();
+                assertEquals(25, resultSet.getInt(1));
+                assertEquals(300, resultSet.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    void maxParameters() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:BulkInsertTest_maxParameters");
+        try (final var keepDb = dataSource.getConnection()) {
+            try (final var statement = keepDb.createStatement()) {
+                statement.execute("CREATE TABLE BulkInsertTest_maxParameters (name VARCHAR(50) NOT NULL PRIMARY KEY, age INT)");
+            }
+
+            final var statements = new ArrayList<String>();
+            final var connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if ("prepareStatement".equals(method.getName())) {
+                    statements.add((String) args[0]);
+                }
+                try {
+                    return method.invoke(keepDb, args);
+                } catch (final InvocationTargetException ite) {
+                    throw ite.getTargetException();
+                }
+            });
+            try (final var insert = new BulkInsert<Simple>("BulkInsertTest_maxParameters", List.of("name", "age"), 10) {
+                @Override
+                protected Object[] values(final Simple row) {
+                    return new Object[]{row.name(), row.age()};
+                }
+
+                @Override
+                protected int maxParameters(final Connection connection) {
+                    return 5;
+                }
+            }) {
+                for (int i = 0; i < 5; i++) {
+                    insert.accept(connection, new Simple("n" + i, i));
+                }
+            }
+
+            // 2 rows (4 parameters) per statement, the last row is inserted with its own statement
+            assertEquals(List.of(
+                    "INSERT INTO BulkInsertTest_maxParameters (name, age) VALUES (?, ?), (?, ?)",
+                    "INSERT INTO BulkInsertTest_maxParameters (name, age) VALUES (?, ?)"), statements);
+            try (final var statement = keepDb.createStatement();
+                 final var resultSet = statement.executeQuery("SELECT count(*), sum(age) FROM BulkInsertTest_maxParameters")) {
+                resultSet.next();
+                assertEquals(5, resultSet.getInt(1));
+                assertEquals(10, resultSet.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    void copy() throws Exception {
+        final var copies = new ArrayList<String>();
+        final var insert = new BulkInsert<Object[]>("t", List.of("a", "b", "c"), 10) {
+            @Override
+            protected Object[] values(final Object[] row) {
+                return row;
+            }
+
+            @Override
+            protected boolean supportsCopy(final Connection connection) {
+                return true;
+            }
+
+            @Override
+            protected void copy(final Connection connection, final String sql, final Reader data) {
+                final var out = new StringWriter();
+                try {
+                    data.transferTo(out);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                copies.add(sql + "\n" + out);
+            }
+        };
+        insert.accept(null, new Object[]{"simple", 1, null});
+        insert.accept(null, new Object[]{"with \"quotes\", and comma", "", new byte[]{1, 15}});
+        insert.close();
+        assertEquals(List.of("" +
+                "COPY t (a, b, c) FROM STDIN WITH (FORMAT csv)\n" +
+                "\"simple\",\"1\",\n" +
+                "\"with \"\"quotes\"\", and comma\",\"\",\"\\x010f\"\n"), copies);
+    }
+}
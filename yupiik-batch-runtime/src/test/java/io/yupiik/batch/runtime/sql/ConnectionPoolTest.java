@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import org.h2.jdbc.JdbcConnection;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    @Test
+    void reuse() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ConnectionPoolTest_reuse");
+        final var created = new AtomicInteger();
+        try (final var pool = new ConnectionPool(() -> {
+            created.incrementAndGet();
+            return dataSource.getConnection();
+        }, 2, 1, 10)) {
+            final Connection physical;
+            try (final var connection = pool.getConnection()) {
+                physical = connection.unwrap(JdbcConnection.class);
+                assertEquals(1, pool.getActive());
+            }
+            assertEquals(0, pool.getActive());
+            assertEquals(1, pool.getIdle());
+            try (final var connection = pool.getConnection()) {
+                assertSame(physical, connection.unwrap(JdbcConnection.class));
+            }
+            assertEquals(1, created.get());
+
+            // max size
+            final var first = pool.getConnection();
+            final var second = pool.getConnection();
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            first.close();
+            first.close(); // idempotent
+            assertTrue(first.isClosed());
+            assertThrows(SQLException.class, first::createStatement);
+            pool.getConnection().close();
+            second.close();
+            assertEquals(2, created.get());
+        }
+    }
+
+    @Test
+    void rollbackOnReturn() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ConnectionPoolTest_rollbackOnReturn");
+        try (final var keepDb = dataSource.getConnection();
+             final var pool = new ConnectionPool(dataSource::getConnection, 1, 1, 10)) {
+            try (final var statement = keepDb.createStatement()) {
+                statement.execute("CREATE TABLE ConnectionPoolTest_rollbackOnReturn (id INT)");
+            }
+            try (final var connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+                try (final var statement = connection.createStatement()) {
+                    statement.execute("INSERT INTO ConnectionPoolTest_rollbackOnReturn (id) VALUES (1)");
+                }
+            } // no commit
+            try (final var connection = pool.getConnection()) {
+                assertTrue(connection.getAutoCommit());
+                try (final var statement = connection.createStatement();
+                     final var resultSet = statement.executeQuery("SELECT count(*) FROM ConnectionPoolTest_rollbackOnReturn")) {
+                    assertTrue(resultSet.next());
+                    assertEquals(0, resultSet.getInt(1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void validation() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ConnectionPoolTest_validation");
+        try (final var keepDb = dataSource.getConnection();
+             final var pool = new ConnectionPool(dataSource::getConnection, 1, 1, 10)) {
+            final Connection physical;
+            try (final var connection = pool.getConnection()) {
+                physical = connection.unwrap(JdbcConnection.class);
+            }
+            physical.close(); // simulates a broken connection
+            try (final var connection = pool.getConnection()) {
+                assertFalse(connection.unwrap(JdbcConnection.class).isClosed());
+            }
+        }
+    }
+
+    @Test
+    void concurrentUsage() throws Exception {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ConnectionPoolTest_concurrentUsage");
+        final var created = new AtomicInteger();
+        final var executor = Executors.newFixedThreadPool(8);
+        try (final var keepDb = dataSource.getConnection();
+             final var pool = new ConnectionPool(() -> {
+                 created.incrementAndGet();
+                 return dataSource.getConnection();
+             }, 4, -1, 10_000)) {
+            final var tasks = new ArrayList<CompletableFuture<Integer>>();
+            IntStream.range(0, 200).forEach(i -> tasks.add(CompletableFuture.supplyAsync(() -> {
+                try (final var connection = pool.getConnection();
+                     final var statement = connection.createStatement();
+                     final var resultSet = statement.executeQuery("SELECT " + i)) {
+                    resultSet.next();
+                    return resultSet.getInt(1);
+                } catch (final SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor)));
+            assertEquals(199 * 100, tasks.stream().mapToInt(CompletableFuture::join).sum());
+            assertTrue(created.get() <= 4, () -> Integer.toString(created.get()));
+            assertEquals(0, pool.getActive());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
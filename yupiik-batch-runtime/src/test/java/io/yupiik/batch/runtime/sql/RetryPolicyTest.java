@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+    @Test
+    void classify() {
+        assertTrue(RetryPolicy.isTransient(new SQLTransientConnectionException("lost")));
+        assertTrue(RetryPolicy.isTransient(new SQLException("lost", "08006")));
+        assertTrue(RetryPolicy.isTransient(new SQLException("serialization", "40001")));
+        assertFalse(RetryPolicy.isTransient(new SQLException("duplicate", "23505")));
+        assertFalse(RetryPolicy.isTransient(new SQLIntegrityConstraintViolationException("duplicate")));
+        assertFalse(RetryPolicy.isTransient(new SQLException("no state")));
+    }
+
+    @Test
+    void shouldRetry() {
+        final var policy = new RetryPolicy().setMaxAttempts(3);
+        final var wrapped = new IllegalStateException(new SQLException("lost", "08006"));
+        assertTrue(policy.shouldRetry(1, wrapped));
+        assertTrue(policy.shouldRetry(2, wrapped));
+        assertFalse(policy.shouldRetry(3, wrapped));
+        assertFalse(policy.shouldRetry(1, new IllegalStateException(new SQLException("duplicate", "23505"))));
+        assertFalse(policy.shouldRetry(1, new IllegalStateException("no sql error")));
+
+        final var chained = new SQLException("batch failed", "23000");
+        chained.setNextException(new SQLException("deadlock", "40P01"));
+        assertTrue(policy.shouldRetry(1, chained));
+    }
+
+    @Test
+    void delay() {
+        final var noJitter = new RetryPolicy()
+                .setInitialDelay(Duration.ofMillis(100))
+                .setMaxDelay(Duration.ofMillis(500))
+                .setJitter(0);
+        assertEquals(100, noJitter.delay(1));
+        assertEquals(200, noJitter.delay(2));
+        assertEquals(400, noJitter.delay(3));
+        assertEquals(500, noJitter.delay(4));
+
+        final var jitter = new RetryPolicy().setInitialDelay(Duration.ofMillis(100)).setJitter(0.5);
+        for (int i = 0; i < 100; i++) {
+            final long delay = jitter.delay(1);
+            assertTrue(delay >= 50 && delay <= 100, () -> Long.toString(delay));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.sql;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReusedSQLSupplierDataSourceTest {
+    @Test
+    void recreateBrokenConnection() throws Exception {
+        final var h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:ReusedSQLSupplierDataSourceTest_recreateBrokenConnection");
+        final var created = new ArrayList<Connection>();
+        final var commitErrors = new ArrayList<>(List.of("42000", "08006")); // states of the next commit failures
+        try (final var dataSource = new ReusedSQLSupplierDataSource(() -> {
+            final var delegate = h2.getConnection();
+            created.add(delegate);
+            return (Connection) Proxy.newProxyInstance(
+                    Thread.currentThread().getContextClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("commit".equals(method.getName()) && !commitErrors.isEmpty()) {
+                            throw new SQLException("commit failed", commitErrors.remove(0));
+                        }
+                        try {
+                            return method.invoke(delegate, args);
+                        } catch (final InvocationTargetException ite) {
+                            throw ite.getTargetException();
+                        }
+                    });
+        })) {
+            final var connection = dataSource.getConnection();
+            connection.close(); // shared so no-op
+            assertSame(connection, dataSource.getConnection());
+
+            // not a connection error and the connection is still valid: kept
+            assertThrows(SQLException.class, connection::commit);
+            assertSame(connection, dataSource.getConnection());
+
+            // connection error: recreated
+            assertThrows(SQLException.class, connection::commit);
+            final var recreated = dataSource.getConnection();
+            assertNotSame(connection, recreated);
+            assertEquals(2, created.size());
+            assertTrue(created.get(0).isClosed());
+            recreated.commit();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.tracing;
+
+import io.yupiik.batch.runtime.batch.builder.BatchChain;
+import io.yupiik.batch.runtime.batch.builder.RunConfiguration;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static java.time.Clock.systemUTC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class AsyncExecutionTracerTest {
+    @Test
+    void traceWhileRunning() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:AsyncExecutionTracerTest_traceWhileRunning");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            createTables(dataSource);
+
+            final Supplier<List<String>> rows = () -> rows(dataSource);
+
+            final var tracer = new AsyncExecutionTracer(dataSource::getConnection, "test", systemUTC())
+                    .setBatchSize(1)
+                    .setFlushInterval(10);
+            tracer.traceExecution(() -> {
+                tracer.traceStep(null, step("step1"), null);
+
+                // step1 is visible while the job is running (no status yet)
+                final var end = System.nanoTime() + 5_000_000_000L;
+                while (!List.of("null/step1").equals(rows.get())) {
+                    assertTrue(System.nanoTime() < end, () -> rows.get().toString());
+                    try {
+                        Thread.sleep(10);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        fail(e);
+                    }
+                }
+
+                tracer.traceStep(null, step("step2"), null);
+            }).run();
+
+            assertTrue(tracer.isAlreadySaved());
+            assertEquals(List.of("SUCCESS/step1", "SUCCESS/step2"), rows.get());
+        }
+    }
+
+    @Test
+    void jobUpdatedWhenStepsFail() throws SQLException {
+        final var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:AsyncExecutionTracerTest_jobUpdatedWhenStepsFail");
+        try (final var keepDb = dataSource.getConnection()) { // avoid h2 to delete the table with the last close()
+            createTables(dataSource);
+
+            final var tracer = new AsyncExecutionTracer(dataSource::getConnection, "test", systemUTC())
+                    .setBatchSize(1)
+                    .setFlushInterval(10);
+            final var error = assertThrows(IllegalStateException.class, () -> tracer.traceExecution(() -> {
+                tracer.traceStep(null, step("step1"), null);
+
+                // wait for the job row to be inserted
+                final var end = System.nanoTime() + 5_000_000_000L;
+                while (!List.of("null/step1").equals(rows(dataSource))) {
+                    assertTrue(System.nanoTime() < end, () -> rows(dataSource).toString());
+                    try {
+                        Thread.sleep(10);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        fail(e);
+                    }
+                }
+
+                tracer.traceStep(null, step("too-long".repeat(20)), null); // name column is too small
+            }).run());
+            assertTrue(error.getMessage().startsWith("Can't save steps of job 'test'"), error::getMessage);
+
+            // job row does not stay running even if a step is missing
+            assertEquals(List.of("SUCCESS/step1"), rows(dataSource));
+        }
+    }
+
+    private void createTables(final JdbcDataSource dataSource) throws SQLException {
+        try (final var connection = dataSource.getConnection();
+             final var statement = connection.createStatement()) {
+            statement.execute("" +
+                    "CREATE TABLE BATCH_JOB_EXECUTION_TRACE (" +
+                    "   id VARCHAR(64)," +
+                    "   name VARCHAR(128)," +
+                    "   status VARCHAR(16)," +
+                    "   comment CLOB," +
+                    "   started TIMESTAMP," +
+                    "   finished TIMESTAMP," +
+                    "   PRIMARY KEY (id)" +
+                    ")");
+            statement.execute("" +
+                    "CREATE TABLE BATCH_STEP_EXECUTION_TRACE (" +
+                    "   id VARCHAR(64)," +
+                    "   job_id VARCHAR(64)," +
+                    "   name VARCHAR(128)," +
+                    "   status VARCHAR(16)," +
+                    "   comment CLOB," +
+                    "   started TIMESTAMP," +
+                    "   finished TIMESTAMP," +
+                    "   previous_id VARCHAR(64)," +
+                    "   PRIMARY KEY (id)" +
+                    ")");
+            connection.commit();
+        }
+    }
+
+    private List<String> rows(final JdbcDataSource dataSource) {
+        try (final var connection = dataSource.getConnection();
+             final var statement = connection.createStatement();
+             final var resultSet = statement.executeQuery("" +
+                     "SELECT j.status, s.name FROM BATCH_JOB_EXECUTION_TRACE j" +
+                     " LEFT JOIN BATCH_STEP_EXECUTION_TRACE s ON s.job_id = j.id ORDER BY s.name")) {
+            final var out = new ArrayList<String>();
+            while (resultSet.next()) {
+                out.add(resultSet.getString(1) + "/" + resultSet.getString(2));
+            }
+            return out;
+        } catch (final SQLException e) {
+            return fail(e);
+        }
+    }
+
+    private BatchChain<?, ?, ?> step(final String name) {
+        return new BatchChain() {
+            @Override
+            public Result execute(final RunConfiguration configuration, final Result previous) {
+                return null;
+            }
+
+            @Override
+            public Optional<BatchChain> previous() {
+                return Optional.empty();
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+    }
+}
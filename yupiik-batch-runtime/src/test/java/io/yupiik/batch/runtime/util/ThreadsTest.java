@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.batch.runtime.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreadsTest {
+    @Test
+    void virtualThreadFactory() {
+        assertEquals(Runtime.version().feature() >= 21, Threads.hasVirtualThreads());
+
+        final var thread = new CompletableFuture<Thread>();
+        Threads.threadPerTaskExecutor(Threads.virtualThreadFactory("test-")).execute(() -> thread.complete(Thread.currentThread()));
+        final var executingThread = thread.join();
+        assertEquals("test-0", executingThread.getName());
+        assertTrue(executingThread.isDaemon()); // virtual threads are daemon too
+    }
+}
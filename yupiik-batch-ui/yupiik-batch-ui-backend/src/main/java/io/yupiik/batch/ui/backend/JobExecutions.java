@@ -30,6 +30,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 import javax.sql.DataSource;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
@@ -101,7 +102,7 @@ public class JobExecutions {
                         ofNullable(r.getString(3)).map(Status::valueOf).orElse(null),
                         r.getString(4),
                         r.getObject(5, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
-                        r.getObject(6, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
+                        finished(r),
                         null));
                 return new Page<>(total, items);
             }
@@ -119,7 +120,7 @@ public class JobExecutions {
                     ofNullable(r.getString(3)).map(Status::valueOf).orElse(null),
                     r.getString(4),
                     r.getObject(5, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
-                    r.getObject(6, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
+                    finished(r),
                     null));
             return new Page<>(items.size(), items);
         }
@@ -149,7 +150,7 @@ public class JobExecutions {
                                 ofNullable(r.getString(3)).map(Status::valueOf).orElse(null),
                                 r.getString(4),
                                 r.getObject(5, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
-                                r.getObject(6, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
+                                finished(r),
                                 r.getString(7)));
                         return new Job(
                                 jobResultSet.getString(1),
@@ -157,11 +158,18 @@ public class JobExecutions {
                                 ofNullable(jobResultSet.getString(3)).map(Status::valueOf).orElse(null),
                                 jobResultSet.getString(4),
                                 jobResultSet.getObject(5, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
-                                jobResultSet.getObject(6, OffsetDateTime.class).withOffsetSameInstant(ZoneOffset.UTC),
+                                finished(jobResultSet),
                                 steps.stream().sorted(comparing(Step::started)).collect(toList()));
                     }
                 }
             }
         }
     }
+
+    // running jobs (and steps) are not finished yet
+    private static OffsetDateTime finished(final ResultSet resultSet) throws SQLException {
+        return ofNullable(resultSet.getObject(6, OffsetDateTime.class))
+                .map(it -> it.withOffsetSameInstant(ZoneOffset.UTC))
+                .orElse(null);
+    }
 }
@@ -100,7 +100,7 @@ public class Configuration {
             "SELECT id, name, status, comment, started, finished " +
             "FROM ${table} " +
             "${where}" +
-            "ORDER BY finished DESC " +
+            "ORDER BY started DESC " +
             "LIMIT ${pageSize} OFFSET ${firstIndex}";
 
     @Param(name = "yupiik.batch.backend.queries.countAllJobs",
@@ -109,11 +109,11 @@ public class Configuration {
 
 
     @Param(name = "yupiik.batch.backend.queries.findLastExecutions",
-            description = "SQL query (for portability) to find last execution of each batch, `${table}` is replaced by the table name.")
+            description = "SQL query (for portability) to find last execution of each batch - including running ones, `${table}` is replaced by the table name.")
     private String findLastExecutions = "" +
             "SELECT t.id, t.name, t.status, t.comment, t.started, t.finished " +
             "FROM ${table} t INNER JOIN" +
-            "(SELECT name, max(finished) as finished FROM ${table} GROUP BY name) as v on t.name = v.name and t.finished = v.finished " +
+            "(SELECT name, max(started) as started FROM ${table} GROUP BY name) as v on t.name = v.name and t.started = v.started " +
             "ORDER BY name ASC";
 
     @Param(name = "yupiik.batch.backend.queries.findJobById",
@@ -147,6 +147,40 @@ class JobExecutionsTest {
                 withData.items().toString());
     }
 
+    @Test
+    void runningJob() throws IOException, InterruptedException, SQLException {
+        // insert some data to get it - will be deleted with DatabaseSetup callback
+        addJobs(3, i -> "test " + (i % 2));
+        try (final var connection = dataSource.getConnection();
+             final var statement = connection.prepareStatement("" +
+                     "INSERT INTO BATCH_JOB_EXECUTION_TRACE (id, name, started) VALUES (?, ?, ?)")) {
+            statement.setString(1, "running");
+            statement.setString(2, "test 1");
+            statement.setObject(3, OffsetDateTime.of(2021, 6, 10, 11, 49, 0, 0, ZoneOffset.UTC));
+            statement.executeUpdate();
+            connection.commit();
+        }
+
+        final var running = "Job[id=running, name=test 1, status=null, comment=null, started=2021-06-10T11:49Z, finished=null, steps=null]";
+        assertEquals(running, fetchJobs(0, 1, null).items().get(0).toString());
+        assertEquals(running, fetchJob("running").toString());
+
+        final var lastExecutions = toPage(client.send(
+                HttpRequest.newBuilder()
+                        .POST(HttpRequest.BodyPublishers.ofString(factory.createObjectBuilder()
+                                .add("jsonrpc", "2.0")
+                                .add("method", "yupiik-batch-last-executions")
+                                .build()
+                                .toString()))
+                        .uri(URI.create("http://localhost:" + configuration.getPort() + "/jsonrpc"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+        assertEquals("[" +
+                        "Job[id=2, name=test 0, status=SUCCESS, comment=comment 2, started=2021-06-03T11:49Z, finished=2021-06-03T11:51:01Z, steps=null], " +
+                        running + "]",
+                lastExecutions.items().toString());
+    }
+
     @Test
     void findJob() throws IOException, InterruptedException, SQLException {
         final var jobs = fetchJobs(0, 10, null);